@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates operation arrival times for an open-loop run.
+ *
+ * In the default (closed-loop) mode each client thread issues its next operation only once the previous one
+ * has returned, so a slow operation delays every operation behind it. With an arrival scheduler the arrivals
+ * follow a fixed or Poisson schedule at the target rate, which may change over the run as set out by a
+ * {@link TargetSchedule}, no matter how the database responds. The client threads act as a pool of workers:
+ * each claims the next arrival, waits until it is due and executes it. If
+ * all the workers are busy the arrival is picked up late, and since the operation is measured from its
+ * scheduled arrival the time it spent queued shows up in the intended latency.
+ *
+ * The {@link #TOKEN_BUCKET} process acts as a rate limiter shared by all the client threads: arrivals are
+ * spaced as for {@link #FIXED}, so threads that are ahead take up the slack of threads held up by slow
+ * operations, but once the arrivals fall further behind than the burst allows the missed arrivals are
+ * dropped rather than issued back to back.
+ */
+public class ArrivalScheduler
+{
+  /**
+   * Arrivals are spaced exactly 1/target apart.
+   */
+  public static final String FIXED="fixed";
+
+  /**
+   * Arrivals form a Poisson process with a mean rate of target, i.e. exponentially distributed gaps.
+   */
+  public static final String POISSON="poisson";
+
+  /**
+   * Arrivals are spaced exactly 1/target apart, but never lag behind the present by more than the burst.
+   */
+  public static final String TOKEN_BUCKET="tokenbucket";
+
+  /**
+   * How far behind the token bucket may fall and still issue its missed arrivals, in milliseconds.
+   */
+  public static final String BURST_PROPERTY="tokenbucket.burst";
+  public static final String BURST_PROPERTY_DEFAULT="1000";
+
+  private static final long NOT_STARTED=Long.MIN_VALUE;
+
+  /** When the schedule started, or NOT_STARTED until the first arrival is claimed. */
+  private final AtomicLong _startNs=new AtomicLong(NOT_STARTED);
+
+  /** The time of the next arrival to hand out relative to the start, or -1 once the schedule has ended. */
+  private final AtomicLong _nextArrivalNs;
+
+  /** The number of arrivals handed out so far. */
+  private final AtomicLong _issued=new AtomicLong();
+
+  private final long _opcount;
+  private final TargetSchedule _schedule;
+  private final boolean _poisson;
+  /** How far behind the present the next arrival may be, or 0 for no limit. */
+  private final long _burstNs;
+
+  /**
+   * Creates a new scheduler, with the default burst for a {@link #TOKEN_BUCKET}.
+   *
+   * @param process The arrival process, {@link #FIXED}, {@link #POISSON} or {@link #TOKEN_BUCKET}.
+   * @param schedule The (mean) arrival rate across all client threads over the course of the run.
+   * @param opcount The total number of arrivals to generate, or 0 for no limit.
+   */
+  public ArrivalScheduler(String process, TargetSchedule schedule, long opcount)
+  {
+    this(process, schedule, opcount, TimeUnit.MILLISECONDS.toNanos(Long.parseLong(BURST_PROPERTY_DEFAULT)));
+  }
+
+  /**
+   * Creates a new scheduler.
+   *
+   * @param process The arrival process, {@link #FIXED}, {@link #POISSON} or {@link #TOKEN_BUCKET}.
+   * @param schedule The (mean) arrival rate across all client threads over the course of the run.
+   * @param opcount The total number of arrivals to generate, or 0 for no limit.
+   * @param burstNs How far a {@link #TOKEN_BUCKET} may fall behind, in ns.
+   */
+  public ArrivalScheduler(String process, TargetSchedule schedule, long opcount, long burstNs)
+  {
+    _opcount=opcount;
+    _schedule=schedule;
+    long burst=0;
+    if (process.equals(FIXED))
+    {
+      _poisson=false;
+    }
+    else if (process.equals(POISSON))
+    {
+      _poisson=true;
+    }
+    else if (process.equals(TOKEN_BUCKET))
+    {
+      _poisson=false;
+      burst=burstNs;
+      if (burst<=0)
+      {
+        throw new IllegalArgumentException("the \""+BURST_PROPERTY+"\" must be positive");
+      }
+    }
+    else
+    {
+      throw new IllegalArgumentException("unknown arrival process \""+process+"\"");
+    }
+    _burstNs=burst;
+    _nextArrivalNs=new AtomicLong((schedule.rateAt(0)>0) ? 0 : schedule.nextNs(0, 1));
+  }
+
+  /**
+   * @return The burst for a {@link #TOKEN_BUCKET} set in the properties, in ns.
+   */
+  static long getBurstNs(Properties props)
+  {
+    return TimeUnit.MILLISECONDS.toNanos(Long.parseLong(props.getProperty(BURST_PROPERTY, BURST_PROPERTY_DEFAULT)));
+  }
+
+  /**
+   * Claim the next arrival. The schedule starts when the first arrival is claimed.
+   *
+   * @return The scheduled arrival time in {@link System#nanoTime()} terms, or -1 if all arrivals have been
+   *         handed out or the schedule has ended.
+   */
+  public long nextArrivalNs()
+  {
+    if ((_opcount>0) && (_issued.getAndIncrement()>=_opcount))
+    {
+      return -1;
+    }
+    long start=_startNs.get();
+    if (start==NOT_STARTED)
+    {
+      _startNs.compareAndSet(NOT_STARTED, System.nanoTime());
+      start=_startNs.get();
+    }
+    while (true)
+    {
+      long current=_nextArrivalNs.get();
+      if (current<0)
+      {
+        return -1;
+      }
+      long arrival=current;
+      if (_burstNs>0)
+      {
+        // drop the arrivals that are more than the burst behind, unless the present is in a gap
+        long floor=System.nanoTime()-start-_burstNs;
+        if ((arrival<floor) && (_schedule.rateAt(floor)>0))
+        {
+          arrival=floor;
+        }
+      }
+      if (_nextArrivalNs.compareAndSet(current, _schedule.nextNs(arrival, nextGapScale())))
+      {
+        return start+arrival;
+      }
+    }
+  }
+
+  /**
+   * @return The gap to the next arrival as a multiple of the mean gap.
+   */
+  private double nextGapScale()
+  {
+    return _poisson ? -Math.log(Utils.random().nextDouble()) : 1;
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * A layer for accessing a database whose driver is asynchronous. Each operation returns as soon as it has
+ * been issued, with a {@link DBFuture} that the binding completes once the database has responded.
+ *
+ * An AsyncDB is still a {@link DB}: the blocking methods issue the operation and wait for it, so an AsyncDB
+ * works with any workload. When the client wraps it, up to "asyncdb.maxinflight" operations per client thread
+ * are left outstanding and their latencies are recorded as each one completes, so that a few threads can
+ * keep a cluster busy by pipelining requests.
+ *
+ * Result maps passed to {@link #readAsync} and {@link #scanAsync} must be filled in before the future
+ * is completed.
+ */
+public abstract class AsyncDB extends DB
+{
+  /**
+   * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to read.
+   * @param fields The list of fields to read, or null for all of them
+   * @param result A HashMap of field/value pairs for the result
+   * @return The pending return code: zero on success, a non-zero error code on error or "not found".
+   */
+  public abstract DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result);
+
+  /**
+   * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+   *
+   * @param table The name of the table
+   * @param startkey The record key of the first record to read.
+   * @param recordcount The number of records to read
+   * @param fields The list of fields to read, or null for all of them
+   * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+   * @return The pending return code: zero on success, a non-zero error code on error.
+   */
+  public abstract DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result);
+
+  /**
+   * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+   * record key, overwriting any existing values with the same field name.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to write.
+   * @param values A HashMap of field/value pairs to update in the record
+   * @return The pending return code: zero on success, a non-zero error code on error.
+   */
+  public abstract DBFuture updateAsync(String table, String key, HashMap<String,ByteIterator> values);
+
+  /**
+   * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+   * record key.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to insert.
+   * @param values A HashMap of field/value pairs to insert in the record
+   * @return The pending return code: zero on success, a non-zero error code on error.
+   */
+  public abstract DBFuture insertAsync(String table, String key, HashMap<String,ByteIterator> values);
+
+  /**
+   * Delete a record from the database.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to delete.
+   * @return The pending return code: zero on success, a non-zero error code on error.
+   */
+  public abstract DBFuture deleteAsync(String table, String key);
+
+  @Override
+  public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+  {
+    return readAsync(table,key,fields,result).await();
+  }
+
+  @Override
+  public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+  {
+    return scanAsync(table,startkey,recordcount,fields,result).await();
+  }
+
+  @Override
+  public int update(String table, String key, HashMap<String,ByteIterator> values)
+  {
+    return updateAsync(table,key,values).await();
+  }
+
+  @Override
+  public int insert(String table, String key, HashMap<String,ByteIterator> values)
+  {
+    return insertAsync(table,key,values).await();
+  }
+
+  @Override
+  public int delete(String table, String key)
+  {
+    return deleteAsync(table,key).await();
+  }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Semaphore;
+
+import com.yahoo.ycsb.measurements.MeasurementHandle;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.SampleRecorder;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+/**
+ * Wrapper around an {@link AsyncDB} that measures latencies and counts return codes as each operation
+ * completes.
+ *
+ * At most "asyncdb.maxinflight" operations are outstanding at once; issuing another blocks the client
+ * thread until one completes. With the default of 1 every call waits for its operation, just like
+ * {@link DBWrapper}. With a larger limit, calls return as soon as the operation has been issued: the return
+ * value is the operation's code if it has already completed and zero otherwise, and read and scan results
+ * are filled in later by the driver. Workloads that use the results of their reads, i.e. CoreWorkload with
+ * "dataintegrity" or read-modify-writes, need a limit of 1; a larger limit is rejected for them.
+ */
+public class AsyncDBWrapper extends DBWrapper
+{
+  /**
+   * The maximum number of outstanding operations per client thread.
+   */
+  public static final String MAX_IN_FLIGHT_PROPERTY="asyncdb.maxinflight";
+
+  /**
+   * The default maximum number of outstanding operations per client thread.
+   */
+  public static final String MAX_IN_FLIGHT_PROPERTY_DEFAULT="1";
+
+  final AsyncDB _asyncdb;
+  final int _maxinflight;
+  final Semaphore _inflight;
+
+  public AsyncDBWrapper(AsyncDB db, Properties props)
+  {
+    this(db, props, Measurements.getMeasurements());
+  }
+
+  AsyncDBWrapper(AsyncDB db, Properties props, Measurements measurements)
+  {
+    super(db, measurements);
+    _asyncdb=db;
+    _maxinflight=Integer.parseInt(props.getProperty(MAX_IN_FLIGHT_PROPERTY, MAX_IN_FLIGHT_PROPERTY_DEFAULT));
+    if (_maxinflight<1)
+    {
+      throw new IllegalArgumentException(MAX_IN_FLIGHT_PROPERTY+" must be at least 1");
+    }
+    if (_maxinflight>1)
+    {
+      // the calls return before the results are filled in, and a read-modify-write would only measure issuing
+      if (Boolean.parseBoolean(props.getProperty(CoreWorkload.DATA_INTEGRITY_PROPERTY, CoreWorkload.DATA_INTEGRITY_PROPERTY_DEFAULT)))
+      {
+        throw new IllegalArgumentException(MAX_IN_FLIGHT_PROPERTY+" must be 1 with "+CoreWorkload.DATA_INTEGRITY_PROPERTY);
+      }
+      if (Double.parseDouble(props.getProperty(CoreWorkload.READMODIFYWRITE_PROPORTION_PROPERTY,
+          CoreWorkload.READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT))>0)
+      {
+        throw new IllegalArgumentException(MAX_IN_FLIGHT_PROPERTY+" must be 1 with a "+
+            CoreWorkload.READMODIFYWRITE_PROPORTION_PROPERTY);
+      }
+    }
+    _inflight=new Semaphore(_maxinflight);
+  }
+
+  /**
+   * Wait for all outstanding operations to complete, then clean up the DB.
+   */
+  @Override
+  public void cleanup() throws DBException
+  {
+    _inflight.acquireUninterruptibly(_maxinflight);
+    _inflight.release(_maxinflight);
+    super.cleanup();
+  }
+
+  @Override
+  public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+  {
+    long ist=_measurements.getIntendedtartTimeNs();
+    acquire();
+    Object event=beginEvent();
+    long st=System.nanoTime();
+    List<HashMap<String,ByteIterator>> results=_measureBytes ? Collections.singletonList(result) : null;
+    return track(_read, SampleRecorder.READ, table, key, event, ist, st, 0, results, _asyncdb.readAsync(table,key,fields,result));
+  }
+
+  @Override
+  public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+  {
+    long ist=_measurements.getIntendedtartTimeNs();
+    acquire();
+    Object event=beginEvent();
+    long st=System.nanoTime();
+    return track(_scan, SampleRecorder.SCAN, table, startkey, event, ist, st, 0, result, _asyncdb.scanAsync(table,startkey,recordcount,fields,result));
+  }
+
+  @Override
+  public int update(String table, String key, HashMap<String,ByteIterator> values)
+  {
+    long bytes=bytes(values);
+    long ist=_measurements.getIntendedtartTimeNs();
+    acquire();
+    Object event=beginEvent();
+    long st=System.nanoTime();
+    return track(_update, SampleRecorder.UPDATE, table, key, event, ist, st, bytes, null, _asyncdb.updateAsync(table,key,values));
+  }
+
+  @Override
+  public int insert(String table, String key, HashMap<String,ByteIterator> values)
+  {
+    long bytes=bytes(values);
+    long ist=_measurements.getIntendedtartTimeNs();
+    acquire();
+    Object event=beginEvent();
+    long st=System.nanoTime();
+    return track(_insert, SampleRecorder.INSERT, table, key, event, ist, st, bytes, null, _asyncdb.insertAsync(table,key,values));
+  }
+
+  @Override
+  public int delete(String table, String key)
+  {
+    long ist=_measurements.getIntendedtartTimeNs();
+    acquire();
+    Object event=beginEvent();
+    long st=System.nanoTime();
+    return track(_delete, SampleRecorder.DELETE, table, key, event, ist, st, -1, null, _asyncdb.deleteAsync(table,key));
+  }
+
+  /**
+   * Wait for a free in-flight slot, which counts as time waiting for the DB.
+   */
+  private void acquire()
+  {
+    if (_overhead==null)
+    {
+      _inflight.acquireUninterruptibly();
+      return;
+    }
+    long st=System.nanoTime();
+    _inflight.acquireUninterruptibly();
+    _overhead.addDB(System.nanoTime()-st, 0);
+  }
+
+  /**
+   * @return A new Flight Recorder event for an operation about to be issued, as several may be in flight, or
+   *         null if none is emitted.
+   */
+  @Override
+  Object beginEvent()
+  {
+    return (_events==null) ? null : _events.begin(null);
+  }
+
+  /**
+   * Record the latency and return code of an issued operation once it completes. The measurements are
+   * recorded on the completing thread, so only the time to issue the operation is accounted for here.
+   *
+   * @param sampleop The operation as recorded to the sample file and its event, e.g. {@link SampleRecorder#READ}.
+   * @param event The Flight Recorder event begun as the operation was issued, or null.
+   * @param writtenBytes The bytes written by the operation, or -1 if it has no payload.
+   * @param results The records the operation returns, once it completes, to count the bytes of, or null.
+   * @return The operation's return code when it has completed or the in-flight limit is 1, zero otherwise.
+   */
+  private int track(final MeasurementHandle op, final byte sampleop, final String table, final String key, final Object event,
+      final long intendedStartTimeNanos, final long startTimeNanos,
+      final long writtenBytes, final List<? extends Map<String,ByteIterator>> results, DBFuture future)
+  {
+    future.addCallback(new DBFuture.Callback()
+    {
+      @Override
+      public void onComplete(int code)
+      {
+        long en=System.nanoTime();
+        try
+        {
+          measure(op, code, intendedStartTimeNanos, startTimeNanos, en);
+          if (writtenBytes>=0)
+          {
+            reportBytes(op, code, writtenBytes+bytes(results));
+          }
+          if (_samples!=null)
+          {
+            // completions may run on several of the driver's threads, which the region allows
+            _samples.record(sampleop, key, startTimeNanos, en, code);
+          }
+          event(event, sampleop, table, key, intendedStartTimeNanos, startTimeNanos, en, code);
+        }
+        finally
+        {
+          // a failure to measure must not leak the slot, or the client thread blocks in acquire()
+          _inflight.release();
+        }
+      }
+    });
+    int res=0;
+    if ((_maxinflight==1) || future.isDone())
+    {
+      res=future.await();
+    }
+    if (_overhead!=null)
+    {
+      _overhead.addDB(System.nanoTime()-startTimeNanos, 0);
+    }
+    return res;
+  }
+}
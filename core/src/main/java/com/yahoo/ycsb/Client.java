@@ -22,388 +22,249 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
 
 import com.yahoo.ycsb.measurements.Measurements;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 
 /**
- * A thread to periodically show the status of the experiment, to reassure you that progress is being made.
- *
- * @author cooperb
+ * A thread that moves the measurements on to a new scope as each stage of a {@link TargetSchedule} begins,
+ * so that the status output and the exported measurements are broken down by stage. It also records the
+ * run time and throughput of each stage.
  */
-class StatusThread extends Thread
+class StageThread extends Thread implements RunResults
 {
-  /** Counts down each of the clients completing. */
-  private final CountDownLatch _completeLatch;
-
-  /** The clients that are running. */
+  private final TargetSchedule _schedule;
   private final List<ClientThread> _clients;
+  private final long[] _startNs;
+  private final long[] _endNs;
+  private final long[] _startOps;
+  private final long[] _endOps;
 
-  private final String _label;
-  private final boolean _standardstatus;
-
-  /** The interval for reporting status. */
-  private long _sleeptimeNs;
+  /** The number of stages that have started. */
+  private int _started;
+  /** The number of stages that have ended. */
+  private int _ended;
 
   /**
-   * Creates a new StatusThread.
+   * Creates a new StageThread. Measurements are taken in the scope of the first stage from now on.
    *
-   * @param completeLatch The latch that each client thread will {@link CountDownLatch#countDown()} as they complete.
-   * @param clients The clients to collect metrics from.
-   * @param label The label for the status.
-   * @param standardstatus If true the status is printed to stdout in addition to stderr.
-   * @param statusIntervalSeconds The number of seconds between status updates.
-   */
-  public StatusThread(CountDownLatch completeLatch, List<ClientThread> clients,
-      String label, boolean standardstatus, int statusIntervalSeconds)
+   * @param schedule The schedule the clients follow.
+   * @param clients The clients to count operations of.
+   */
+  public StageThread(TargetSchedule schedule, List<ClientThread> clients)
   {
-    _completeLatch=completeLatch;
+    _schedule=schedule;
     _clients=clients;
-    _label=label;
-    _standardstatus=standardstatus;
-    _sleeptimeNs=TimeUnit.SECONDS.toNanos(statusIntervalSeconds);
+    int stages=schedule.getStages().size();
+    _startNs=new long[stages];
+    _endNs=new long[stages];
+    _startOps=new long[stages];
+    _endOps=new long[stages];
+    Measurements.getMeasurements().startScope(stageName(0));
+  }
+
+  static String stageName(int stage)
+  {
+    return "STAGE"+(stage+1);
   }
 
   /**
-   * Run and periodically report status.
+   * Follow the schedule until it ends or the thread is interrupted because the clients have finished.
    */
   @Override
   public void run()
   {
-    final long startTimeMs=System.currentTimeMillis();
-    final long startTimeNanos = System.nanoTime();
-    long deadline = startTimeNanos + _sleeptimeNs;
-    long startIntervalMs=startTimeMs;
-    long lastTotalOps=0;
-
-    boolean alldone;
-
-    do
+    final long startTimeNanos=System.nanoTime();
+    List<TargetSchedule.Stage> stages=_schedule.getStages();
+    try
     {
-      long nowMs=System.currentTimeMillis();
-
-      lastTotalOps = computeStats(startTimeMs, startIntervalMs, nowMs, lastTotalOps);
-
-      alldone = waitForClientsUntil(deadline);
-
-      startIntervalMs=nowMs;
-      deadline+=_sleeptimeNs;
+      for (int i=0; i<stages.size(); i++)
+      {
+        TargetSchedule.Stage stage=stages.get(i);
+        sleepUntil(startTimeNanos+stage.getStartNs());
+        if (i>0)
+        {
+          Measurements.getMeasurements().startScope(stageName(i));
+        }
+        _startNs[i]=System.nanoTime();
+        _startOps[i]=totalOps();
+        _started++;
+
+        sleepUntil(startTimeNanos+stage.getEndNs());
+        _endNs[i]=System.nanoTime();
+        _endOps[i]=totalOps();
+        _ended++;
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // the clients have finished, so the stage in progress ends here
+      if (_ended<_started)
+      {
+        _endNs[_ended]=System.nanoTime();
+        _endOps[_ended]=totalOps();
+        _ended++;
+      }
     }
-    while (!alldone);
-
-    // Print the final stats.
-    computeStats(startTimeMs, startIntervalMs, System.currentTimeMillis(), lastTotalOps);
   }
 
-  /**
-   * Computes and prints the stats.
-   *
-   * @param startTimeMs The start time of the test.
-   * @param startIntervalMs The start time of this interval.
-   * @param endIntervalMs The end time (now) for the interval.
-   * @param lastTotalOps The last total operations count.
-   *
-   * @return The current operation count.
-   */
-  private long computeStats(final long startTimeMs, long startIntervalMs, long endIntervalMs,
-      long lastTotalOps) {
-    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
+  private static void sleepUntil(long deadline) throws InterruptedException
+  {
+    long now;
+    while ((now=System.nanoTime())<deadline)
+    {
+      TimeUnit.NANOSECONDS.sleep(deadline-now);
+    }
+  }
 
+  private long totalOps()
+  {
     long totalops=0;
-    long todoops=0;
-
-    // Calculate the total number of operations completed.
     for (ClientThread t : _clients)
     {
       totalops+=t.getOpsDone();
-      todoops+=t.getOpsTodo();
-    }
-
-
-    long interval=endIntervalMs-startTimeMs;
-    double throughput=1000.0*(((double)totalops)/(double)interval);
-    double curthroughput=1000.0*(((double)(totalops-lastTotalOps))/((double)(endIntervalMs-startIntervalMs)));
-    long estremaining = (long) Math.ceil(todoops / throughput);
-
-
-    DecimalFormat d = new DecimalFormat("#.##");
-    String label = _label + format.format(new Date());
-
-    StringBuilder msg = new StringBuilder(label).append(" ").append(interval/1000).append(" sec: ");
-    msg.append(totalops).append(" operations; ");
-
-    if (totalops != 0) {
-      msg.append(d.format(curthroughput)).append(" current ops/sec; ");
-    }
-    if (todoops != 0) {
-        msg.append("est completion in ").append(RemainingFormatter.format(estremaining));
-    }
-
-    msg.append(Measurements.getMeasurements().getSummary());
-
-    System.err.println(msg);
-
-    if (_standardstatus) {
-      System.out.println(msg);
     }
     return totalops;
   }
 
   /**
-   * Waits for all of the client to finish or the deadline to expire.
-   *
-   * @param deadline The current deadline.
-   *
-   * @return True if all of the clients completed.
+   * Export the run time and throughput of each stage that has run. Only call once the thread has finished.
    */
-  private boolean waitForClientsUntil(long deadline) {
-    boolean alldone=false;
-    long now=System.nanoTime();
-
-    while( !alldone && now < deadline ) {
-      try {
-        alldone = _completeLatch.await(deadline-now, TimeUnit.NANOSECONDS);
-      }
-      catch( InterruptedException ie) {
-        // If we are interrupted the thread is being asked to shutdown.
-        // Return true to indicate that and reset the interrupt state
-        // of the thread.
-        Thread.currentThread().interrupt();
-        alldone=true;
-      }
-      now=System.nanoTime();
+  @Override
+  public void exportResults(MeasurementsExporter exporter) throws IOException
+  {
+    for (int i=0; i<_ended; i++)
+    {
+      long runtime=TimeUnit.NANOSECONDS.toMillis(_endNs[i]-_startNs[i]);
+      exporter.write(stageName(i), "RunTime(ms)", runtime);
+      double throughput=1000.0*(_endOps[i]-_startOps[i])/runtime;
+      exporter.write(stageName(i), "Throughput(ops/sec)", throughput);
     }
-
-    return alldone;
   }
 }
 
 /**
- * Turn seconds remaining into more useful units.
- * i.e. if there are hours or days worth of seconds, use them.
- */
-class RemainingFormatter {
-	public static StringBuilder format(long seconds) {
-		StringBuilder time = new StringBuilder();
-		long days = TimeUnit.SECONDS.toDays(seconds);
-		if (days > 0) {
-			time.append(days).append(" days ");
-			seconds -= TimeUnit.DAYS.toSeconds(days);
-		}
-		long hours = TimeUnit.SECONDS.toHours(seconds);
-		if (hours > 0) {
-			time.append(hours).append(" hours ");
-			seconds -= TimeUnit.HOURS.toSeconds(hours);
-		}
-		/* Only include minute granularity if we're < 1 day. */
-		if (days < 1) {
-			long minutes = TimeUnit.SECONDS.toMinutes(seconds);
-			if (minutes > 0) {
-				time.append(minutes).append(" minutes ");
-				seconds -= TimeUnit.MINUTES.toSeconds(seconds);
-			}
-		}
-		/* Only bother to include seconds if we're < 1 minute */
-		if (time.length() == 0) {
-			time.append(seconds).append(" seconds ");
-		}
-		return time;
-	}
-}
-
-/**
- * A thread for executing transactions or data inserts to the database.
- *
- * @author cooperb
- *
+ * A thread that ends the warm-up at the start of a run, once a time has passed or the clients have done a
+ * number of operations. Operations during the warm-up run at the target like any other, but are measured
+ * apart under names prefixed with "WARMUP-", so that the main measurements and the overall throughput only
+ * cover the steady state.
  */
-class ClientThread extends Thread
+class WarmupThread extends Thread implements RunResults
 {
-  /** Counts down each of the clients completing. */
-  private final CountDownLatch _completeLatch;
-
-  private static boolean _spinSleep;
-  DB _db;
-  boolean _dotransactions;
-  Workload _workload;
-  int _opcount;
-  double _targetOpsPerMs;
-
-  int _opsdone;
-  int _threadid;
-  int _threadcount;
-  Object _workloadstate;
-  Properties _props;
-  long _targetOpsTickNs;
-  final Measurements _measurements;
-
-  /**
-   * Constructor.
-   *
-   * @param db the DB implementation to use
-   * @param dotransactions true to do transactions, false to insert data
-   * @param workload the workload to use
-   * @param props the properties defining the experiment
-   * @param opcount the number of operations (transactions or inserts) to do
-   * @param targetperthreadperms target number of operations per thread per ms
-   * @param completeLatch The latch tracking the completion of all clients.
-   */
-  public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, int opcount, double targetperthreadperms, CountDownLatch completeLatch)
-  {
-    _db=db;
-    _dotransactions=dotransactions;
-    _workload=workload;
-    _opcount=opcount;
-    _opsdone=0;
-    if(targetperthreadperms > 0){
-      _targetOpsPerMs=targetperthreadperms;
-      _targetOpsTickNs=(long)(1000000/_targetOpsPerMs);
-    }
-    _props=props;
-    _measurements = Measurements.getMeasurements();
-    _spinSleep = Boolean.valueOf(_props.getProperty("spin.sleep", "false"));
-    _completeLatch=completeLatch;
-  }
+  static final String SCOPE="WARMUP";
 
-  public int getOpsDone()
-  {
-    return _opsdone;
-  }
+  private final List<ClientThread> _clients;
+  private final long _ops;
+  private final long _timeNs;
 
-  @Override
-  public void run()
+  private long _startMs;
+  private long _endMs;
+  private long _endOps;
+  private boolean _ended=false;
+
+  /**
+   * Creates a new WarmupThread. Measurements are taken in the warm-up scope from now on.
+   *
+   * @param spec The length of the warm-up: a number of operations, or a time with a unit of s, m or h.
+   * @param clients The clients to count operations of.
+   * @throws NumberFormatException if the length cannot be parsed.
+   */
+  public WarmupThread(String spec, List<ClientThread> clients)
   {
-    try
-    {
-      _db.init();
-    }
-    catch (DBException e)
+    _clients=clients;
+    if (Character.isDigit(spec.charAt(spec.length()-1)))
     {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-      return;
+      _ops=Long.parseLong(spec);
+      _timeNs=0;
     }
-
-    try
+    else
     {
-      _workloadstate=_workload.initThread(_props,_threadid,_threadcount);
+      _ops=0;
+      _timeNs=TargetSchedule.parseTimeNs(spec);
     }
-    catch (WorkloadException e)
-    {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-      return;
-    }
-
-    //NOTE: Switching to using nanoTime and parkNanos for time management here such that the measurements
-    // and the client thread have the same view on time.
+    Measurements.getMeasurements().startScope(SCOPE);
+  }
 
-    //spread the thread operations out so they don't all hit the DB at the same time
-    // GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
-    // and the sleep() doesn't make sense for granularities < 1 ms anyway
-    if ((_targetOpsPerMs > 0) && (_targetOpsPerMs <= 1.0))
-    {
-      long randomMinorDelay = Utils.random().nextInt((int) _targetOpsTickNs);
-      sleepUntil(System.nanoTime() + randomMinorDelay);
-    }
+  /**
+   * Wait for the warm-up to end, unless the thread is interrupted because the clients have finished first.
+   */
+  @Override
+  public void run()
+  {
+    _startMs=System.currentTimeMillis();
+    long deadline=System.nanoTime()+_timeNs;
     try
     {
-      if (_dotransactions)
+      long now;
+      while ((now=System.nanoTime())<deadline)
       {
-        long startTimeNanos = System.nanoTime();
-
-        while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
-        {
-
-          if (!_workload.doTransaction(_db,_workloadstate))
-          {
-            break;
-          }
-
-          _opsdone++;
-
-          throttleNanos(startTimeNanos);
-        }
+        TimeUnit.NANOSECONDS.sleep(deadline-now);
       }
-      else
+      while (totalOps()<_ops)
       {
-        long startTimeNanos = System.nanoTime();
-
-        while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
-        {
-
-          if (!_workload.doInsert(_db,_workloadstate))
-          {
-            break;
-          }
-
-          _opsdone++;
-
-          throttleNanos(startTimeNanos);
-        }
+        Thread.sleep(1);
       }
     }
-    catch (Exception e)
-    {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-      System.exit(0);
-    }
-
-    try
-    {
-      _measurements.setIntendedStartTimeNs(0);
-      _db.cleanup();
-    }
-    catch (DBException e)
+    catch (InterruptedException e)
     {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
       return;
     }
-    finally
+    Measurements.getMeasurements().startScope("");
+    _endMs=System.currentTimeMillis();
+    _endOps=totalOps();
+    _ended=true;
+  }
+
+  private long totalOps()
+  {
+    long totalops=0;
+    for (ClientThread t : _clients)
     {
-      _completeLatch.countDown();
+      totalops+=t.getOpsDone();
     }
+    return totalops;
   }
 
-  static void sleepUntil(long deadline) {
-    long now = System.nanoTime();
-    while((now = System.nanoTime()) < deadline) {
-      if (!_spinSleep) {
-        LockSupport.parkNanos(deadline - now);
-      }
-    }
+  /**
+   * @return true if the warm-up ended before the clients finished. Only call once the thread has finished.
+   */
+  boolean hasEnded()
+  {
+    return _ended;
   }
-  private void throttleNanos(long startTimeNanos) {
-    //throttle the operations
-    if (_targetOpsPerMs > 0)
-    {
-      // delay until next tick
-      long deadline = startTimeNanos + _opsdone*_targetOpsTickNs;
-      sleepUntil(deadline);
-      _measurements.setIntendedStartTimeNs(deadline);
-    }
+
+  /**
+   * @return When the steady state started, in ms.
+   */
+  long getEndMs()
+  {
+    return _endMs;
   }
-  
+
   /**
-   * the total amount of work this thread is still expected to do
+   * @return The number of operations done during the warm-up.
    */
-  public int getOpsTodo()
+  long getOps()
   {
-    int todo = _opcount - _opsdone;
-    return todo < 0 ? 0 : todo;
+    return _endOps;
+  }
+
+  @Override
+  public void exportResults(MeasurementsExporter exporter) throws IOException
+  {
+    if (_ended)
+    {
+      long runtime=_endMs-_startMs;
+      exporter.write(SCOPE, "RunTime(ms)", runtime);
+      exporter.write(SCOPE, "Throughput(ops/sec)", 1000.0*_endOps/runtime);
+    }
   }
 }
 
@@ -464,11 +325,68 @@ public class Client
    */
   public static final String TARGET_PROPERTY="target";
 
+  /**
+   * A target throughput that changes during the run, e.g. "0-300s:10k,300-600s:20k" or "0-10m:1k-50k" for a
+   * linear ramp; see {@link TargetSchedule}. Overrides the "target" property. Measurements are reported
+   * separately for each stage, and the run ends with the last stage.
+   */
+  public static final String TARGET_SCHEDULE_PROPERTY="targetschedule";
+
+  /**
+   * The length of the warm-up at the start of the run: a number of operations, or a time such as "60s" or
+   * "5m". Operations during the warm-up are measured separately, under names prefixed with "WARMUP-", and
+   * the overall run time and throughput only cover the rest of the run.
+   */
+  public static final String WARMUP_PROPERTY="warmup";
+
+  /**
+   * A seed for the random numbers of the run. Each client thread draws from its own stream of the seed, so
+   * each thread makes the same choices in every run with the same seed and thread count.
+   */
+  public static final String SEED_PROPERTY="seed";
+
+  /**
+   * A plan file of phases to run one after the other in this JVM on the same DB instances; see
+   * {@link RunPlan} for its format.
+   */
+  public static final String PLAN_PROPERTY="plan";
+
   /**
    * The maximum amount of time (in seconds) for which the benchmark will be run.
    */
   public static final String MAX_EXECUTION_TIME = "maxexecutiontime";
 
+  /**
+   * How operations are issued. With "closed" (the default) each thread issues its next operation once the
+   * previous one has completed, throttled to its share of the target. With "fixed" or "poisson" the operations
+   * arrive on an open-loop schedule at the target rate and the client threads serve them as a worker pool.
+   * With "tokenbucket" the threads draw from one rate limiter at the target rate, so the threads held up by
+   * slow operations do not hold the total below the target.
+   */
+  public static final String ARRIVAL_PROCESS_PROPERTY="arrivalprocess";
+
+  /**
+   * The default arrival process.
+   */
+  public static final String ARRIVAL_PROCESS_PROPERTY_DEFAULT="closed";
+
+  /**
+   * The type of thread each client runs on: "platform" (the default) or "virtual". Virtual threads need a
+   * Java 21 runtime and allow many more concurrent clients per JVM.
+   */
+  public static final String THREAD_TYPE_PROPERTY="threadtype";
+
+  /**
+   * The default thread type.
+   */
+  public static final String THREAD_TYPE_PROPERTY_DEFAULT=ClientThreadFactory.PLATFORM;
+
+  /**
+   * The number of carrier threads virtual client threads are scheduled on. Defaults to the JVM's own
+   * default, the number of available processors.
+   */
+  public static final String VIRTUAL_THREAD_CARRIERS_PROPERTY="virtualthreads.carriers";
+
 
   public static void usageMessage()
   {
@@ -490,12 +408,61 @@ public class Client
     System.out.println("  -s:  show status during run (default: no status)");
     System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
     System.out.println("");
+    System.out.println("Set the \""+ARRIVAL_PROCESS_PROPERTY+"\" property to \"fixed\" or \"poisson\" to issue operations on an");
+    System.out.println("open-loop schedule at the target rate instead of one after another in each thread, or to");
+    System.out.println("\"tokenbucket\" to have the threads draw from one rate limiter at the target rate.");
+    System.out.println("");
+    System.out.println("Set the \""+TARGET_SCHEDULE_PROPERTY+"\" property to change the target during the run, e.g.");
+    System.out.println("\"0-300s:10k,300-600s:20k\" in steps or \"0-10m:1k-50k\" as a linear ramp.");
+    System.out.println("");
+    System.out.println("Set the \""+PLAN_PROPERTY+"\" property to a plan file to run a sequence of phases, each on its own");
+    System.out.println("line as a name followed by -load or -t, -P, -p and -target options, on the same DBs.");
+    System.out.println("");
+    System.out.println("Set the \""+WARMUP_PROPERTY+"\" property to a time such as \"60s\" or to a number of operations to");
+    System.out.println("measure the start of the run separately and leave it out of the overall throughput.");
+    System.out.println("");
+    System.out.println("Set the \""+SaturationSearch.SEARCH_PROPERTY+"\" property to \"step\" or \"binary\" and \""+SaturationSearch.SLO_PROPERTY+"\" to a");
+    System.out.println("latency limit in ms to search for the highest target that meets it.");
+    System.out.println("");
+    System.out.println("Set the \""+LiveMetrics.HTTP_PORT_PROPERTY+"\" property to a port to serve the throughput and latency of each");
+    System.out.println("operation as JSON at /metrics while the run is in progress, or \""+LiveMetrics.JMX_PROPERTY+"\" to true to");
+    System.out.println("publish them over JMX. The server listens on \""+LiveMetrics.HTTP_HOST_PROPERTY+"\", localhost by default, and");
+    System.out.println("with \""+LiveMetrics.HTTP_STOP_PROPERTY+"\" set to true a POST to /stop ends the run early.");
+    System.out.println("");
+    System.out.println("Set the \""+HarnessOverhead.PROPERTY+"\" property to true to export how much of each client thread's time");
+    System.out.println("goes to generating operations, the DB, recording measurements and the throttle.");
+    System.out.println("");
+    System.out.println("Set the \""+THREAD_TYPE_PROPERTY+"\" property to \"virtual\" to run each client on a virtual thread");
+    System.out.println("(requires Java 21), so that thousands of clients can run in one JVM.");
+    System.out.println("");
     System.out.println("Required properties:");
     System.out.println("  "+WORKLOAD_PROPERTY+": the name of the workload class to use (e.g. com.yahoo.ycsb.workloads.CoreWorkload)");
     System.out.println("");
     System.out.println("To run the transaction phase from multiple servers, start a separate client on each.");
     System.out.println("To run the load phase from multiple servers, start a separate client on each; additionally,");
-    System.out.println("use the \"insertcount\" and \"insertstart\" properties to divide up the records to be inserted");
+    System.out.println("use the \"insertcount\" and \"insertstart\" properties to divide up the records to be inserted.");
+    System.out.println("Alternatively start a com.yahoo.ycsb.Coordinator and set the \""+CoordinatorAgent.COORDINATOR_PROPERTY+"\" property of each");
+    System.out.println("client to its host:port; it divides up the work and merges the measurements.");
+  }
+
+  /**
+   * @return The number of operations a run asks for: the operation count for a transaction run, or the
+   *         insert count, which defaults to the record count, for a load.
+   */
+  static long getOpCount(Properties props, boolean dotransactions)
+  {
+    if (dotransactions)
+    {
+      return Long.parseLong(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
+    }
+    else if (props.containsKey(INSERT_COUNT_PROPERTY))
+    {
+      return Long.parseLong(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
+    }
+    else
+    {
+      return Long.parseLong(props.getProperty(RECORD_COUNT_PROPERTY, DEFAULT_RECORD_COUNT));
+    }
   }
 
   public static boolean checkRequiredProperties(Properties props)
@@ -515,40 +482,23 @@ public class Client
    * loaded from conf.
    * @throws IOException Either failed to write to output stream or failed to close it.
    */
-  private static void exportMeasurements(Properties props, int opcount, long runtime)
+  private static void exportMeasurements(Properties props, long opcount, long runtime, RunResults results)
       throws IOException
   {
     MeasurementsExporter exporter = null;
     try
     {
-      // if no destination file is provided the results will be written to stdout
-      OutputStream out;
-      String exportFile = props.getProperty(EXPORT_FILE_PROPERTY);
-      if (exportFile == null)
-      {
-        out = System.out;
-      } else
-      {
-        out = new FileOutputStream(exportFile);
-      }
-
-      // if no exporter is provided the default text one will be used
-      String exporterStr = props.getProperty(EXPORTER_PROPERTY, "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
-      try
-      {
-        exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
-      } catch (Exception e)
-      {
-        System.err.println("Could not find exporter " + exporterStr
-            + ", will use default text reporter.");
-        e.printStackTrace();
-        exporter = new TextMeasurementsExporter(out);
-      }
+      exporter = newExporter(props);
 
       exporter.write("OVERALL", "RunTime(ms)", runtime);
       double throughput = 1000.0 * (opcount) / (runtime);
       exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
 
+      if (results != null)
+      {
+        results.exportResults(exporter);
+      }
+
       Measurements.getMeasurements().exportMeasurements(exporter);
     } finally
     {
@@ -559,6 +509,37 @@ public class Client
     }
   }
 
+  /**
+   * Creates the exporter configured by the "exporter" and "exportfile" properties.
+   * @throws IOException Failed to open the export file.
+   */
+  static MeasurementsExporter newExporter(Properties props) throws IOException
+  {
+    // if no destination file is provided the results will be written to stdout
+    OutputStream out;
+    String exportFile = props.getProperty(EXPORT_FILE_PROPERTY);
+    if (exportFile == null)
+    {
+      out = System.out;
+    } else
+    {
+      out = new FileOutputStream(exportFile);
+    }
+
+    // if no exporter is provided the default text one will be used
+    String exporterStr = props.getProperty(EXPORTER_PROPERTY, "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+    try
+    {
+      return (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
+    } catch (Exception e)
+    {
+      System.err.println("Could not find exporter " + exporterStr
+          + ", will use default text reporter.");
+      e.printStackTrace();
+      return new TextMeasurementsExporter(out);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public static void main(String[] args)
   {
@@ -729,11 +710,45 @@ public class Client
 
     props=fileprops;
 
+    if (props.getProperty(SEED_PROPERTY)!=null)
+    {
+      try
+      {
+        Utils.setSeed(Long.parseLong(props.getProperty(SEED_PROPERTY)));
+      }
+      catch (NumberFormatException e)
+      {
+        System.out.println("Invalid \""+SEED_PROPERTY+"\": "+e.getMessage());
+        System.exit(0);
+      }
+    }
+
+    if (props.getProperty(PLAN_PROPERTY)!=null)
+    {
+      runPlan(props, args, status, label);
+    }
+
     if (!checkRequiredProperties(props))
     {
       System.exit(0);
     }
 
+    CoordinatorAgent agent=null;
+    if (props.getProperty(CoordinatorAgent.COORDINATOR_PROPERTY)!=null)
+    {
+      // the coordinator gives this client its share of the work
+      try
+      {
+        agent=new CoordinatorAgent(props.getProperty(CoordinatorAgent.COORDINATOR_PROPERTY));
+        agent.join(props, dotransactions);
+      }
+      catch (IOException e)
+      {
+        System.out.println("Could not join the coordinator: "+e.getMessage());
+        System.exit(0);
+      }
+    }
+
     long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
 
     //get number of threads, target and db
@@ -741,21 +756,70 @@ public class Client
     dbname=props.getProperty(DB_PROPERTY,"com.yahoo.ycsb.BasicDB");
     target=Integer.parseInt(props.getProperty(TARGET_PROPERTY,"0"));
 
+    TargetSchedule schedule=null;
+    if (props.getProperty(TARGET_SCHEDULE_PROPERTY)!=null)
+    {
+      try
+      {
+        schedule=TargetSchedule.parse(props.getProperty(TARGET_SCHEDULE_PROPERTY));
+      }
+      catch (IllegalArgumentException e)
+      {
+        System.out.println("Invalid \""+TARGET_SCHEDULE_PROPERTY+"\": "+e.getMessage());
+        System.exit(0);
+      }
+    }
+
     //compute the target throughput
     double targetperthreadperms=-1;
-    if (target>0)
+    if ((target>0) && (schedule==null))
     {
       double targetperthread=((double)target)/((double)threadcount);
       targetperthreadperms=targetperthread/1000.0;
     }
 
-    System.out.println("YCSB Client 0.1");
-    System.out.print("Command line:");
-    for (int i=0; i<args.length; i++)
+    String arrivalprocess=props.getProperty(ARRIVAL_PROCESS_PROPERTY,ARRIVAL_PROCESS_PROPERTY_DEFAULT);
+    boolean openloop=!arrivalprocess.equals(ARRIVAL_PROCESS_PROPERTY_DEFAULT);
+
+    SaturationSearch search=null;
+    if (props.getProperty(SaturationSearch.SEARCH_PROPERTY)!=null)
     {
-      System.out.print(" "+args[i]);
+      if (agent!=null)
+      {
+        System.out.println("A saturation search cannot run under a coordinator");
+        System.exit(0);
+      }
+      if (props.getProperty(WARMUP_PROPERTY)!=null)
+      {
+        System.out.println("A saturation search cannot be combined with a \""+WARMUP_PROPERTY+"\"");
+        System.exit(0);
+      }
+      try
+      {
+        search=new SaturationSearch(props, openloop ? arrivalprocess : null);
+      }
+      catch (IllegalArgumentException e)
+      {
+        System.out.println(e.getMessage());
+        System.exit(0);
+      }
     }
-    System.out.println();
+
+    if (openloop)
+    {
+      if ((target<=0) && (schedule==null) && (search==null))
+      {
+        System.out.println("An open-loop \""+ARRIVAL_PROCESS_PROPERTY+"\" requires a target throughput");
+        System.exit(0);
+      }
+      //latency only reflects queueing when measured from the scheduled arrival
+      if (!props.containsKey(Measurements.MEASUREMENT_INTERVAL))
+      {
+        props.setProperty(Measurements.MEASUREMENT_INTERVAL, "both");
+      }
+    }
+
+    printCommandLine(args);
     System.err.println("Loading workload...");
 
     //show a warning message that creating the workload is taking a while
@@ -781,6 +845,7 @@ public class Client
     warningthread.start();
 
     //set up measurements
+    configureLiveMetrics(props);
     Measurements.setProperties(props);
 
     //load the workload
@@ -814,29 +879,44 @@ public class Client
 
     warningthread.interrupt();
 
+    startLiveMetrics(props, workload);
+
     //run the workload
 
     System.err.println("Starting test.");
 
-    int opcount;
-    if (dotransactions)
-    {
-      opcount=Integer.parseInt(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
-    }
-    else
+    long opcount=getOpCount(props, dotransactions);
+
+    ArrivalScheduler scheduler=null;
+    if (openloop && (search==null))
     {
-      if (props.containsKey(INSERT_COUNT_PROPERTY))
+      try
       {
-        opcount=Integer.parseInt(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
+        scheduler=new ArrivalScheduler(arrivalprocess,
+            (schedule!=null) ? schedule : TargetSchedule.constant(target), opcount, ArrivalScheduler.getBurstNs(props));
       }
-      else
+      catch (IllegalArgumentException e)
       {
-        opcount=Integer.parseInt(props.getProperty(RECORD_COUNT_PROPERTY, DEFAULT_RECORD_COUNT));
+        System.out.println(e.getMessage());
+        System.exit(0);
       }
     }
 
+    ClientThreadFactory threadfactory=null;
+    try
+    {
+      threadfactory=ClientThreadFactory.create(props.getProperty(THREAD_TYPE_PROPERTY, THREAD_TYPE_PROPERTY_DEFAULT),
+          Integer.parseInt(props.getProperty(VIRTUAL_THREAD_CARRIERS_PROPERTY, "0")));
+    }
+    catch (IllegalArgumentException e)
+    {
+      System.out.println(e.getMessage());
+      System.exit(0);
+    }
+
     CountDownLatch completeLatch=new CountDownLatch(threadcount);
     final List<ClientThread> clients=new ArrayList<ClientThread>(threadcount);
+    final List<Thread> threads=new ArrayList<Thread>(threadcount);
     for (int threadid=0; threadid<threadcount; threadid++)
     {
       DB db=null;
@@ -851,7 +931,7 @@ public class Client
       }
 
 
-      int threadopcount = opcount/threadcount;
+      long threadopcount = opcount/threadcount;
 
       // ensure correct number of operations, in case opcount is not a multiple of threadcount
       if (threadid<opcount%threadcount)
@@ -859,28 +939,107 @@ public class Client
         ++threadopcount;
       }
 
-      ClientThread t=new ClientThread(db,dotransactions,workload,props,threadopcount, targetperthreadperms, completeLatch);
+      // in open-loop mode the scheduler hands out the operations, so no thread has a fixed share
+      if (scheduler!=null)
+      {
+        threadopcount=0;
+      }
+
+      // in closed-loop mode each thread follows its share of the schedule
+      TargetSchedule threadschedule=null;
+      if ((schedule!=null) && (scheduler==null))
+      {
+        threadschedule=schedule.scale(1.0/threadcount);
+      }
+
+      ClientThread t=new ClientThread(db,dotransactions,workload,props,threadopcount, targetperthreadperms, completeLatch, scheduler, threadschedule);
+      t.setThreadId(threadid, threadcount);
 
       clients.add(t);
     }
 
+    boolean standardstatus=false;
+    if (props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY,"").compareTo("timeseries")==0)
+    {
+      standardstatus=true;
+    }
+    int statusIntervalSeconds = Integer.parseInt(props.getProperty("status.interval","10"));
+    Measurements.getMeasurements().startTicker(TimeUnit.SECONDS.toMillis(statusIntervalSeconds));
+
+    if (search!=null)
+    {
+      // the search sets the target of each step and keeps the DBs open from one step to the next
+      long st=System.currentTimeMillis();
+      long opsDone=search.run(new StepRunner(clients, threadfactory), status, label, standardstatus, statusIntervalSeconds);
+      long en=System.currentTimeMillis();
+      finish(props, workload, opsDone, en - st, HarnessOverhead.report(clients, search));
+    }
+
+    for (ClientThread t : clients)
+    {
+      threads.add(threadfactory.newThread(t));
+    }
+
     StatusThread statusthread=null;
 
     if (status)
     {
-      boolean standardstatus=false;
-      if (props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY,"").compareTo("timeseries")==0)
-      {
-        standardstatus=true;
-      }
-      int statusIntervalSeconds = Integer.parseInt(props.getProperty("status.interval","10"));
       statusthread=new StatusThread(completeLatch,clients,label,standardstatus,statusIntervalSeconds);
       statusthread.start();
     }
 
+    StageThread stagethread=null;
+    if (schedule!=null)
+    {
+      stagethread=new StageThread(schedule, clients);
+    }
+
+    WarmupThread warmupthread=null;
+    if (props.getProperty(WARMUP_PROPERTY)!=null)
+    {
+      if (schedule!=null)
+      {
+        System.out.println("A \""+WARMUP_PROPERTY+"\" cannot be combined with a \""+TARGET_SCHEDULE_PROPERTY+"\"; use a first stage instead");
+        System.exit(0);
+      }
+      try
+      {
+        warmupthread=new WarmupThread(props.getProperty(WARMUP_PROPERTY), clients);
+      }
+      catch (NumberFormatException e)
+      {
+        System.out.println("Invalid \""+WARMUP_PROPERTY+"\": "+e.getMessage());
+        System.exit(0);
+      }
+    }
+
+    if (agent!=null)
+    {
+      try
+      {
+        agent.awaitStart();
+      }
+      catch (IOException e)
+      {
+        System.out.println("Lost the coordinator: "+e.getMessage());
+        System.exit(0);
+      }
+      agent.startReporting(clients);
+    }
+
     long st=System.currentTimeMillis();
 
-    for (Thread t : clients)
+    if (stagethread!=null)
+    {
+      stagethread.start();
+    }
+
+    if (warmupthread!=null)
+    {
+      warmupthread.start();
+    }
+
+    for (Thread t : threads)
     {
       t.start();
     }
@@ -888,18 +1047,18 @@ public class Client
     Thread terminator = null;
 
     if (maxExecutionTime > 0) {
-      terminator = new TerminatorThread(maxExecutionTime, clients, workload);
+      terminator = new TerminatorThread(maxExecutionTime, threads, workload);
       terminator.start();
     }
 
-    int opsDone = 0;
+    long opsDone = 0;
 
-    for (Thread t : clients)
+    for (int i=0; i<threads.size(); i++)
     {
       try
       {
-        t.join();
-        opsDone += ((ClientThread)t).getOpsDone();
+        threads.get(i).join();
+        opsDone += clients.get(i).getOpsDone();
       }
       catch (InterruptedException e)
       {
@@ -912,6 +1071,34 @@ public class Client
       terminator.interrupt();
     }
 
+    if (stagethread != null)
+    {
+      stagethread.interrupt();
+      try {
+        stagethread.join();
+      } catch (InterruptedException e) {
+      }
+    }
+
+    if (warmupthread != null)
+    {
+      warmupthread.interrupt();
+      try {
+        warmupthread.join();
+      } catch (InterruptedException e) {
+      }
+      if (warmupthread.hasEnded())
+      {
+        // the overall results only cover the steady state
+        st = warmupthread.getEndMs();
+        opsDone -= warmupthread.getOps();
+      }
+      else
+      {
+        System.err.println("The run ended before the warm-up did, so everything was measured as warm-up.");
+      }
+    }
+
     if (status)
     {
       // wake up status thread if it's asleep
@@ -923,9 +1110,163 @@ public class Client
       }
     }
 
+    if (agent != null)
+    {
+      try
+      {
+        agent.finish(opsDone, en - st);
+      }
+      catch (IOException e)
+      {
+        System.err.println("Could not report to the coordinator: " + e.getMessage());
+      }
+    }
+
+    finish(props, workload, opsDone, en - st,
+        HarnessOverhead.report(clients, (stagethread != null) ? stagethread : warmupthread));
+  }
+
+  private static void printCommandLine(String[] args)
+  {
+    System.out.println("YCSB Client 0.1");
+    System.out.print("Command line:");
+    for (int i=0; i<args.length; i++)
+    {
+      System.out.print(" "+args[i]);
+    }
+    System.out.println();
+  }
+
+  /**
+   * Run the phases of a plan on one set of clients, export the measurements and exit.
+   */
+  private static void runPlan(Properties props, String[] args, boolean status, String label)
+  {
+    RunPlan plan=null;
+    try
+    {
+      plan=RunPlan.parse(props.getProperty(PLAN_PROPERTY), props);
+    }
+    catch (IOException e)
+    {
+      System.out.println(e.getMessage());
+      System.exit(0);
+    }
+    catch (IllegalArgumentException e)
+    {
+      System.out.println("Invalid \""+PLAN_PROPERTY+"\": "+e.getMessage());
+      System.exit(0);
+    }
+
+    if (plan.hasOpenLoopPhase() && !props.containsKey(Measurements.MEASUREMENT_INTERVAL))
+    {
+      //latency only reflects queueing when measured from the scheduled arrival
+      props.setProperty(Measurements.MEASUREMENT_INTERVAL, "both");
+    }
+    configureLiveMetrics(props);
+    Measurements.setProperties(props);
+
+    printCommandLine(args);
+
+    ClientThreadFactory threadfactory=null;
     try
     {
-      workload.cleanup();
+      threadfactory=ClientThreadFactory.create(props.getProperty(THREAD_TYPE_PROPERTY, THREAD_TYPE_PROPERTY_DEFAULT),
+          Integer.parseInt(props.getProperty(VIRTUAL_THREAD_CARRIERS_PROPERTY, "0")));
+    }
+    catch (IllegalArgumentException e)
+    {
+      System.out.println(e.getMessage());
+      System.exit(0);
+    }
+
+    // the plan sets the workload of each phase on the clients before running it
+    int threadcount=Integer.parseInt(props.getProperty(THREAD_COUNT_PROPERTY,"1"));
+    String dbname=props.getProperty(DB_PROPERTY,"com.yahoo.ycsb.BasicDB");
+    CountDownLatch completeLatch=new CountDownLatch(threadcount);
+    List<ClientThread> clients=new ArrayList<ClientThread>(threadcount);
+    for (int threadid=0; threadid<threadcount; threadid++)
+    {
+      DB db=null;
+      try
+      {
+        db=DBFactory.newDB(dbname,props);
+      }
+      catch (UnknownDBException e)
+      {
+        System.out.println("Unknown DB "+dbname);
+        System.exit(0);
+      }
+      ClientThread client=new ClientThread(db, !plan.startsWithLoad(), null, props, 0, -1, completeLatch, null, null);
+      client.setThreadId(threadid, threadcount);
+      clients.add(client);
+    }
+
+    boolean standardstatus=false;
+    if (props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY,"").compareTo("timeseries")==0)
+    {
+      standardstatus=true;
+    }
+    int statusIntervalSeconds = Integer.parseInt(props.getProperty("status.interval","10"));
+
+    // each phase has its own workload, so the plan cannot be stopped through the live metrics
+    startLiveMetrics(props, null);
+    Measurements.getMeasurements().startTicker(TimeUnit.SECONDS.toMillis(statusIntervalSeconds));
+
+    long st=System.currentTimeMillis();
+    long opsDone=plan.run(new StepRunner(clients, threadfactory), status, label, standardstatus, statusIntervalSeconds);
+    long en=System.currentTimeMillis();
+    finish(props, null, opsDone, en - st, HarnessOverhead.report(clients, plan));
+  }
+
+  /**
+   * Check the live metrics properties before the measurements are set up.
+   */
+  private static void configureLiveMetrics(Properties props)
+  {
+    try
+    {
+      LiveMetrics.configure(props);
+    }
+    catch (IllegalArgumentException e)
+    {
+      System.out.println("Invalid \""+Measurements.MEASUREMENT_TYPE_PROPERTY+"\": "+e.getMessage());
+      System.exit(0);
+    }
+  }
+
+  /**
+   * Start the live metrics, if they are enabled.
+   */
+  private static void startLiveMetrics(Properties props, Workload workload)
+  {
+    try
+    {
+      LiveMetrics.start(props, workload);
+    }
+    catch (IOException e)
+    {
+      System.out.println("Could not start the live metrics: "+e.getMessage());
+      System.exit(0);
+    }
+    catch (NumberFormatException e)
+    {
+      System.out.println("Invalid \""+LiveMetrics.HTTP_PORT_PROPERTY+"\": "+e.getMessage());
+      System.exit(0);
+    }
+  }
+
+  /**
+   * Clean up the workload, if there is one left to clean up, export the measurements and exit.
+   */
+  private static void finish(Properties props, Workload workload, long opsDone, long runtime, RunResults results)
+  {
+    try
+    {
+      if (workload != null)
+      {
+        workload.cleanup();
+      }
     }
     catch (WorkloadException e)
     {
@@ -936,7 +1277,7 @@ public class Client
 
     try
     {
-      exportMeasurements(props, opsDone, en - st);
+      exportMeasurements(props, opsDone, runtime, results);
     } catch (IOException e)
     {
       System.err.println("Could not export measurements, error: " + e.getMessage());
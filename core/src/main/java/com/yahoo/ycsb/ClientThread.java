@@ -0,0 +1,415 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A thread for executing transactions or data inserts to the database. The work is run on a thread
+ * created by a {@link ClientThreadFactory}, which may be a platform or a virtual thread.
+ *
+ * @author cooperb
+ *
+ */
+class ClientThread implements Runnable
+{
+  /** Counts down each of the clients completing. */
+  private final CountDownLatch _completeLatch;
+
+  private static boolean _spinSleep;
+  DB _db;
+  boolean _dotransactions;
+  Workload _workload;
+  long _opcount;
+  double _targetOpsPerMs;
+
+  long _opsdone;
+  int _threadid;
+  int _threadcount;
+  Object _workloadstate;
+  Properties _props;
+  long _targetOpsTickNs;
+  final Measurements _measurements;
+  ArrivalScheduler _scheduler;
+  TargetSchedule _schedule;
+  /** When the next operation is due on this thread's schedule, relative to the start of its run. */
+  long _nextDueNs;
+  /** Where this thread's time goes, or null if not accounted for. */
+  final HarnessOverhead _overhead;
+
+  /**
+   * Constructor.
+   *
+   * @param db the DB implementation to use
+   * @param dotransactions true to do transactions, false to insert data
+   * @param workload the workload to use
+   * @param props the properties defining the experiment
+   * @param opcount the number of operations (transactions or inserts) to do
+   * @param targetperthreadperms target number of operations per thread per ms
+   * @param completeLatch The latch tracking the completion of all clients.
+   * @param scheduler The shared open-loop arrival schedule, or null to throttle on this thread's own schedule.
+   * @param schedule This thread's share of a changing target, used instead of targetperthreadperms, or null.
+   */
+  public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, long opcount, double targetperthreadperms, CountDownLatch completeLatch, ArrivalScheduler scheduler, TargetSchedule schedule)
+  {
+    _db=db;
+    _dotransactions=dotransactions;
+    _workload=workload;
+    _props=props;
+    _measurements = Measurements.getMeasurements();
+    _spinSleep = Boolean.valueOf(_props.getProperty("spin.sleep", "false"));
+    _completeLatch=completeLatch;
+    if (Boolean.parseBoolean(_props.getProperty(HarnessOverhead.PROPERTY, HarnessOverhead.PROPERTY_DEFAULT)))
+    {
+      _overhead=new HarnessOverhead();
+      if (db instanceof DBWrapper)
+      {
+        ((DBWrapper)db).setOverhead(_overhead);
+      }
+    }
+    else
+    {
+      _overhead=null;
+    }
+    reset(opcount, targetperthreadperms, scheduler, schedule);
+  }
+
+  /**
+   * Set up the next run of operations. A thread driven by a {@link StepRunner} runs several times on the
+   * same DB; this must only be called between runs.
+   *
+   * @param opcount the number of operations (transactions or inserts) to do
+   * @param targetperthreadperms target number of operations per thread per ms
+   * @param scheduler The shared open-loop arrival schedule, or null to throttle on this thread's own schedule.
+   * @param schedule This thread's share of a changing target, used instead of targetperthreadperms, or null.
+   */
+  void reset(long opcount, double targetperthreadperms, ArrivalScheduler scheduler, TargetSchedule schedule)
+  {
+    _opcount=opcount;
+    _opsdone=0;
+    _targetOpsPerMs=0;
+    if(targetperthreadperms > 0){
+      _targetOpsPerMs=targetperthreadperms;
+      _targetOpsTickNs=(long)(1000000/_targetOpsPerMs);
+    }
+    _scheduler=scheduler;
+    _schedule=schedule;
+  }
+
+  /**
+   * Switch to another workload for the next run. A thread driven by a {@link StepRunner} may run several
+   * workloads on the same DB; this must only be called between runs.
+   *
+   * @param workload the workload to use
+   * @param dotransactions true to do transactions, false to insert data
+   * @param props the properties defining the experiment
+   */
+  void setWorkload(Workload workload, boolean dotransactions, Properties props)
+  {
+    _workload=workload;
+    _dotransactions=dotransactions;
+    _props=props;
+  }
+
+  /**
+   * Number this thread among the client threads of the run.
+   */
+  void setThreadId(int threadid, int threadcount)
+  {
+    _threadid=threadid;
+    _threadcount=threadcount;
+  }
+
+  public long getOpsDone()
+  {
+    return _opsdone;
+  }
+
+  /**
+   * @return Where this thread's time went, or null if not accounted for.
+   */
+  HarnessOverhead getOverhead()
+  {
+    return _overhead;
+  }
+
+  @Override
+  public void run()
+  {
+    seedRandom();
+    if (!initDB() || !runWorkload())
+    {
+      return;
+    }
+
+    try
+    {
+      cleanupDB();
+    }
+    finally
+    {
+      _completeLatch.countDown();
+    }
+  }
+
+  /**
+   * Give this thread its own stream of random numbers, if the run is seeded.
+   */
+  void seedRandom()
+  {
+    Utils.seedThread(_threadid);
+  }
+
+  /**
+   * @return false if the DB could not be initialized.
+   */
+  boolean initDB()
+  {
+    try
+    {
+      _db.init();
+    }
+    catch (DBException e)
+    {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Run the workload's operations on this thread's DB.
+   *
+   * @return false if the workload could not be initialized for this thread.
+   */
+  boolean runWorkload()
+  {
+    try
+    {
+      _workloadstate=_workload.initThread(_props,_threadid,_threadcount);
+    }
+    catch (WorkloadException e)
+    {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      return false;
+    }
+
+    //NOTE: Switching to using nanoTime and parkNanos for time management here such that the measurements
+    // and the client thread have the same view on time.
+
+    //spread the thread operations out so they don't all hit the DB at the same time
+    // GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
+    // and the sleep() doesn't make sense for granularities < 1 ms anyway
+    if ((_scheduler == null) && (_targetOpsPerMs > 0) && (_targetOpsPerMs <= 1.0))
+    {
+      long randomMinorDelay = Utils.random().nextInt((int) _targetOpsTickNs);
+      sleepUntil(System.nanoTime() + randomMinorDelay);
+    }
+    try
+    {
+      if (_scheduler != null)
+      {
+        runOpenLoop();
+      }
+      else
+      {
+        long startTimeNanos = System.nanoTime();
+        boolean more = startSchedule(startTimeNanos);
+
+        while (more && ((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
+        {
+
+          if (!doOperation())
+          {
+            break;
+          }
+
+          _opsdone++;
+
+          more = throttleNanos(startTimeNanos);
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      System.exit(0);
+    }
+
+    try
+    {
+      _workload.cleanupThread(_db,_workloadstate);
+    }
+    catch (WorkloadException e)
+    {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+    }
+    _measurements.setIntendedStartTimeNs(0);
+    return true;
+  }
+
+  void cleanupDB()
+  {
+    try
+    {
+      _measurements.setIntendedStartTimeNs(0);
+      _db.cleanup();
+    }
+    catch (DBException e)
+    {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+    }
+  }
+
+  /**
+   * Executes operations as they fall due on the shared arrival schedule. Each operation is measured from
+   * its scheduled arrival, so time spent waiting for a free client thread counts towards its latency.
+   */
+  private void runOpenLoop()
+  {
+    while (!_workload.isStopRequested())
+    {
+      long arrival = _scheduler.nextArrivalNs();
+      if (arrival < 0)
+      {
+        break;
+      }
+
+      throttle(arrival);
+      _measurements.setIntendedStartTimeNs(arrival);
+
+      if (!doOperation())
+      {
+        break;
+      }
+
+      _opsdone++;
+    }
+  }
+
+  /**
+   * Do one transaction or insert.
+   *
+   * @return false if the workload has nothing more to do.
+   */
+  private boolean doOperation()
+  {
+    if (_overhead == null)
+    {
+      return _dotransactions ?
+          _workload.doTransaction(_db,_workloadstate) :
+          _workload.doInsert(_db,_workloadstate);
+    }
+    _overhead.startOperation();
+    long st = System.nanoTime();
+    boolean more = _dotransactions ?
+        _workload.doTransaction(_db,_workloadstate) :
+        _workload.doInsert(_db,_workloadstate);
+    _overhead.endOperation(System.nanoTime() - st);
+    return more;
+  }
+
+  /**
+   * Wait for the next operation to fall due.
+   */
+  private void throttle(long deadline)
+  {
+    if (_overhead == null)
+    {
+      sleepUntil(deadline);
+      return;
+    }
+    long st = System.nanoTime();
+    sleepUntil(deadline);
+    _overhead.addThrottle(System.nanoTime() - st);
+  }
+
+  static void sleepUntil(long deadline) {
+    long now = System.nanoTime();
+    while((now = System.nanoTime()) < deadline) {
+      if (!_spinSleep) {
+        LockSupport.parkNanos(deadline - now);
+      }
+    }
+  }
+
+  /**
+   * Wait for the first operation on this thread's target schedule, if it has one, to fall due.
+   *
+   * @return false if there is nothing to do because the schedule has no operations.
+   */
+  private boolean startSchedule(long startTimeNanos) {
+    if (_schedule != null)
+    {
+      _nextDueNs = (_schedule.rateAt(0) > 0) ? 0 : _schedule.nextNs(0, 1);
+      if (_nextDueNs < 0)
+      {
+        return false;
+      }
+      long deadline = startTimeNanos + _nextDueNs;
+      throttle(deadline);
+      _measurements.setIntendedStartTimeNs(deadline);
+    }
+    return true;
+  }
+
+  /**
+   * @return false if the target schedule has ended and the thread should stop.
+   */
+  private boolean throttleNanos(long startTimeNanos) {
+    //throttle the operations
+    if (_schedule != null)
+    {
+      // delay until the next operation is due at the current target
+      _nextDueNs = _schedule.nextNs(_nextDueNs, 1);
+      if (_nextDueNs < 0)
+      {
+        return false;
+      }
+      long deadline = startTimeNanos + _nextDueNs;
+      throttle(deadline);
+      _measurements.setIntendedStartTimeNs(deadline);
+    }
+    else if (_targetOpsPerMs > 0)
+    {
+      // delay until next tick
+      long deadline = startTimeNanos + _opsdone*_targetOpsTickNs;
+      throttle(deadline);
+      _measurements.setIntendedStartTimeNs(deadline);
+    }
+    return true;
+  }
+  
+  /**
+   * the total amount of work this thread is still expected to do
+   */
+  public long getOpsTodo()
+  {
+    long todo = _opcount - _opsdone;
+    return todo < 0 ? 0 : todo;
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads that run the client workers.
+ *
+ * "platform" threads are ordinary Java threads, one per client. "virtual" threads are scheduled by the JVM
+ * onto a small pool of carrier threads, which allows tens of thousands of concurrent clients without paying
+ * for a full stack and a kernel thread each. Virtual threads need a Java 21 runtime; they are created
+ * reflectively so the client still builds and runs on older JVMs.
+ */
+public abstract class ClientThreadFactory implements ThreadFactory
+{
+  /**
+   * One platform thread per client.
+   */
+  public static final String PLATFORM="platform";
+
+  /**
+   * One virtual thread per client.
+   */
+  public static final String VIRTUAL="virtual";
+
+  /**
+   * The JVM system property sizing the carrier pool virtual threads are scheduled on.
+   */
+  static final String CARRIER_PARALLELISM_PROPERTY="jdk.virtualThreadScheduler.parallelism";
+
+  private int _created=0;
+
+  /**
+   * Creates a factory for the given thread type.
+   *
+   * @param type Either {@link #PLATFORM} or {@link #VIRTUAL}.
+   * @param carriers The number of carrier threads for virtual threads, or 0 for the JVM default.
+   * @throws IllegalArgumentException if the type is unknown or not supported by this JVM.
+   */
+  public static ClientThreadFactory create(String type, int carriers)
+  {
+    if (type.equals(PLATFORM))
+    {
+      return new PlatformThreadFactory();
+    }
+    else if (type.equals(VIRTUAL))
+    {
+      // must be in place before the first virtual thread starts the default scheduler
+      if (carriers>0)
+      {
+        System.setProperty(CARRIER_PARALLELISM_PROPERTY, Integer.toString(carriers));
+      }
+      return new VirtualThreadFactory();
+    }
+    throw new IllegalArgumentException("unknown thread type \""+type+"\"");
+  }
+
+  @Override
+  public Thread newThread(Runnable r)
+  {
+    Thread t=newUnnamedThread(r);
+    t.setName("ClientThread-"+(_created++));
+    return t;
+  }
+
+  abstract Thread newUnnamedThread(Runnable r);
+
+  static class PlatformThreadFactory extends ClientThreadFactory
+  {
+    @Override
+    Thread newUnnamedThread(Runnable r)
+    {
+      return new Thread(r);
+    }
+  }
+
+  static class VirtualThreadFactory extends ClientThreadFactory
+  {
+    private final Object _builder;
+    private final Method _unstarted;
+
+    VirtualThreadFactory()
+    {
+      try
+      {
+        _builder=Thread.class.getMethod("ofVirtual").invoke(null);
+        _unstarted=Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+      }
+      catch (Exception e)
+      {
+        throw new IllegalArgumentException("virtual threads require a Java 21 or later runtime, this is "+
+            System.getProperty("java.version"), e);
+      }
+    }
+
+    @Override
+    Thread newUnnamedThread(Runnable r)
+    {
+      try
+      {
+        return (Thread)_unstarted.invoke(_builder, r);
+      }
+      catch (Exception e)
+      {
+        throw new IllegalStateException("could not create a virtual thread", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,627 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import com.yahoo.ycsb.measurements.OneMeasurementHdrHistogram;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+/**
+ * Runs one benchmark across several client processes and merges their results.
+ *
+ * Each agent is an ordinary {@link Client} started with the "coordinator" property set to the coordinator's
+ * host:port, on this machine or another. The coordinator waits for the expected number of agents to connect,
+ * divides the work between them (the records to insert in a load; the operations, target throughput and keys to
+ * insert in a transaction run) and starts them all at once. Agents stream the interval histograms of their HdrHistogram
+ * measurements as they go; the coordinator prints the merged status and, once every agent has finished,
+ * exports the merged measurements exactly as a single client would.
+ */
+public class Coordinator
+{
+  /**
+   * The default port the coordinator listens on.
+   */
+  public static final int DEFAULT_PORT=6789;
+
+  // agent to coordinator
+  static final byte HELLO=1;
+  static final byte READY=2;
+  static final byte INTERVAL=3;
+  static final byte PROGRESS=4;
+  static final byte RETURN_CODES=5;
+  static final byte DONE=6;
+
+  // coordinator to agent
+  static final byte CONFIG=11;
+  static final byte START=12;
+
+  /**
+   * What an agent reports about the run it has been asked to do.
+   */
+  static class Hello
+  {
+    boolean _dotransactions;
+    long _opcount;
+    long _insertstart;
+    int _target;
+
+    /**
+     * @return Whether another agent was asked to do the same run.
+     */
+    boolean agrees(Hello other)
+    {
+      return (_dotransactions==other._dotransactions) && (_opcount==other._opcount) &&
+          (_insertstart==other._insertstart) && (_target==other._target);
+    }
+  }
+
+  /**
+   * The connection to one agent.
+   */
+  class Agent extends Thread
+  {
+    final int _index;
+    final Socket _socket;
+    final DataInputStream _in;
+    final DataOutputStream _out;
+    Hello _hello;
+    volatile long _opsdone;
+    long _runtimeMs;
+
+    Agent(int index, Socket socket) throws IOException
+    {
+      super("Agent-"+index);
+      _index=index;
+      _socket=socket;
+      _in=new DataInputStream(socket.getInputStream());
+      _out=new DataOutputStream(socket.getOutputStream());
+    }
+
+    void readHello() throws IOException
+    {
+      expect(HELLO);
+      _hello=new Hello();
+      _hello._dotransactions=_in.readBoolean();
+      _hello._opcount=_in.readLong();
+      _hello._insertstart=_in.readLong();
+      _hello._target=_in.readInt();
+    }
+
+    void sendConfig(Properties overrides) throws IOException
+    {
+      _out.writeByte(CONFIG);
+      _out.writeInt(overrides.size());
+      for (String name : overrides.stringPropertyNames())
+      {
+        _out.writeUTF(name);
+        _out.writeUTF(overrides.getProperty(name));
+      }
+      _out.flush();
+    }
+
+    void readReady() throws IOException
+    {
+      expect(READY);
+    }
+
+    void sendStart() throws IOException
+    {
+      _out.writeByte(START);
+      _out.flush();
+    }
+
+    private void expect(byte message) throws IOException
+    {
+      byte got=_in.readByte();
+      if (got!=message)
+      {
+        throw new IOException("unexpected message "+got+" from agent "+_index);
+      }
+    }
+
+    /**
+     * Read the agent's measurements until it is done.
+     */
+    @Override
+    public void run()
+    {
+      try
+      {
+        while (true)
+        {
+          byte message=_in.readByte();
+          if (message==INTERVAL)
+          {
+            String name=_in.readUTF();
+            byte[] encoded=new byte[_in.readInt()];
+            _in.readFully(encoded);
+            addInterval(name, Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0));
+          }
+          else if (message==PROGRESS)
+          {
+            _opsdone=_in.readLong();
+          }
+          else if (message==RETURN_CODES)
+          {
+            int names=_in.readInt();
+            for (int i=0; i<names; i++)
+            {
+              String name=_in.readUTF();
+              int codes=_in.readInt();
+              for (int j=0; j<codes; j++)
+              {
+                addReturnCode(name, _in.readInt(), _in.readInt());
+              }
+            }
+          }
+          else if (message==DONE)
+          {
+            _opsdone=_in.readLong();
+            _runtimeMs=_in.readLong();
+            break;
+          }
+          else
+          {
+            throw new IOException("unexpected message "+message);
+          }
+        }
+      }
+      catch (EOFException e)
+      {
+        System.err.println("Agent "+_index+" disconnected before it finished");
+      }
+      catch (Exception e)
+      {
+        System.err.println("Lost agent "+_index+": "+e);
+      }
+      finally
+      {
+        try
+        {
+          _socket.close();
+        }
+        catch (IOException e)
+        {
+        }
+        _done.countDown();
+      }
+    }
+  }
+
+  private final List<Agent> _agents=new ArrayList<Agent>();
+  private final CountDownLatch _done;
+
+  /** The merged measurements since the last status line, by name. */
+  final Map<String,Histogram> _interval=new TreeMap<String,Histogram>();
+  /** The merged measurements of earlier intervals, by name. */
+  final Map<String,Histogram> _total=new TreeMap<String,Histogram>();
+  final Map<String,Map<Integer,Integer>> _returncodes=new TreeMap<String,Map<Integer,Integer>>();
+
+  Coordinator(int agents)
+  {
+    _done=new CountDownLatch(agents);
+  }
+
+  synchronized void addInterval(String name, Histogram interval)
+  {
+    Histogram merged=_interval.get(name);
+    if (merged==null)
+    {
+      merged=new Histogram(3);
+      _interval.put(name, merged);
+    }
+    merged.add(interval);
+  }
+
+  synchronized void addReturnCode(String name, int code, int count)
+  {
+    Map<Integer,Integer> codes=_returncodes.get(name);
+    if (codes==null)
+    {
+      codes=new TreeMap<Integer,Integer>();
+      _returncodes.put(name, codes);
+    }
+    Integer sofar=codes.get(code);
+    codes.put(code, (sofar==null) ? count : sofar+count);
+  }
+
+  /**
+   * Fold the current interval into the totals.
+   *
+   * @return A summary of the interval for the status line.
+   */
+  synchronized String takeInterval()
+  {
+    StringBuilder summary=new StringBuilder();
+    for (Map.Entry<String,Histogram> entry : _interval.entrySet())
+    {
+      summary.append(OneMeasurementHdrHistogram.summarize(entry.getKey(), entry.getValue())).append(' ');
+      Histogram total=_total.get(entry.getKey());
+      if (total==null)
+      {
+        total=new Histogram(3);
+        _total.put(entry.getKey(), total);
+      }
+      total.add(entry.getValue());
+    }
+    _interval.clear();
+    return summary.toString();
+  }
+
+  /**
+   * Work out the share of a run each agent does, given what the agents were asked to do.
+   *
+   * @throws IllegalArgumentException If the agents were asked to do different runs.
+   */
+  static List<Properties> split(List<Hello> hellos)
+  {
+    Hello hello=hellos.get(0);
+    for (int i=1; i<hellos.size(); i++)
+    {
+      if (!hello.agrees(hellos.get(i)))
+      {
+        throw new IllegalArgumentException("agent "+i+" was started with a different operation count, "+
+            "insertstart, target or phase than agent 0");
+      }
+    }
+    int agents=hellos.size();
+    List<Properties> overrides=new ArrayList<Properties>(agents);
+    long insertstart=hello._insertstart;
+    for (int i=0; i<agents; i++)
+    {
+      Properties p=new Properties();
+      // the coordinator merges HdrHistogram intervals
+      p.setProperty("measurementtype", "hdrhistogram");
+
+      long opcount=share(hello._opcount, agents, i);
+      if (hello._dotransactions)
+      {
+        p.setProperty(Client.OPERATION_COUNT_PROPERTY, Long.toString(opcount));
+        // the agents insert every agents-th key past the loaded records, each from its own offset
+        p.setProperty(CoreWorkload.TRANSACTION_INSERT_OFFSET_PROPERTY, Integer.toString(i));
+        p.setProperty(CoreWorkload.TRANSACTION_INSERT_STRIDE_PROPERTY, Integer.toString(agents));
+      }
+      else
+      {
+        p.setProperty(Client.INSERT_COUNT_PROPERTY, Long.toString(opcount));
+        p.setProperty("insertstart", Long.toString(insertstart));
+        insertstart+=opcount;
+      }
+      if (hello._target>0)
+      {
+        p.setProperty(Client.TARGET_PROPERTY, Long.toString(Math.max(1, share(hello._target, agents, i))));
+      }
+      overrides.add(p);
+    }
+    return overrides;
+  }
+
+  private static long share(long total, int parts, int part)
+  {
+    return total/parts+((part<total%parts) ? 1 : 0);
+  }
+
+  private long totalOps()
+  {
+    long ops=0;
+    for (Agent a : _agents)
+    {
+      ops+=a._opsdone;
+    }
+    return ops;
+  }
+
+  /**
+   * @param elapsedMs How long the coordinator ran the agents, the run time if no agent reported its own.
+   */
+  private void export(Properties props, long elapsedMs) throws IOException
+  {
+    long runtime=0;
+    for (Agent a : _agents)
+    {
+      runtime=Math.max(runtime, a._runtimeMs);
+    }
+    if (runtime==0)
+    {
+      System.err.println("No agent finished; using the coordinator's run time.");
+      runtime=Math.max(1, elapsedMs);
+    }
+    takeInterval();
+
+    MeasurementsExporter exporter=null;
+    try
+    {
+      exporter=Client.newExporter(props);
+      exporter.write("OVERALL", "RunTime(ms)", runtime);
+      exporter.write("OVERALL", "Throughput(ops/sec)", 1000.0*totalOps()/runtime);
+      synchronized (this)
+      {
+        for (Map.Entry<String,Histogram> entry : _total.entrySet())
+        {
+          OneMeasurementHdrHistogram.exportHistogram(exporter, entry.getKey(), entry.getValue());
+          Map<Integer,Integer> codes=_returncodes.get(entry.getKey());
+          if (codes!=null)
+          {
+            for (Map.Entry<Integer,Integer> code : codes.entrySet())
+            {
+              exporter.write(entry.getKey(), "Return="+code.getKey(), code.getValue());
+            }
+          }
+        }
+      }
+    }
+    finally
+    {
+      if (exporter!=null)
+      {
+        exporter.close();
+      }
+    }
+  }
+
+  public static void usageMessage()
+  {
+    System.out.println("Usage: java com.yahoo.ycsb.Coordinator [options]");
+    System.out.println("Options:");
+    System.out.println("  -agents n: wait for n agents to connect (required)");
+    System.out.println("  -port n: listen for agents on port n (default: "+DEFAULT_PORT+")");
+    System.out.println("  -p name=value: set the \"exporter\", \"exportfile\" or \"status.interval\" property");
+    System.out.println("  -s:  show merged status during run (default: no status)");
+    System.out.println("  -l label:  use label for status");
+    System.out.println("");
+    System.out.println("Start each agent as a client with the same options as a single client would have, plus");
+    System.out.println("  -p coordinator=host:port");
+    System.out.println("The records to load, the operations, the target throughput and the keys to insert are divided");
+    System.out.println("between them.");
+  }
+
+  public static void main(String[] args)
+  {
+    int agents=0;
+    int port=DEFAULT_PORT;
+    boolean status=false;
+    String label="";
+    Properties props=new Properties();
+
+    int argindex=0;
+    while (argindex<args.length)
+    {
+      String arg=args[argindex++];
+      if ((argindex>=args.length) && !arg.equals("-s"))
+      {
+        usageMessage();
+        System.exit(0);
+      }
+      if (arg.equals("-agents"))
+      {
+        agents=Integer.parseInt(args[argindex++]);
+      }
+      else if (arg.equals("-port"))
+      {
+        port=Integer.parseInt(args[argindex++]);
+      }
+      else if (arg.equals("-l"))
+      {
+        label=args[argindex++];
+      }
+      else if (arg.equals("-db"))
+      {
+        // passed by bin/ycsb, the agents talk to the database
+        argindex++;
+      }
+      else if (arg.equals("-s"))
+      {
+        status=true;
+      }
+      else if (arg.equals("-p"))
+      {
+        String prop=args[argindex++];
+        int eq=prop.indexOf('=');
+        if (eq<0)
+        {
+          usageMessage();
+          System.exit(0);
+        }
+        props.setProperty(prop.substring(0, eq), prop.substring(eq+1));
+      }
+      else
+      {
+        System.out.println("Unknown option "+arg);
+        usageMessage();
+        System.exit(0);
+      }
+    }
+    if (agents<1)
+    {
+      usageMessage();
+      System.exit(0);
+    }
+
+    Coordinator coordinator=new Coordinator(agents);
+    try
+    {
+      coordinator.run(port, status, label, props);
+    }
+    catch (IllegalArgumentException e)
+    {
+      System.err.println("Coordinator failed: "+e.getMessage());
+      System.exit(-1);
+    }
+    catch (IOException e)
+    {
+      System.err.println("Coordinator failed: "+e.getMessage());
+      e.printStackTrace();
+      System.exit(-1);
+    }
+    System.exit(0);
+  }
+
+  private void run(int port, boolean status, String label, Properties props) throws IOException
+  {
+    int agents=(int)_done.getCount();
+    ServerSocket server=new ServerSocket(port);
+    System.err.println("Waiting for "+agents+" agents on port "+server.getLocalPort()+"...");
+    try
+    {
+      for (int i=0; i<agents; i++)
+      {
+        Agent agent=new Agent(i, server.accept());
+        agent.readHello();
+        _agents.add(agent);
+        System.err.println("Agent "+i+" connected from "+agent._socket.getRemoteSocketAddress());
+      }
+    }
+    finally
+    {
+      server.close();
+    }
+
+    List<Hello> hellos=new ArrayList<Hello>();
+    for (Agent agent : _agents)
+    {
+      hellos.add(agent._hello);
+    }
+    List<Properties> overrides=split(hellos);
+    for (Agent agent : _agents)
+    {
+      agent.sendConfig(overrides.get(agent._index));
+    }
+    for (Agent agent : _agents)
+    {
+      agent.readReady();
+    }
+    for (Agent agent : _agents)
+    {
+      agent.start();
+      agent.sendStart();
+    }
+    System.err.println("Started "+agents+" agents.");
+
+    long sleeptimeNs=TimeUnit.SECONDS.toNanos(Integer.parseInt(props.getProperty("status.interval", "10")));
+    long startTimeMs=System.currentTimeMillis();
+    long startIntervalMs=startTimeMs;
+    long lastTotalOps=0;
+    boolean alldone=false;
+    while (!alldone)
+    {
+      try
+      {
+        alldone=_done.await(sleeptimeNs, TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        alldone=true;
+      }
+      if (status && !alldone)
+      {
+        long nowMs=System.currentTimeMillis();
+        long totalops=totalOps();
+        double curthroughput=1000.0*(totalops-lastTotalOps)/(nowMs-startIntervalMs);
+        String msg=label+new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS").format(new Date())+" "+
+            ((nowMs-startTimeMs)/1000)+" sec: "+totalops+" operations; "+
+            new DecimalFormat("#.##").format(curthroughput)+" current ops/sec; "+takeInterval();
+        System.err.println(msg);
+        lastTotalOps=totalops;
+        startIntervalMs=nowMs;
+      }
+    }
+
+    export(props, System.currentTimeMillis()-startTimeMs);
+  }
+
+  /**
+   * Tell the coordinator what an agent was asked to do.
+   */
+  static void writeHello(DataOutputStream out, Hello hello) throws IOException
+  {
+    out.writeByte(HELLO);
+    out.writeBoolean(hello._dotransactions);
+    out.writeLong(hello._opcount);
+    out.writeLong(hello._insertstart);
+    out.writeInt(hello._target);
+  }
+
+  /**
+   * Send an interval histogram to the coordinator.
+   */
+  static void writeInterval(DataOutputStream out, String name, Histogram interval) throws IOException
+  {
+    ByteBuffer buffer=ByteBuffer.allocate(interval.getNeededByteBufferCapacity());
+    int length=interval.encodeIntoCompressedByteBuffer(buffer);
+    out.writeByte(INTERVAL);
+    out.writeUTF(name);
+    out.writeInt(length);
+    out.write(buffer.array(), 0, length);
+  }
+
+  /**
+   * Send the return codes counted by an agent to the coordinator.
+   */
+  static void writeReturnCodes(DataOutputStream out, Map<String,Map<Integer,Integer>> returncodes) throws IOException
+  {
+    out.writeByte(RETURN_CODES);
+    out.writeInt(returncodes.size());
+    for (Map.Entry<String,Map<Integer,Integer>> entry : returncodes.entrySet())
+    {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (Map.Entry<Integer,Integer> code : entry.getValue().entrySet())
+      {
+        out.writeInt(code.getKey());
+        out.writeInt(code.getValue());
+      }
+    }
+  }
+
+  /**
+   * Read the configuration the coordinator sends an agent.
+   */
+  static Properties readConfig(DataInputStream in) throws IOException
+  {
+    if (in.readByte()!=CONFIG)
+    {
+      throw new IOException("expected the configuration from the coordinator");
+    }
+    Properties config=new Properties();
+    int count=in.readInt();
+    for (int i=0; i<count; i++)
+    {
+      config.setProperty(in.readUTF(), in.readUTF());
+    }
+    return config;
+  }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+
+import com.yahoo.ycsb.measurements.IntervalListener;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * The side of a {@link Coordinator} connection that runs in each client process.
+ *
+ * The agent announces the run it was started with, takes the coordinator's share of it, waits to be started
+ * and then streams every interval histogram its measurements take, along with its progress.
+ */
+public class CoordinatorAgent implements IntervalListener
+{
+  /**
+   * The host:port of the coordinator to report to. The client runs standalone when it is not set.
+   */
+  public static final String COORDINATOR_PROPERTY="coordinator";
+
+  private final Socket _socket;
+  private final DataInputStream _in;
+  private final DataOutputStream _out;
+  /** The clients to report the progress of, once reporting has started. */
+  private volatile List<ClientThread> _clients;
+
+  /**
+   * Connect to the coordinator.
+   *
+   * @param address The coordinator's host:port, or host for the default port.
+   */
+  public CoordinatorAgent(String address) throws IOException
+  {
+    int colon=address.lastIndexOf(':');
+    String host=(colon<0) ? address : address.substring(0, colon);
+    int port=(colon<0) ? Coordinator.DEFAULT_PORT : Integer.parseInt(address.substring(colon+1));
+    _socket=new Socket(host, port);
+    _socket.setTcpNoDelay(true);
+    _in=new DataInputStream(_socket.getInputStream());
+    _out=new DataOutputStream(new BufferedOutputStream(_socket.getOutputStream()));
+  }
+
+  /**
+   * Tell the coordinator what this client was asked to do, and get back its share of the work.
+   *
+   * @param props The properties of the run; the coordinator's overrides are applied to them.
+   * @param dotransactions true for a transaction run, false for a load.
+   */
+  public void join(Properties props, boolean dotransactions) throws IOException
+  {
+    Coordinator.Hello hello=new Coordinator.Hello();
+    hello._dotransactions=dotransactions;
+    hello._opcount=Client.getOpCount(props, dotransactions);
+    hello._insertstart=Long.parseLong(props.getProperty("insertstart", "0"));
+    hello._target=Integer.parseInt(props.getProperty(Client.TARGET_PROPERTY, "0"));
+
+    synchronized (_out)
+    {
+      Coordinator.writeHello(_out, hello);
+      _out.flush();
+    }
+
+    Properties config=Coordinator.readConfig(_in);
+    for (String name : config.stringPropertyNames())
+    {
+      props.setProperty(name, config.getProperty(name));
+    }
+  }
+
+  /**
+   * Tell the coordinator this client is ready and wait for it to start every client.
+   */
+  public void awaitStart() throws IOException
+  {
+    synchronized (_out)
+    {
+      _out.writeByte(Coordinator.READY);
+      _out.flush();
+    }
+    if (_in.readByte()!=Coordinator.START)
+    {
+      throw new IOException("expected the coordinator to start the run");
+    }
+  }
+
+  /**
+   * Start streaming measurements to the coordinator, as the status thread or the measurements' ticker takes
+   * their intervals.
+   *
+   * @param clients The clients to report the progress of.
+   */
+  public void startReporting(List<ClientThread> clients)
+  {
+    _clients=clients;
+    Measurements.getMeasurements().addIntervalListener(this);
+  }
+
+  /**
+   * Send the number of operations done so far, after the intervals taken with it.
+   */
+  @Override
+  public void intervalsTaken()
+  {
+    List<ClientThread> clients=_clients;
+    long opsdone=0;
+    for (ClientThread t : clients)
+    {
+      opsdone+=t.getOpsDone();
+    }
+    synchronized (_out)
+    {
+      try
+      {
+        _out.writeByte(Coordinator.PROGRESS);
+        _out.writeLong(opsdone);
+        _out.flush();
+      }
+      catch (IOException e)
+      {
+        lost(e);
+      }
+    }
+  }
+
+  @Override
+  public void intervalHistogram(String name, Histogram interval)
+  {
+    synchronized (_out)
+    {
+      try
+      {
+        Coordinator.writeInterval(_out, name, interval);
+      }
+      catch (IOException e)
+      {
+        lost(e);
+      }
+    }
+  }
+
+  private void lost(IOException e)
+  {
+    System.err.println("Lost the connection to the coordinator: "+e.getMessage());
+    System.exit(-1);
+  }
+
+  /**
+   * Send the last measurements and the outcome of the run, and disconnect.
+   *
+   * @param opsDone The number of operations done.
+   * @param runtime The run time in ms.
+   */
+  public void finish(long opsDone, long runtime) throws IOException
+  {
+    Measurements measurements=Measurements.getMeasurements();
+    measurements.getSummary();
+    measurements.removeIntervalListener(this);
+    synchronized (_out)
+    {
+      Coordinator.writeReturnCodes(_out, measurements.getReturnCodes());
+      _out.writeByte(Coordinator.DONE);
+      _out.writeLong(opsDone);
+      _out.writeLong(runtime);
+      _out.flush();
+    }
+    _socket.close();
+  }
+}
@@ -18,6 +18,7 @@
 package com.yahoo.ycsb;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
@@ -134,4 +135,96 @@ public abstract class DB
 	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
 	 */
 	public abstract int delete(String table, String key);
+
+	/**
+	 * Read a batch of records from the database. The default implementation reads the records one at a time;
+	 * override it if the database has a bulk read path.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to read.
+	 * @param fields The list of fields to read, or null for all of them
+	 * @param results One HashMap of field/value pairs per key, in the same order as the keys
+	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
+	 */
+	public int batchRead(String table, List<String> keys, Set<String> fields, List<HashMap<String,ByteIterator>> results)
+	{
+		int ret=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			int res=read(table,keys.get(i),fields,results.get(i));
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Insert a batch of records in the database. The default implementation inserts the records one at a time;
+	 * override it if the database has a bulk load path.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values One HashMap of field/value pairs per key, in the same order as the keys
+	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
+	 */
+	public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		int ret=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			int res=insert(table,keys.get(i),values.get(i));
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Update a batch of records in the database. The default implementation updates the records one at a time;
+	 * override it if the database has a bulk write path.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to write.
+	 * @param values One HashMap of field/value pairs per key, in the same order as the keys
+	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
+	 */
+	public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		int ret=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			int res=update(table,keys.get(i),values.get(i));
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Delete a batch of records from the database. The default implementation deletes the records one at a time;
+	 * override it if the database has a bulk delete path.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to delete.
+	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
+	 */
+	public int batchDelete(String table, List<String> keys)
+	{
+		int ret=0;
+		for (String key : keys)
+		{
+			int res=delete(table,key);
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
 }
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending return code of an operation issued through an {@link AsyncDB}. The binding completes the
+ * future from whatever thread its driver calls back on; callbacks registered with
+ * {@link #addCallback(Callback)} run on that thread as soon as the result is known.
+ */
+public class DBFuture implements Future<Integer>
+{
+  /**
+   * Notified when the operation completes.
+   */
+  public interface Callback
+  {
+    /**
+     * @param code The return code of the operation: zero on success, non-zero on error.
+     */
+    void onComplete(int code);
+  }
+
+  private final CountDownLatch _done=new CountDownLatch(1);
+  private volatile int _code;
+  private List<Callback> _callbacks;
+  private boolean _completed;
+
+  /**
+   * Create a future that is already complete, for bindings that can answer without going to the server.
+   */
+  public static DBFuture completed(int code)
+  {
+    DBFuture f=new DBFuture();
+    f.complete(code);
+    return f;
+  }
+
+  /**
+   * Complete the operation. Only the first call has any effect.
+   *
+   * @param code Zero on success, a non-zero error code on error.
+   */
+  public void complete(int code)
+  {
+    List<Callback> callbacks;
+    synchronized (this)
+    {
+      if (_completed)
+      {
+        return;
+      }
+      _completed=true;
+      _code=code;
+      callbacks=_callbacks;
+      _callbacks=null;
+    }
+    _done.countDown();
+    if (callbacks!=null)
+    {
+      for (Callback c : callbacks)
+      {
+        c.onComplete(code);
+      }
+    }
+  }
+
+  /**
+   * Register a callback for when the operation completes. If it has completed already the callback runs
+   * immediately on the calling thread.
+   */
+  public void addCallback(Callback callback)
+  {
+    synchronized (this)
+    {
+      if (!_completed)
+      {
+        if (_callbacks==null)
+        {
+          _callbacks=new ArrayList<Callback>(1);
+        }
+        _callbacks.add(callback);
+        return;
+      }
+    }
+    callback.onComplete(_code);
+  }
+
+  /**
+   * Wait for the operation to complete, ignoring interrupts.
+   *
+   * @return The return code of the operation.
+   */
+  public int await()
+  {
+    boolean interrupted=false;
+    while (true)
+    {
+      try
+      {
+        _done.await();
+        break;
+      }
+      catch (InterruptedException e)
+      {
+        interrupted=true;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+    return _code;
+  }
+
+  /**
+   * Operations cannot be cancelled once issued.
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning)
+  {
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean isDone()
+  {
+    return _done.getCount()==0;
+  }
+
+  @Override
+  public Integer get() throws InterruptedException, ExecutionException
+  {
+    _done.await();
+    return _code;
+  }
+
+  @Override
+  public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+  {
+    if (!_done.await(timeout, unit))
+    {
+      throw new TimeoutException();
+    }
+    return _code;
+  }
+}
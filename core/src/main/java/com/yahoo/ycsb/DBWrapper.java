@@ -18,24 +18,91 @@
 package com.yahoo.ycsb;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
 
+import com.yahoo.ycsb.measurements.MeasurementHandle;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OperationEvents;
+import com.yahoo.ycsb.measurements.SampleRecorder;
 
 /**
  * Wrapper around a "real" DB that measures latencies and counts return codes.
  */
 public class DBWrapper extends DB
 {
+	/**
+	 * Appended to the name of an operation to measure the records of its batches under, e.g. "READ-ITEM".
+	 */
+	public static final String ITEM_SUFFIX="-ITEM";
+
 	DB _db;
 	Measurements _measurements;
+	/** Where the client thread's time goes, or null if not accounted for. */
+	HarnessOverhead _overhead;
+
+	/** The measurements of each operation, resolved once rather than looked up by name on every operation. */
+	final MeasurementHandle _read;
+	final MeasurementHandle _scan;
+	final MeasurementHandle _update;
+	final MeasurementHandle _insert;
+	final MeasurementHandle _delete;
+	final MeasurementHandle _cleanup;
+	final MeasurementHandle _batchRead;
+	final MeasurementHandle _batchInsert;
+	final MeasurementHandle _batchUpdate;
+	final MeasurementHandle _batchDelete;
+	final MeasurementHandle _readItem;
+	final MeasurementHandle _insertItem;
+	final MeasurementHandle _updateItem;
+	final MeasurementHandle _deleteItem;
+	/** Whether to measure the bytes written and returned by each operation. */
+	final boolean _measureBytes;
+	/** Where this thread records each of its operations, or null if they are not recorded. */
+	final SampleRecorder.Region _samples;
+	/** Emits a Flight Recorder event for each operation, or null if none are emitted. */
+	final OperationEvents _events;
+	/** The event this thread reuses for each of its operations, or null if none are emitted. */
+	final Object _event;
 
 	public DBWrapper(DB db)
+	{
+		this(db, Measurements.getMeasurements());
+	}
+
+	DBWrapper(DB db, Measurements measurements)
 	{
 		_db=db;
-		_measurements=Measurements.getMeasurements();
+		_measurements=measurements;
+		_read=_measurements.getHandle("READ");
+		_scan=_measurements.getHandle("SCAN");
+		_update=_measurements.getHandle("UPDATE");
+		_insert=_measurements.getHandle("INSERT");
+		_delete=_measurements.getHandle("DELETE");
+		_cleanup=_measurements.getHandle("CLEANUP");
+		_batchRead=_measurements.getHandle("BATCH-READ");
+		_batchInsert=_measurements.getHandle("BATCH-INSERT");
+		_batchUpdate=_measurements.getHandle("BATCH-UPDATE");
+		_batchDelete=_measurements.getHandle("BATCH-DELETE");
+		_readItem=_measurements.getHandle("READ"+ITEM_SUFFIX);
+		_insertItem=_measurements.getHandle("INSERT"+ITEM_SUFFIX);
+		_updateItem=_measurements.getHandle("UPDATE"+ITEM_SUFFIX);
+		_deleteItem=_measurements.getHandle("DELETE"+ITEM_SUFFIX);
+		_measureBytes=_measurements.isMeasuringBytes();
+		_samples=_measurements.newSampleRegion();
+		_events=_measurements.getOperationEvents();
+		_event=(_events==null) ? null : _events.newEvent();
+	}
+
+	/**
+	 * Account for the time of each operation and of recording its measurements.
+	 */
+	void setOverhead(HarnessOverhead overhead)
+	{
+		_overhead=overhead;
 	}
 
 	/**
@@ -73,7 +140,8 @@ public class DBWrapper extends DB
         long st = System.nanoTime();
 		_db.cleanup();
         long en=System.nanoTime();
-        measure("CLEANUP",ist, st, en);
+        _cleanup.measure((int)((en-st)/1000));
+        _cleanup.measureIntended((int)((en-ist)/1000));
 	}
 
 	/**
@@ -88,11 +156,15 @@ public class DBWrapper extends DB
 	public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
 	{
 	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
 	    long st = System.nanoTime();
 	    int res=_db.read(table,key,fields,result);
 		long en=System.nanoTime();
-		measure("READ",ist, st, en);
-	    _measurements.reportReturnCode("READ",res);
+		measure(_read,res,ist, st, en);
+		sample(SampleRecorder.READ,key,st,en,res);
+		event(event,SampleRecorder.READ,table,key,ist,st,en,res);
+		reportBytes(_read,res,bytes(result));
+		account(st, en);
 		return res;
 	}
 
@@ -109,17 +181,27 @@ public class DBWrapper extends DB
 	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
 	{
 	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
 	    long st = System.nanoTime();
 	    int res=_db.scan(table,startkey,recordcount,fields,result);
 		long en=System.nanoTime();
-		measure("SCAN",ist, st, en);
-	    _measurements.reportReturnCode("SCAN",res);
+		measure(_scan,res,ist, st, en);
+		sample(SampleRecorder.SCAN,startkey,st,en,res);
+		event(event,SampleRecorder.SCAN,table,startkey,ist,st,en,res);
+		reportBytes(_scan,res,bytes(result));
+		account(st, en);
 		return res;
 	}
 
-    private void measure(String op, long intendedStartTimeNanos, long startTimeNanos, long endTimeNanos) {
-        _measurements.measure(op, (int)((endTimeNanos-startTimeNanos)/1000));
-	    _measurements.measureIntended(op, (int)((endTimeNanos-intendedStartTimeNanos)/1000));
+    /**
+     * Measure an operation and its return code, under op, or under "op-FAILED" if it failed and failures are
+     * measured apart.
+     */
+    void measure(MeasurementHandle op, int res, long intendedStartTimeNanos, long startTimeNanos, long endTimeNanos) {
+        MeasurementHandle outcome=op.forReturnCode(res);
+        outcome.measure((int)((endTimeNanos-startTimeNanos)/1000));
+	    outcome.measureIntended((int)((endTimeNanos-intendedStartTimeNanos)/1000));
+	    outcome.reportReturnCode(res);
     }
 	
 	/**
@@ -133,12 +215,17 @@ public class DBWrapper extends DB
 	 */
 	public int update(String table, String key, HashMap<String,ByteIterator> values)
 	{
+	    long bytes=bytes(values);
 	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
 	    long st = System.nanoTime();
 		int res=_db.update(table,key,values);
 		long en=System.nanoTime();
-		measure("UPDATE",ist, st, en);
-		_measurements.reportReturnCode("UPDATE",res);
+		measure(_update,res,ist, st, en);
+		sample(SampleRecorder.UPDATE,key,st,en,res);
+		event(event,SampleRecorder.UPDATE,table,key,ist,st,en,res);
+		reportBytes(_update,res,bytes);
+		account(st, en);
 		return res;
 	}
 
@@ -153,12 +240,17 @@ public class DBWrapper extends DB
 	 */
 	public int insert(String table, String key, HashMap<String,ByteIterator> values)
 	{
+	    long bytes=bytes(values);
 	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
 	    long st = System.nanoTime();
 		int res=_db.insert(table,key,values);
 		long en=System.nanoTime();
-		measure("INSERT",ist, st, en);
-		_measurements.reportReturnCode("INSERT",res);
+		measure(_insert,res,ist, st, en);
+		sample(SampleRecorder.INSERT,key,st,en,res);
+		event(event,SampleRecorder.INSERT,table,key,ist,st,en,res);
+		reportBytes(_insert,res,bytes);
+		account(st, en);
 		return res;
 	}
 
@@ -172,11 +264,229 @@ public class DBWrapper extends DB
 	public int delete(String table, String key)
 	{
 	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
 	    long st = System.nanoTime();
 		int res=_db.delete(table,key);
 		long en=System.nanoTime();
-		measure("DELETE",ist, st, en);
-		_measurements.reportReturnCode("DELETE",res);
+		measure(_delete,res,ist, st, en);
+		sample(SampleRecorder.DELETE,key,st,en,res);
+		event(event,SampleRecorder.DELETE,table,key,ist,st,en,res);
+		account(st, en);
 		return res;
 	}
+
+	/**
+	 * Read a batch of records from the database. The batch is measured as a whole under "BATCH-READ", and
+	 * each record is measured under "READ-ITEM".
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to read.
+	 * @param fields The list of fields to read, or null for all of them
+	 * @param results One HashMap of field/value pairs per key, in the same order as the keys
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchRead(String table, List<String> keys, Set<String> fields, List<HashMap<String,ByteIterator>> results)
+	{
+	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
+	    long st = System.nanoTime();
+	    int res=_db.batchRead(table,keys,fields,results);
+	    long en=System.nanoTime();
+	    measureBatch(_batchRead,_readItem,keys.size(),res,ist, st, en);
+	    sample(SampleRecorder.BATCH_READ,keys.isEmpty() ? null : keys.get(0),st,en,res);
+	    event(event,SampleRecorder.BATCH_READ,table,keys.isEmpty() ? null : keys.get(0),ist,st,en,res);
+	    reportBytes(_read,res,eachBytes(results));
+	    account(st, en);
+	    return res;
+	}
+
+	/**
+	 * Insert a batch of records in the database. The batch is measured as a whole under "BATCH-INSERT", and
+	 * each record is measured under "INSERT-ITEM".
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values One HashMap of field/value pairs per key, in the same order as the keys
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+	    long[] bytes=eachBytes(values);
+	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
+	    long st = System.nanoTime();
+	    int res=_db.batchInsert(table,keys,values);
+	    long en=System.nanoTime();
+	    measureBatch(_batchInsert,_insertItem,keys.size(),res,ist, st, en);
+	    sample(SampleRecorder.BATCH_INSERT,keys.isEmpty() ? null : keys.get(0),st,en,res);
+	    event(event,SampleRecorder.BATCH_INSERT,table,keys.isEmpty() ? null : keys.get(0),ist,st,en,res);
+	    reportBytes(_insert,res,bytes);
+	    account(st, en);
+	    return res;
+	}
+
+	/**
+	 * Update a batch of records in the database. The batch is measured as a whole under "BATCH-UPDATE", and
+	 * each record is measured under "UPDATE-ITEM".
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to write.
+	 * @param values One HashMap of field/value pairs per key, in the same order as the keys
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+	    long[] bytes=eachBytes(values);
+	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
+	    long st = System.nanoTime();
+	    int res=_db.batchUpdate(table,keys,values);
+	    long en=System.nanoTime();
+	    measureBatch(_batchUpdate,_updateItem,keys.size(),res,ist, st, en);
+	    sample(SampleRecorder.BATCH_UPDATE,keys.isEmpty() ? null : keys.get(0),st,en,res);
+	    event(event,SampleRecorder.BATCH_UPDATE,table,keys.isEmpty() ? null : keys.get(0),ist,st,en,res);
+	    reportBytes(_update,res,bytes);
+	    account(st, en);
+	    return res;
+	}
+
+	/**
+	 * Delete a batch of records from the database. The batch is measured as a whole under "BATCH-DELETE", and
+	 * each record is measured under "DELETE-ITEM".
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to delete.
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchDelete(String table, List<String> keys)
+	{
+	    long ist=_measurements.getIntendedtartTimeNs();
+	    Object event=beginEvent();
+	    long st = System.nanoTime();
+	    int res=_db.batchDelete(table,keys);
+	    long en=System.nanoTime();
+	    measureBatch(_batchDelete,_deleteItem,keys.size(),res,ist, st, en);
+	    sample(SampleRecorder.BATCH_DELETE,keys.isEmpty() ? null : keys.get(0),st,en,res);
+	    event(event,SampleRecorder.BATCH_DELETE,table,keys.isEmpty() ? null : keys.get(0),ist,st,en,res);
+	    account(st, en);
+	    return res;
+	}
+
+	/**
+	 * @return The bytes left in the values of a record, or 0 if bytes are not measured.
+	 */
+	long bytes(Map<String,ByteIterator> values) {
+	    long bytes=0;
+	    if (_measureBytes && (values!=null)) {
+	        for (ByteIterator value : values.values()) {
+	            if (value!=null) {
+	                bytes+=value.bytesLeft();
+	            }
+	        }
+	    }
+	    return bytes;
+	}
+
+	/**
+	 * @return The bytes left in the values of all the records, or 0 if bytes are not measured.
+	 */
+	long bytes(List<? extends Map<String,ByteIterator>> records) {
+	    long bytes=0;
+	    if (_measureBytes && (records!=null)) {
+	        for (Map<String,ByteIterator> record : records) {
+	            bytes+=bytes(record);
+	        }
+	    }
+	    return bytes;
+	}
+
+	/**
+	 * @return The bytes left in the values of each record, or null if bytes are not measured.
+	 */
+	long[] eachBytes(List<? extends Map<String,ByteIterator>> records) {
+	    if (!_measureBytes || (records==null)) {
+	        return null;
+	    }
+	    long[] bytes=new long[records.size()];
+	    for (int i=0; i<bytes.length; i++) {
+	        bytes[i]=bytes(records.get(i));
+	    }
+	    return bytes;
+	}
+
+	/**
+	 * Report the bytes moved by an operation, if it succeeded.
+	 */
+	void reportBytes(MeasurementHandle op, int res, long bytes) {
+	    if (_measureBytes && (res==0)) {
+	        op.reportBytes(bytes);
+	    }
+	}
+
+	/**
+	 * Report the bytes moved for each record of a batch, if it succeeded.
+	 */
+	void reportBytes(MeasurementHandle op, int res, long[] bytes) {
+	    if (_measureBytes && (res==0) && (bytes!=null)) {
+	        for (long b : bytes) {
+	            op.reportBytes(b);
+	        }
+	    }
+	}
+
+	/**
+	 * Record an operation to the sample file, if there is one.
+	 */
+	void sample(byte op, String key, long st, long en, int res) {
+	    if (_samples!=null) {
+	        _samples.record(op, key, st, en, res);
+	    }
+	}
+
+	/**
+	 * @return The Flight Recorder event of an operation about to be issued, or null if none is emitted.
+	 */
+	Object beginEvent() {
+	    return (_events==null) ? null : _events.begin(_event);
+	}
+
+	/**
+	 * Emit the Flight Recorder event of a completed operation, if it is slow enough.
+	 */
+	void event(Object event, byte op, String table, String key, long ist, long st, long en, int res) {
+	    if (event!=null) {
+	        _events.commit(event, op, table, key, ist, st, en, res);
+	    }
+	}
+
+	/**
+	 * Account for an operation that ran from st to en and has just been measured.
+	 */
+	void account(long st, long en) {
+	    if (_overhead!=null) {
+	        _overhead.addDB(en-st, System.nanoTime()-en);
+	    }
+	}
+
+	/**
+	 * Measure a batch as a whole under "BATCH-op", then each of its records under "op-ITEM", so that the
+	 * per-record counts and throughput can be compared with unbatched runs without mixing the batched
+	 * records into the measurements of single operations. Each record is measured with the batch's
+	 * latency amortized over its records, and with the batch's whole intended latency, as each of them
+	 * waited from the intended start until the batch completed.
+	 */
+	void measureBatch(MeasurementHandle batchop, MeasurementHandle itemop, int size, int res, long intendedStartTimeNanos, long startTimeNanos, long endTimeNanos) {
+	    measure(batchop, res, intendedStartTimeNanos, startTimeNanos, endTimeNanos);
+	    if (size==0) {
+	        return;
+	    }
+	    int latency=(int)((endTimeNanos-startTimeNanos)/1000/size);
+	    int intendedLatency=(int)((endTimeNanos-intendedStartTimeNanos)/1000);
+	    MeasurementHandle outcome=itemop.forReturnCode(res);
+	    for (int i=0; i<size; i++) {
+	        outcome.measure(latency);
+	        outcome.measureIntended(intendedLatency);
+	        outcome.reportReturnCode(res);
+	    }
+	}
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Where the time of one client thread goes: generating operations in the workload, waiting for the DB,
+ * recording the measurements and waiting for the throttle. When the generation and measurement time are not
+ * small next to the DB time, the results reflect the client rather than the DB.
+ *
+ * The DB and measurement times are taken by the {@link DBWrapper}, the time spent in the workload and the
+ * throttle by the {@link ClientThread}; generation is what the workload spends outside the DB. Only the DB
+ * operations made within a call into the workload count, not those of the thread's cleanup, so that the DB
+ * time is part of the workload time. Only the client thread updates the times, so they are read once it
+ * has finished.
+ */
+class HarnessOverhead
+{
+  /**
+   * Whether to account for the time of each client thread. Costs a few extra clock reads per operation.
+   */
+  public static final String PROPERTY="harness.overhead";
+  public static final String PROPERTY_DEFAULT="false";
+
+  private long _ops;
+  private long _operationNs;
+  private long _dbNs;
+  private long _measurementNs;
+  private long _throttleNs;
+  /** Whether the thread is in a call into the workload, outside of which DB operations are not counted. */
+  private boolean _inOperation;
+
+  /**
+   * Start accounting for a call into the workload.
+   */
+  void startOperation()
+  {
+    _inOperation=true;
+  }
+
+  /**
+   * Account for one call into the workload, including the DB operations it made.
+   */
+  void endOperation(long ns)
+  {
+    _inOperation=false;
+    _ops++;
+    _operationNs+=ns;
+  }
+
+  /**
+   * Account for one DB operation and the recording of its measurements, if made within a call into the
+   * workload.
+   */
+  void addDB(long dbNs, long measurementNs)
+  {
+    if (!_inOperation)
+    {
+      return;
+    }
+    _dbNs+=dbNs;
+    _measurementNs+=measurementNs;
+  }
+
+  /**
+   * Account for time spent waiting for the target throughput, or for the DB to take another operation.
+   */
+  void addThrottle(long ns)
+  {
+    _throttleNs+=ns;
+  }
+
+  private void add(HarnessOverhead other)
+  {
+    _ops+=other._ops;
+    _operationNs+=other._operationNs;
+    _dbNs+=other._dbNs;
+    _measurementNs+=other._measurementNs;
+    _throttleNs+=other._throttleNs;
+  }
+
+  private void export(MeasurementsExporter exporter, String metric) throws IOException
+  {
+    long generationNs=_operationNs-_dbNs-_measurementNs;
+    double totalNs=_operationNs+_throttleNs;
+    exporter.write(metric, "Operations", _ops);
+    exporter.write(metric, "GenerationTime(ms)", TimeUnit.NANOSECONDS.toMillis(generationNs));
+    exporter.write(metric, "DBTime(ms)", TimeUnit.NANOSECONDS.toMillis(_dbNs));
+    exporter.write(metric, "MeasurementTime(ms)", TimeUnit.NANOSECONDS.toMillis(_measurementNs));
+    exporter.write(metric, "ThrottleTime(ms)", TimeUnit.NANOSECONDS.toMillis(_throttleNs));
+    if (totalNs>0)
+    {
+      exporter.write(metric, "Generation(%)", 100*generationNs/totalNs);
+      exporter.write(metric, "DB(%)", 100*_dbNs/totalNs);
+      exporter.write(metric, "Measurement(%)", 100*_measurementNs/totalNs);
+      exporter.write(metric, "Throttle(%)", 100*_throttleNs/totalNs);
+    }
+    if (_ops>0)
+    {
+      exporter.write(metric, "GenerationPerOp(us)", generationNs/1000.0/_ops);
+      exporter.write(metric, "MeasurementPerOp(us)", _measurementNs/1000.0/_ops);
+    }
+  }
+
+  /**
+   * Add the times of the clients to the results of a run, over all the clients under "HARNESS" and for
+   * each client under "HARNESS-THREAD-n".
+   *
+   * @param clients The clients of the run.
+   * @param results The other results of the run, exported first, or null.
+   * @return The results to export; those given if the time is not accounted for.
+   */
+  static RunResults report(final List<ClientThread> clients, final RunResults results)
+  {
+    if (clients.isEmpty() || (clients.get(0).getOverhead()==null))
+    {
+      return results;
+    }
+    return new RunResults()
+    {
+      @Override
+      public void exportResults(MeasurementsExporter exporter) throws IOException
+      {
+        if (results!=null)
+        {
+          results.exportResults(exporter);
+        }
+        HarnessOverhead total=new HarnessOverhead();
+        for (ClientThread client : clients)
+        {
+          total.add(client.getOverhead());
+        }
+        total.export(exporter, "HARNESS");
+        for (int i=0; i<clients.size(); i++)
+        {
+          clients.get(i).getOverhead().export(exporter, "HARNESS-THREAD-"+i);
+        }
+      }
+    };
+  }
+}
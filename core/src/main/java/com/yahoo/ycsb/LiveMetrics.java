@@ -0,0 +1,399 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.HdrHistogram.Histogram;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.ycsb.measurements.IntervalListener;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Publishes the throughput and latency percentiles of every measurement while the run is in progress, over
+ * HTTP as JSON and over JMX.
+ *
+ * The metrics are built from the interval histograms of the HdrHistogram measurements. Every status interval
+ * the current window of intervals is closed: the "current" metrics cover the last complete window and the
+ * "total" metrics everything since the start. "GET /metrics" returns them as JSON. If enabled, "POST /stop"
+ * asks the workload to stop, so that a run going badly ends early and still exports its results. The server
+ * listens on the loopback interface unless another host is given, as it is not authenticated.
+ */
+public class LiveMetrics implements IntervalListener, LiveMetricsMXBean
+{
+  /**
+   * The port to serve the metrics on over HTTP. Not served over HTTP if not set.
+   */
+  public static final String HTTP_PORT_PROPERTY="metrics.http.port";
+
+  /**
+   * The host name or address to serve the metrics on over HTTP, e.g. "0.0.0.0" for every interface.
+   */
+  public static final String HTTP_HOST_PROPERTY="metrics.http.host";
+  public static final String HTTP_HOST_PROPERTY_DEFAULT="localhost";
+
+  /**
+   * Whether to let anyone who can reach the HTTP server stop the run with "POST /stop".
+   */
+  public static final String HTTP_STOP_PROPERTY="metrics.http.stop";
+  public static final String HTTP_STOP_PROPERTY_DEFAULT="false";
+
+  /**
+   * Whether to register the metrics as a JMX MBean.
+   */
+  public static final String JMX_PROPERTY="metrics.jmx";
+  public static final String JMX_PROPERTY_DEFAULT="false";
+
+  /**
+   * The throughput and latencies of one measurement over some period. Latencies are in microseconds.
+   */
+  public static class Stats
+  {
+    private final long _count;
+    private final double _throughput;
+    private final double _mean;
+    private final long _min;
+    private final long _max;
+    private final long _p50;
+    private final long _p90;
+    private final long _p99;
+    private final long _p999;
+    private final long _p9999;
+
+    Stats(Histogram histogram, long periodMs)
+    {
+      _count=histogram.getTotalCount();
+      _throughput=(periodMs>0) ? 1000.0*_count/periodMs : 0;
+      _mean=histogram.getMean();
+      _min=(_count>0) ? histogram.getMinValue() : 0;
+      _max=histogram.getMaxValue();
+      _p50=histogram.getValueAtPercentile(50);
+      _p90=histogram.getValueAtPercentile(90);
+      _p99=histogram.getValueAtPercentile(99);
+      _p999=histogram.getValueAtPercentile(99.9);
+      _p9999=histogram.getValueAtPercentile(99.99);
+    }
+
+    public long getCount() { return _count; }
+    public double getThroughput() { return _throughput; }
+    public double getMean() { return _mean; }
+    public long getMin() { return _min; }
+    public long getMax() { return _max; }
+    public long getP50() { return _p50; }
+    public long getP90() { return _p90; }
+    public long getP99() { return _p99; }
+    public long getP999() { return _p999; }
+    public long getP9999() { return _p9999; }
+
+    void write(JsonGenerator g, String field) throws IOException
+    {
+      g.writeObjectFieldStart(field);
+      g.writeNumberField("count", _count);
+      g.writeNumberField("throughput", _throughput);
+      g.writeNumberField("mean", _mean);
+      g.writeNumberField("min", _min);
+      g.writeNumberField("max", _max);
+      g.writeNumberField("p50", _p50);
+      g.writeNumberField("p90", _p90);
+      g.writeNumberField("p99", _p99);
+      g.writeNumberField("p999", _p999);
+      g.writeNumberField("p9999", _p9999);
+      g.writeEndObject();
+    }
+  }
+
+  /**
+   * The current and total metrics of one measurement, and the number of times each return code was reported.
+   */
+  public static class OperationMetrics
+  {
+    private final Stats _current;
+    private final Stats _total;
+    private final Map<Integer,Integer> _returnCodes;
+
+    OperationMetrics(Stats current, Stats total, Map<Integer,Integer> returnCodes)
+    {
+      _current=current;
+      _total=total;
+      _returnCodes=returnCodes;
+    }
+
+    public Stats getCurrent() { return _current; }
+    public Stats getTotal() { return _total; }
+    public Map<Integer,Integer> getReturnCodes() { return _returnCodes; }
+  }
+
+  /** The intervals of one measurement. */
+  private static class Series
+  {
+    Histogram _window=new Histogram(3);
+    Histogram _last=new Histogram(3);
+    final Histogram _total=new Histogram(3);
+  }
+
+  private final Map<String,Series> _series=new TreeMap<String,Series>();
+  private final long _startMs;
+  private long _windowStartMs;
+  private long _lastWindowMs;
+  private final Workload _workload;
+  private final Measurements _measurements;
+  private final JsonFactory _factory=new JsonFactory();
+
+  /**
+   * @param workload The workload to stop on request, or null if the run cannot be stopped early.
+   * @param measurements The measurements to take the return codes from.
+   */
+  LiveMetrics(Workload workload, Measurements measurements)
+  {
+    _workload=workload;
+    _measurements=measurements;
+    _startMs=System.currentTimeMillis();
+    _windowStartMs=_startMs;
+  }
+
+  /**
+   * Check the properties for live metrics, forcing HdrHistogram measurements unless another type was asked
+   * for. Call before the measurements are first used.
+   *
+   * @return true if live metrics are enabled.
+   * @throws IllegalArgumentException if the measurement type cannot provide them.
+   */
+  static boolean configure(Properties props)
+  {
+    if ((props.getProperty(HTTP_PORT_PROPERTY)==null) &&
+        !Boolean.parseBoolean(props.getProperty(JMX_PROPERTY, JMX_PROPERTY_DEFAULT)))
+    {
+      return false;
+    }
+    String measurementtype=props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY);
+    if (measurementtype==null)
+    {
+      props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+    }
+    else if (!measurementtype.startsWith("hdrhistogram"))
+    {
+      throw new IllegalArgumentException("live metrics require hdrhistogram measurements");
+    }
+    return true;
+  }
+
+  /**
+   * Start publishing metrics as configured, if {@link #configure(Properties)} enabled them.
+   *
+   * @param props The properties of the run.
+   * @param workload The workload to stop on request, or null if the run cannot be stopped early.
+   * @return The running metrics, or null if they are not enabled.
+   */
+  static LiveMetrics start(Properties props, Workload workload) throws IOException
+  {
+    if (!configure(props))
+    {
+      return null;
+    }
+    LiveMetrics metrics=new LiveMetrics(workload, Measurements.getMeasurements());
+    Measurements.getMeasurements().addIntervalListener(metrics);
+    if (props.getProperty(HTTP_PORT_PROPERTY)!=null)
+    {
+      metrics.serve(props.getProperty(HTTP_HOST_PROPERTY, HTTP_HOST_PROPERTY_DEFAULT),
+          Integer.parseInt(props.getProperty(HTTP_PORT_PROPERTY)),
+          Boolean.parseBoolean(props.getProperty(HTTP_STOP_PROPERTY, HTTP_STOP_PROPERTY_DEFAULT)));
+    }
+    if (Boolean.parseBoolean(props.getProperty(JMX_PROPERTY, JMX_PROPERTY_DEFAULT)))
+    {
+      try
+      {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName("com.yahoo.ycsb:type=LiveMetrics"));
+      }
+      catch (JMException e)
+      {
+        throw new IOException("could not register the metrics MBean: "+e.getMessage());
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * @return The server, started.
+   */
+  HttpServer serve(String host, int port, boolean stop) throws IOException
+  {
+    HttpServer server=HttpServer.create(new InetSocketAddress(host, port), 0);
+    server.createContext("/metrics", new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        ByteArrayOutputStream json=new ByteArrayOutputStream();
+        writeJson(json);
+        respond(exchange, 200, "application/json", json.toByteArray());
+      }
+    });
+    if (stop)
+    {
+      server.createContext("/stop", new HttpHandler()
+      {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+          if (!exchange.getRequestMethod().equals("POST"))
+          {
+            respond(exchange, 405, "text/plain", "POST to stop the run\n".getBytes("UTF-8"));
+          }
+          else if (requestStop())
+          {
+            respond(exchange, 200, "text/plain", "Stop requested\n".getBytes("UTF-8"));
+          }
+          else
+          {
+            respond(exchange, 409, "text/plain", "This run cannot be stopped early\n".getBytes("UTF-8"));
+          }
+        }
+      });
+    }
+    server.start();
+    return server;
+  }
+
+  private static void respond(HttpExchange exchange, int status, String type, byte[] body) throws IOException
+  {
+    exchange.getResponseHeaders().set("Content-Type", type);
+    exchange.sendResponseHeaders(status, body.length);
+    OutputStream out=exchange.getResponseBody();
+    try
+    {
+      out.write(body);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  /**
+   * Close the current window once the measurements' intervals have been taken for a status interval.
+   */
+  @Override
+  public synchronized void intervalsTaken()
+  {
+    long now=System.currentTimeMillis();
+    for (Series series : _series.values())
+    {
+      Histogram last=series._last;
+      series._last=series._window;
+      last.reset();
+      series._window=last;
+    }
+    _lastWindowMs=now-_windowStartMs;
+    _windowStartMs=now;
+  }
+
+  @Override
+  public synchronized void intervalHistogram(String name, Histogram interval)
+  {
+    Series series=_series.get(name);
+    if (series==null)
+    {
+      series=new Series();
+      _series.put(name, series);
+    }
+    series._window.add(interval);
+    series._total.add(interval);
+  }
+
+  @Override
+  public long getElapsedMs()
+  {
+    return System.currentTimeMillis()-_startMs;
+  }
+
+  @Override
+  public Map<String,OperationMetrics> getOperations()
+  {
+    // take the return codes before locking this, as the measurements call into this with their own lock held
+    Map<String,Map<Integer,Integer>> returncodes=_measurements.getReturnCodes();
+    Map<String,OperationMetrics> operations=new TreeMap<String,OperationMetrics>();
+    synchronized (this)
+    {
+      long elapsed=getElapsedMs();
+      for (Map.Entry<String,Series> entry : _series.entrySet())
+      {
+        Map<Integer,Integer> codes=returncodes.get(entry.getKey());
+        operations.put(entry.getKey(), new OperationMetrics(new Stats(entry.getValue()._last, _lastWindowMs),
+            new Stats(entry.getValue()._total, elapsed), (codes==null) ? new HashMap<Integer,Integer>() : codes));
+      }
+    }
+    return operations;
+  }
+
+  @Override
+  public boolean requestStop()
+  {
+    if (_workload==null)
+    {
+      return false;
+    }
+    System.err.println("Stop requested through the live metrics.");
+    _workload.requestStop();
+    return true;
+  }
+
+  /**
+   * Write the metrics of every measurement as a JSON object.
+   */
+  void writeJson(OutputStream out) throws IOException
+  {
+    Map<String,OperationMetrics> operations=getOperations();
+    JsonGenerator g=_factory.createJsonGenerator(out);
+    g.writeStartObject();
+    g.writeNumberField("timestamp", System.currentTimeMillis());
+    g.writeNumberField("elapsedMs", getElapsedMs());
+    g.writeObjectFieldStart("operations");
+    for (Map.Entry<String,OperationMetrics> entry : operations.entrySet())
+    {
+      OperationMetrics metrics=entry.getValue();
+      g.writeObjectFieldStart(entry.getKey());
+      metrics.getCurrent().write(g, "current");
+      metrics.getTotal().write(g, "total");
+      g.writeObjectFieldStart("returnCodes");
+      for (Map.Entry<Integer,Integer> code : metrics.getReturnCodes().entrySet())
+      {
+        g.writeNumberField(code.getKey().toString(), code.getValue());
+      }
+      g.writeEndObject();
+      g.writeEndObject();
+    }
+    g.writeEndObject();
+    g.writeEndObject();
+    g.close();
+  }
+}
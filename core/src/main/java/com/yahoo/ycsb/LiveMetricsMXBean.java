@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link LiveMetrics}, registered as "com.yahoo.ycsb:type=LiveMetrics".
+ */
+public interface LiveMetricsMXBean
+{
+  /**
+   * @return The time since the metrics started, in ms.
+   */
+  long getElapsedMs();
+
+  /**
+   * @return The metrics of each measurement, by name, e.g. "READ".
+   */
+  Map<String,LiveMetrics.OperationMetrics> getOperations();
+
+  /**
+   * Ask the workload to stop, ending the run early with the usual export, if the run allows it.
+   *
+   * @return true if the stop was requested.
+   */
+  boolean requestStop();
+}
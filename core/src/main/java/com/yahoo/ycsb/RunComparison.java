@@ -0,0 +1,436 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.HistogramLogReader;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Compares the results of runs, such as the nightly runs against successive builds of a DB, and flags the
+ * measurements that got worse by more than a threshold.
+ *
+ * The first result set is the baseline, and each of the others is compared with it. A result set is one of:
+ * <UL>
+ * <LI>a ".hdr" log written with "hdrhistogram.fileoutput", or a directory of them, one per operation. The
+ * percentiles of each operation are compared, with a confidence interval bootstrapped from the intervals of
+ * the log.
+ * <LI>a JSON file written with "exporter=com.yahoo.ycsb.measurements.exporter.JSONArrayMeasurementsExporter",
+ * or several of them separated by commas for repeated runs of the same build. The latencies and throughputs
+ * are compared, with a confidence interval from how much they vary between the runs.
+ * </UL>
+ *
+ * A measurement is a regression when it is worse by more than the threshold and, when its confidence interval
+ * is known, by more than the interval. The exit status is 1 if there is a regression, so that the comparison
+ * can fail a build.
+ */
+public class RunComparison
+{
+  /** The z value of a 95% confidence interval. */
+  private static final double Z95=1.96;
+
+  /** How many times the intervals of a ".hdr" log are resampled to find the standard error of a percentile. */
+  static final int BOOTSTRAP_RESAMPLES=200;
+
+  /**
+   * One measurement of a result set: its value and the standard error of the value, or NaN if not known.
+   */
+  static class Statistic
+  {
+    final double _value;
+    final double _stderr;
+    /** Whether a higher value is worse, as for latencies. */
+    final boolean _higherIsWorse;
+
+    Statistic(double value, double stderr, boolean higherIsWorse)
+    {
+      _value=value;
+      _stderr=stderr;
+      _higherIsWorse=higherIsWorse;
+    }
+  }
+
+  /**
+   * @return The standard error of the mean of the values, or NaN for fewer than two.
+   */
+  static double stderr(List<Double> values)
+  {
+    return stddev(values)/Math.sqrt(values.size());
+  }
+
+  /**
+   * @return The sample standard deviation of the values, or NaN for fewer than two.
+   */
+  static double stddev(List<Double> values)
+  {
+    int n=values.size();
+    if (n<2)
+    {
+      return Double.NaN;
+    }
+    double sum=0;
+    for (double v : values)
+    {
+      sum+=v;
+    }
+    double mean=sum/n;
+    double squares=0;
+    for (double v : values)
+    {
+      squares+=(v-mean)*(v-mean);
+    }
+    return Math.sqrt(squares/(n-1));
+  }
+
+  /**
+   * Load the latencies of a ".hdr" log, by "[operation] measurement".
+   */
+  static void loadHdr(File file, double[] percentiles, Map<String,Statistic> statistics) throws IOException
+  {
+    String operation=file.getName().substring(0, file.getName().length()-".hdr".length());
+    HistogramLogReader reader=new HistogramLogReader(file);
+    List<Histogram> intervals=new ArrayList<Histogram>();
+    EncodableHistogram encoded;
+    while ((encoded=reader.nextIntervalHistogram())!=null)
+    {
+      if ((encoded instanceof Histogram) && (((Histogram)encoded).getTotalCount()>0))
+      {
+        intervals.add((Histogram)encoded);
+      }
+    }
+    if (intervals.isEmpty())
+    {
+      return;
+    }
+    Histogram total=merge(intervals);
+    double[] stderrs=bootstrap(intervals, percentiles, new Random(0));
+    statistics.put("["+operation+"] Average(us)", new Statistic(total.getMean(), stderrs[percentiles.length], true));
+    for (int i=0; i<percentiles.length; i++)
+    {
+      statistics.put("["+operation+"] p"+new DecimalFormat("#.###").format(percentiles[i])+"(us)",
+          new Statistic(total.getValueAtPercentile(percentiles[i]), stderrs[i], true));
+    }
+  }
+
+  private static Histogram merge(List<Histogram> intervals)
+  {
+    Histogram merged=newMerged(intervals);
+    for (Histogram interval : intervals)
+    {
+      merged.add(interval);
+    }
+    return merged;
+  }
+
+  /**
+   * @return An empty histogram that grows to fit any of the intervals, unlike the intervals as decoded.
+   */
+  private static Histogram newMerged(List<Histogram> intervals)
+  {
+    return new Histogram(intervals.get(0).getNumberOfSignificantValueDigits());
+  }
+
+  /**
+   * Find the standard errors of the percentiles and mean of the merged intervals, by merging resampled
+   * intervals over and over. The intervals are resampled in blocks of consecutive ones, so that the errors
+   * account for neighbouring intervals being alike.
+   *
+   * @return The standard error of each percentile, then that of the mean; all NaN for fewer than two intervals.
+   */
+  static double[] bootstrap(List<Histogram> intervals, double[] percentiles, Random random)
+  {
+    int n=intervals.size();
+    double[] stderrs=new double[percentiles.length+1];
+    if (n<2)
+    {
+      Arrays.fill(stderrs, Double.NaN);
+      return stderrs;
+    }
+    // merging only the recorded buckets is far cheaper than adding whole histograms
+    long[][] values=new long[n][];
+    long[][] counts=new long[n][];
+    for (int i=0; i<n; i++)
+    {
+      int buckets=0;
+      for (HistogramIterationValue v : intervals.get(i).recordedValues())
+      {
+        buckets++;
+      }
+      values[i]=new long[buckets];
+      counts[i]=new long[buckets];
+      // the iterator reuses its value, so copy each one out
+      int j=0;
+      for (HistogramIterationValue v : intervals.get(i).recordedValues())
+      {
+        values[i][j]=v.getValueIteratedTo();
+        counts[i][j]=v.getCountAtValueIteratedTo();
+        j++;
+      }
+    }
+
+    int block=Math.max(1, (int)Math.round(Math.cbrt(n)));
+    List<List<Double>> resampled=new ArrayList<List<Double>>();
+    for (int i=0; i<stderrs.length; i++)
+    {
+      resampled.add(new ArrayList<Double>());
+    }
+    Histogram merged=newMerged(intervals);
+    for (int r=0; r<BOOTSTRAP_RESAMPLES; r++)
+    {
+      merged.reset();
+      for (int taken=0; taken<n; )
+      {
+        int start=random.nextInt(n-block+1);
+        for (int i=start; (i<start+block) && (taken<n); i++, taken++)
+        {
+          for (int j=0; j<values[i].length; j++)
+          {
+            merged.recordValueWithCount(values[i][j], counts[i][j]);
+          }
+        }
+      }
+      for (int i=0; i<percentiles.length; i++)
+      {
+        resampled.get(i).add((double)merged.getValueAtPercentile(percentiles[i]));
+      }
+      resampled.get(percentiles.length).add(merged.getMean());
+    }
+    for (int i=0; i<stderrs.length; i++)
+    {
+      // the spread of the resampled statistic is its standard error
+      stderrs[i]=stddev(resampled.get(i));
+    }
+    return stderrs;
+  }
+
+  /**
+   * Load the latencies and throughputs of repeated runs exported as JSON arrays, by "[metric] measurement".
+   */
+  static void loadJson(String[] files, Map<String,Statistic> statistics) throws IOException
+  {
+    ObjectMapper mapper=new ObjectMapper();
+    Map<String,List<Double>> runs=new TreeMap<String,List<Double>>();
+    for (String file : files)
+    {
+      JsonNode root=mapper.readTree(new File(file));
+      if ((root==null) || !root.isArray())
+      {
+        throw new IOException(file+" is not a JSON array of measurements");
+      }
+      for (JsonNode node : root)
+      {
+        String measurement=node.path("measurement").getTextValue();
+        // min and max are single operations, too noisy to compare
+        if ((measurement==null) || !node.path("value").isNumber()
+            || (!measurement.contains("Latency") && !measurement.startsWith("Throughput"))
+            || measurement.startsWith("MinLatency") || measurement.startsWith("MaxLatency"))
+        {
+          continue;
+        }
+        String key="["+node.path("metric").getTextValue()+"] "+measurement;
+        List<Double> values=runs.get(key);
+        if (values==null)
+        {
+          values=new ArrayList<Double>();
+          runs.put(key, values);
+        }
+        values.add(node.path("value").getDoubleValue());
+      }
+    }
+    for (Map.Entry<String,List<Double>> entry : runs.entrySet())
+    {
+      double sum=0;
+      for (double v : entry.getValue())
+      {
+        sum+=v;
+      }
+      statistics.put(entry.getKey(), new Statistic(sum/entry.getValue().size(), stderr(entry.getValue()),
+          !entry.getKey().contains("Throughput")));
+    }
+  }
+
+  /**
+   * Load a result set: a ".hdr" log, a directory of them, or comma separated JSON exports of repeated runs.
+   */
+  static Map<String,Statistic> load(String results, double[] percentiles) throws IOException
+  {
+    Map<String,Statistic> statistics=new TreeMap<String,Statistic>();
+    File file=new File(results);
+    if (file.isDirectory())
+    {
+      File[] logs=file.listFiles();
+      if (logs!=null)
+      {
+        for (File log : logs)
+        {
+          if (log.getName().endsWith(".hdr"))
+          {
+            loadHdr(log, percentiles, statistics);
+          }
+        }
+      }
+    }
+    else if (results.endsWith(".hdr"))
+    {
+      loadHdr(file, percentiles, statistics);
+    }
+    else
+    {
+      loadJson(results.split(","), statistics);
+    }
+    if (statistics.isEmpty())
+    {
+      throw new IOException("no measurements in "+results);
+    }
+    return statistics;
+  }
+
+  /**
+   * Compare a result set with the baseline, printing a line for each measurement in both.
+   *
+   * @param threshold The relative change that is a regression, e.g. 0.05.
+   * @return The number of regressions.
+   */
+  static int compare(Map<String,Statistic> baseline, Map<String,Statistic> candidate, double threshold,
+      PrintStream out)
+  {
+    DecimalFormat value=new DecimalFormat("#.##");
+    DecimalFormat percent=new DecimalFormat("+0.0;-0.0");
+    int regressions=0;
+    for (Map.Entry<String,Statistic> entry : baseline.entrySet())
+    {
+      Statistic before=entry.getValue();
+      Statistic after=candidate.get(entry.getKey());
+      if (after==null)
+      {
+        continue;
+      }
+      double delta=after._value-before._value;
+      double halfwidth=Z95*Math.sqrt(square(before._stderr)+square(after._stderr));
+      double worse=before._higherIsWorse ? delta : -delta;
+      // anything worse than a baseline of zero is past the threshold
+      boolean regression=(worse>0) && ((before._value<=0) || (worse/before._value>threshold))
+          && (Double.isNaN(halfwidth) || (worse>halfwidth));
+
+      StringBuilder line=new StringBuilder(entry.getKey()).append(": ").append(value.format(before._value))
+          .append(" -> ").append(value.format(after._value));
+      if (before._value>0)
+      {
+        line.append(" (").append(percent.format(100*delta/before._value)).append('%');
+        if (!Double.isNaN(halfwidth))
+        {
+          line.append(" +/- ").append(value.format(100*halfwidth/before._value)).append('%');
+        }
+        line.append(')');
+      }
+      if (regression)
+      {
+        line.append(" REGRESSION");
+        regressions++;
+      }
+      out.println(line);
+    }
+    return regressions;
+  }
+
+  private static double square(double v)
+  {
+    return v*v;
+  }
+
+  public static void usageMessage()
+  {
+    System.out.println("Usage: java com.yahoo.ycsb.RunComparison [options] baseline results...");
+    System.out.println("Compares each result set with the baseline. A result set is a .hdr log written with");
+    System.out.println("hdrhistogram.fileoutput, a directory of them, or comma separated JSON array exports");
+    System.out.println("of repeated runs. The exit status is 1 if any measurement regressed.");
+    System.out.println("Options:");
+    System.out.println("  -threshold n: the change in percent that is a regression (default: 5)");
+    System.out.println("  -percentiles list: the comma separated percentiles to compare for .hdr logs");
+    System.out.println("       (default: 50,95,99,99.9)");
+  }
+
+  public static void main(String[] args)
+  {
+    double threshold=5;
+    String percentileList="50,95,99,99.9";
+    List<String> results=new ArrayList<String>();
+    for (int i=0; i<args.length; i++)
+    {
+      if (args[i].equals("-threshold") && (i+1<args.length))
+      {
+        threshold=Double.parseDouble(args[++i]);
+      }
+      else if (args[i].equals("-percentiles") && (i+1<args.length))
+      {
+        percentileList=args[++i];
+      }
+      else if (args[i].startsWith("-"))
+      {
+        usageMessage();
+        System.exit(0);
+      }
+      else
+      {
+        results.add(args[i]);
+      }
+    }
+    if (results.size()<2)
+    {
+      usageMessage();
+      System.exit(0);
+    }
+    String[] percentileNames=percentileList.split(",");
+    double[] percentiles=new double[percentileNames.length];
+    for (int i=0; i<percentiles.length; i++)
+    {
+      percentiles[i]=Double.parseDouble(percentileNames[i].trim());
+    }
+
+    int regressions=0;
+    try
+    {
+      Map<String,Statistic> baseline=load(results.get(0), percentiles);
+      for (int i=1; i<results.size(); i++)
+      {
+        System.out.println(results.get(i)+" against "+results.get(0)+":");
+        regressions+=compare(baseline, load(results.get(i), percentiles), threshold/100, System.out);
+      }
+    }
+    catch (IOException e)
+    {
+      System.out.println("Could not compare the results: "+e.getMessage());
+      System.exit(2);
+    }
+    System.out.println(regressions+" regression(s) past "+threshold+"%");
+    System.exit((regressions>0) ? 1 : 0);
+  }
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * A sequence of phases, such as a load followed by runs of several workloads, executed one after the other
+ * in the same JVM on the same DB instances.
+ *
+ * A plan file has one phase per line: its name followed by any of the options "-load", "-t", "-P file",
+ * "-p name=value" and "-target n", which mean the same as on the command line. Blank lines and lines
+ * starting with "#" are ignored. For example:
+ *
+ * <pre>
+ * LOAD  -load -P workloads/workloada
+ * A     -t -P workloads/workloada -p operationcount=100000
+ * B     -t -P workloads/workloadb -target 5000
+ * </pre>
+ *
+ * Each phase starts from the properties of the command line; its own property files are applied over
+ * them, then its own properties. Each phase runs its own workload instance and is measured in its own
+ * scope, so its operations are exported under names prefixed with the phase name. The DBs, the thread
+ * count and the measurement settings are shared by every phase and are taken from the command line.
+ */
+class RunPlan implements RunResults
+{
+  /**
+   * One phase of the plan.
+   */
+  static class Phase
+  {
+    final String _name;
+    final boolean _dotransactions;
+    final Properties _props;
+
+    long _runtimeMs;
+    long _opsDone;
+
+    Phase(String name, boolean dotransactions, Properties props)
+    {
+      _name=name;
+      _dotransactions=dotransactions;
+      _props=props;
+    }
+  }
+
+  /** Properties a phase may not set, because the plan does not support them or shares them across phases. */
+  private static final String[] UNSUPPORTED={
+    Client.TARGET_SCHEDULE_PROPERTY, Client.WARMUP_PROPERTY, SaturationSearch.SEARCH_PROPERTY,
+    CoordinatorAgent.COORDINATOR_PROPERTY
+  };
+  private static final String[] SHARED={
+    Client.THREAD_COUNT_PROPERTY, Client.DB_PROPERTY, Client.THREAD_TYPE_PROPERTY
+  };
+
+  private final List<Phase> _phases;
+
+  RunPlan(List<Phase> phases)
+  {
+    _phases=phases;
+  }
+
+  /**
+   * Read a plan file.
+   *
+   * @param file The name of the plan file.
+   * @param props The properties from the command line, which every phase starts from.
+   * @throws IOException if the plan or one of its property files cannot be read.
+   * @throws IllegalArgumentException if the plan is invalid.
+   */
+  static RunPlan parse(String file, Properties props) throws IOException
+  {
+    List<Phase> phases=new ArrayList<Phase>();
+    BufferedReader reader=new BufferedReader(new FileReader(file));
+    try
+    {
+      String line;
+      while ((line=reader.readLine())!=null)
+      {
+        line=line.trim();
+        if ((line.length()>0) && !line.startsWith("#"))
+        {
+          phases.add(parsePhase(line.split("\\s+"), props));
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    if (phases.isEmpty())
+    {
+      throw new IllegalArgumentException("the plan has no phases");
+    }
+    return new RunPlan(phases);
+  }
+
+  private static Phase parsePhase(String[] args, Properties base) throws IOException
+  {
+    String name=args[0];
+    boolean dotransactions=true;
+    Properties fileprops=new Properties();
+    Properties props=new Properties();
+    for (int i=1; i<args.length; i++)
+    {
+      if (args[i].equals("-load"))
+      {
+        dotransactions=false;
+      }
+      else if (args[i].equals("-t"))
+      {
+        dotransactions=true;
+      }
+      else if (args[i].equals("-P") && (i+1<args.length))
+      {
+        FileInputStream in=new FileInputStream(args[++i]);
+        try
+        {
+          fileprops.load(in);
+        }
+        finally
+        {
+          in.close();
+        }
+      }
+      else if (args[i].equals("-p") && (i+1<args.length) && (args[i+1].indexOf('=')>=0))
+      {
+        String prop=args[++i];
+        int eq=prop.indexOf('=');
+        props.setProperty(prop.substring(0, eq), prop.substring(eq+1));
+      }
+      else if (args[i].equals("-target") && (i+1<args.length))
+      {
+        props.setProperty(Client.TARGET_PROPERTY, Integer.parseInt(args[++i])+"");
+      }
+      else
+      {
+        throw new IllegalArgumentException("invalid option "+args[i]+" in phase "+name);
+      }
+    }
+
+    Properties phaseprops=new Properties();
+    copy(base, phaseprops);
+    copy(fileprops, phaseprops);
+    copy(props, phaseprops);
+
+    for (String prop : UNSUPPORTED)
+    {
+      if (phaseprops.getProperty(prop)!=null)
+      {
+        throw new IllegalArgumentException("\""+prop+"\" is not supported in a plan");
+      }
+    }
+    for (String prop : SHARED)
+    {
+      String value=phaseprops.getProperty(prop);
+      if ((value!=null) && !value.equals(base.getProperty(prop)))
+      {
+        throw new IllegalArgumentException("\""+prop+"\" is shared by every phase and must be set on the command line");
+      }
+    }
+    if (phaseprops.getProperty(Client.WORKLOAD_PROPERTY)==null)
+    {
+      throw new IllegalArgumentException("phase "+name+" has no \""+Client.WORKLOAD_PROPERTY+"\"");
+    }
+
+    Phase phase=new Phase(name, dotransactions, phaseprops);
+    if (isOpenLoop(phase))
+    {
+      if (Integer.parseInt(phaseprops.getProperty(Client.TARGET_PROPERTY, "0"))<=0)
+      {
+        throw new IllegalArgumentException("phase "+name+" is open-loop and requires a target throughput");
+      }
+      // reject an unknown arrival process now rather than after the phases before it have run
+      newScheduler(phase);
+    }
+    return phase;
+  }
+
+  private static void copy(Properties from, Properties to)
+  {
+    for (String prop : from.stringPropertyNames())
+    {
+      to.setProperty(prop, from.getProperty(prop));
+    }
+  }
+
+  private static boolean isOpenLoop(Phase phase)
+  {
+    return !phase._props.getProperty(Client.ARRIVAL_PROCESS_PROPERTY, Client.ARRIVAL_PROCESS_PROPERTY_DEFAULT)
+        .equals(Client.ARRIVAL_PROCESS_PROPERTY_DEFAULT);
+  }
+
+  private static ArrivalScheduler newScheduler(Phase phase)
+  {
+    return new ArrivalScheduler(phase._props.getProperty(Client.ARRIVAL_PROCESS_PROPERTY),
+        TargetSchedule.constant(Integer.parseInt(phase._props.getProperty(Client.TARGET_PROPERTY))),
+        Client.getOpCount(phase._props, phase._dotransactions), ArrivalScheduler.getBurstNs(phase._props));
+  }
+
+  /**
+   * @return true if any phase issues its operations on an open-loop schedule.
+   */
+  boolean hasOpenLoopPhase()
+  {
+    for (Phase phase : _phases)
+    {
+      if (isOpenLoop(phase))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the first phase loads data, false if it runs transactions.
+   */
+  boolean startsWithLoad()
+  {
+    return !_phases.get(0)._dotransactions;
+  }
+
+  /**
+   * Run every phase in turn on the given clients.
+   *
+   * @param runner Runs the client threads; started and finished by the plan.
+   * @param status If true the status of each phase is shown while it runs.
+   * @param label The label for the status.
+   * @param standardstatus If true the status is printed to stdout in addition to stderr.
+   * @param statusIntervalSeconds The number of seconds between status updates.
+   * @return The total number of operations done.
+   */
+  long run(StepRunner runner, boolean status, String label, boolean standardstatus, int statusIntervalSeconds)
+  {
+    List<ClientThread> clients=runner.getClients();
+    int threadcount=clients.size();
+    runner.start();
+
+    long opsDone=0;
+    for (Phase phase : _phases)
+    {
+      System.err.println("Starting phase "+phase._name+".");
+      Workload workload=newWorkload(phase._props);
+
+      long opcount=Client.getOpCount(phase._props, phase._dotransactions);
+      int target=Integer.parseInt(phase._props.getProperty(Client.TARGET_PROPERTY, "0"));
+      ArrivalScheduler scheduler=isOpenLoop(phase) ? newScheduler(phase) : null;
+      double targetperthreadperms=-1;
+      if ((target>0) && (scheduler==null))
+      {
+        targetperthreadperms=((double)target)/threadcount/1000.0;
+      }
+      for (int threadid=0; threadid<threadcount; threadid++)
+      {
+        long threadopcount=opcount/threadcount;
+        if (threadid<opcount%threadcount)
+        {
+          ++threadopcount;
+        }
+        if (scheduler!=null)
+        {
+          threadopcount=0;
+        }
+        ClientThread client=clients.get(threadid);
+        client.setWorkload(workload, phase._dotransactions, phase._props);
+        client.reset(threadopcount, targetperthreadperms, scheduler, null);
+      }
+
+      Measurements.getMeasurements().startScope(phase._name);
+
+      CountDownLatch phasedone=new CountDownLatch(1);
+      StatusThread statusthread=null;
+      if (status)
+      {
+        statusthread=new StatusThread(phasedone, clients, label, standardstatus, statusIntervalSeconds);
+        statusthread.start();
+      }
+      TerminatorThread terminator=null;
+      long maxExecutionTime=Integer.parseInt(phase._props.getProperty(Client.MAX_EXECUTION_TIME, "0"));
+      if (maxExecutionTime>0)
+      {
+        // the threads outlive the phase, so only ask the workload to stop
+        terminator=new TerminatorThread(maxExecutionTime, new ArrayList<Thread>(), workload);
+        terminator.start();
+      }
+
+      long st=System.nanoTime();
+      phase._opsDone=runner.runStep();
+      long en=System.nanoTime();
+      phase._runtimeMs=TimeUnit.NANOSECONDS.toMillis(en-st);
+      opsDone+=phase._opsDone;
+
+      if (terminator!=null)
+      {
+        terminator.interrupt();
+      }
+      phasedone.countDown();
+      if (statusthread!=null)
+      {
+        try
+        {
+          statusthread.join();
+        }
+        catch (InterruptedException e)
+        {
+        }
+      }
+
+      try
+      {
+        workload.cleanup();
+      }
+      catch (WorkloadException e)
+      {
+        e.printStackTrace();
+        e.printStackTrace(System.out);
+        System.exit(0);
+      }
+    }
+
+    runner.finish();
+    return opsDone;
+  }
+
+  private static Workload newWorkload(Properties props)
+  {
+    Workload workload=null;
+    try
+    {
+      Class<?> workloadclass=Client.class.getClassLoader().loadClass(props.getProperty(Client.WORKLOAD_PROPERTY));
+      workload=(Workload)workloadclass.newInstance();
+      workload.init(props);
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      System.exit(0);
+    }
+    return workload;
+  }
+
+  /**
+   * Export the run time and throughput of each phase.
+   */
+  @Override
+  public void exportResults(MeasurementsExporter exporter) throws IOException
+  {
+    for (Phase phase : _phases)
+    {
+      exporter.write(phase._name, "RunTime(ms)", phase._runtimeMs);
+      exporter.write(phase._name, "Throughput(ops/sec)", 1000.0*phase._opsDone/phase._runtimeMs);
+    }
+  }
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Finds the highest throughput the database sustains within a latency SLO.
+ *
+ * The client runs a series of fixed-length steps, each at a different target throughput, on the same client
+ * threads and DB instances. A step meets the SLO if the worst latency at the chosen percentile across all
+ * operations is within the limit and the throughput achieved is within the tolerance of the target. The
+ * "step" search raises the target by a fixed increment until a step fails; the "binary" search doubles the
+ * target until a step fails and then bisects between the best passing and the lowest failing target.
+ *
+ * Percentiles are taken from HdrHistogram measurements, and from the intended start of each operation when
+ * "measurement.interval" includes it, which it should for an open-loop arrival process.
+ */
+public class SaturationSearch implements RunResults
+{
+  /**
+   * The search to run, {@link #STEP} or {@link #BINARY}.
+   */
+  public static final String SEARCH_PROPERTY="saturationsearch";
+
+  /**
+   * Raise the target by a fixed increment until the SLO is missed.
+   */
+  public static final String STEP="step";
+
+  /**
+   * Double the target until the SLO is missed, then bisect.
+   */
+  public static final String BINARY="binary";
+
+  /**
+   * The latency limit in milliseconds. Required.
+   */
+  public static final String SLO_PROPERTY="saturationsearch.slo";
+
+  /**
+   * The latency percentile the limit applies to.
+   */
+  public static final String PERCENTILE_PROPERTY="saturationsearch.percentile";
+  public static final String PERCENTILE_PROPERTY_DEFAULT="99";
+
+  /**
+   * The target throughput of the first step, in ops/sec.
+   */
+  public static final String START_PROPERTY="saturationsearch.start";
+  public static final String START_PROPERTY_DEFAULT="1000";
+
+  /**
+   * How much the step search raises the target by each step, in ops/sec. Defaults to the starting target.
+   */
+  public static final String INCREMENT_PROPERTY="saturationsearch.increment";
+
+  /**
+   * The length of each step in seconds.
+   */
+  public static final String STEP_DURATION_PROPERTY="saturationsearch.stepduration";
+  public static final String STEP_DURATION_PROPERTY_DEFAULT="60";
+
+  /**
+   * The binary search stops once the gap between the best passing and the lowest failing target is within
+   * this fraction of the failing target.
+   */
+  public static final String PRECISION_PROPERTY="saturationsearch.precision";
+  public static final String PRECISION_PROPERTY_DEFAULT="0.05";
+
+  /**
+   * A step misses the SLO if it achieves less than the target by more than this fraction.
+   */
+  public static final String TOLERANCE_PROPERTY="saturationsearch.tolerance";
+  public static final String TOLERANCE_PROPERTY_DEFAULT="0.05";
+
+  /**
+   * The maximum number of steps to run.
+   */
+  public static final String MAX_STEPS_PROPERTY="saturationsearch.maxsteps";
+  public static final String MAX_STEPS_PROPERTY_DEFAULT="20";
+
+  /**
+   * The outcome of one step.
+   */
+  static class Step
+  {
+    double _target;
+    double _throughput;
+    long _runtimeMs;
+    double _latencyUs;
+    boolean _passed;
+  }
+
+  private final boolean _binary;
+  private final double _sloUs;
+  private final double _percentile;
+  private final double _start;
+  private final double _increment;
+  private final long _stepDurationNs;
+  private final double _precision;
+  private final double _tolerance;
+  private final int _maxSteps;
+  private final String _arrivalprocess;
+  private final long _burstNs;
+
+  private final List<Step> _steps=new ArrayList<Step>();
+  private Step _best;
+
+  /**
+   * Reads the search parameters. Sets HdrHistogram measurements unless another type was asked for.
+   *
+   * @param props The properties of the run.
+   * @param arrivalprocess The open-loop arrival process, or null to throttle each thread to its share.
+   * @throws IllegalArgumentException if the parameters are invalid.
+   */
+  public SaturationSearch(Properties props, String arrivalprocess)
+  {
+    String search=props.getProperty(SEARCH_PROPERTY);
+    if (search.equals(STEP))
+    {
+      _binary=false;
+    }
+    else if (search.equals(BINARY))
+    {
+      _binary=true;
+    }
+    else
+    {
+      throw new IllegalArgumentException("unknown "+SEARCH_PROPERTY+" \""+search+"\"");
+    }
+    if (props.getProperty(SLO_PROPERTY)==null)
+    {
+      throw new IllegalArgumentException("a saturation search requires a latency limit in \""+SLO_PROPERTY+"\"");
+    }
+    _sloUs=Double.parseDouble(props.getProperty(SLO_PROPERTY))*1000;
+    _percentile=Double.parseDouble(props.getProperty(PERCENTILE_PROPERTY, PERCENTILE_PROPERTY_DEFAULT));
+    _start=Double.parseDouble(props.getProperty(START_PROPERTY, START_PROPERTY_DEFAULT));
+    _increment=Double.parseDouble(props.getProperty(INCREMENT_PROPERTY, Double.toString(_start)));
+    _stepDurationNs=TimeUnit.SECONDS.toNanos(
+        Long.parseLong(props.getProperty(STEP_DURATION_PROPERTY, STEP_DURATION_PROPERTY_DEFAULT)));
+    _precision=Double.parseDouble(props.getProperty(PRECISION_PROPERTY, PRECISION_PROPERTY_DEFAULT));
+    _tolerance=Double.parseDouble(props.getProperty(TOLERANCE_PROPERTY, TOLERANCE_PROPERTY_DEFAULT));
+    _maxSteps=Integer.parseInt(props.getProperty(MAX_STEPS_PROPERTY, MAX_STEPS_PROPERTY_DEFAULT));
+    if ((_start<=0) || (_increment<=0) || (_stepDurationNs<=0))
+    {
+      throw new IllegalArgumentException("the saturation search start, increment and step duration must be positive");
+    }
+    _arrivalprocess=arrivalprocess;
+    _burstNs=ArrivalScheduler.getBurstNs(props);
+
+    String measurementtype=props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY);
+    if (measurementtype==null)
+    {
+      props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+    }
+    else if (!measurementtype.startsWith("hdrhistogram"))
+    {
+      throw new IllegalArgumentException("a saturation search requires hdrhistogram measurements");
+    }
+  }
+
+  /**
+   * Run the search on the given clients.
+   *
+   * @param runner Runs the client threads; started and finished by the search.
+   * @param status If true the status of each step is shown while it runs.
+   * @param label The label for the status.
+   * @param standardstatus If true the status is printed to stdout in addition to stderr.
+   * @param statusIntervalSeconds The number of seconds between status updates.
+   * @return The total number of operations done.
+   */
+  long run(StepRunner runner, boolean status, String label, boolean standardstatus, int statusIntervalSeconds)
+  {
+    List<ClientThread> clients=runner.getClients();
+    runner.start();
+
+    long opsDone=0;
+    double target=_start;
+    double failed=-1;
+    for (int i=0; i<_maxSteps; i++)
+    {
+      Measurements.getMeasurements().startScope(stepName(i));
+
+      ArrivalScheduler scheduler=null;
+      TargetSchedule threadschedule=null;
+      if (_arrivalprocess!=null)
+      {
+        scheduler=new ArrivalScheduler(_arrivalprocess, TargetSchedule.constant(target, _stepDurationNs), 0, _burstNs);
+      }
+      else
+      {
+        threadschedule=TargetSchedule.constant(target/clients.size(), _stepDurationNs);
+      }
+      for (ClientThread client : clients)
+      {
+        client.reset(0, -1, scheduler, threadschedule);
+      }
+
+      CountDownLatch stepdone=new CountDownLatch(1);
+      StatusThread statusthread=null;
+      if (status)
+      {
+        statusthread=new StatusThread(stepdone, clients, label, standardstatus, statusIntervalSeconds);
+        statusthread.start();
+      }
+      long st=System.nanoTime();
+      long stepops=runner.runStep();
+      long en=System.nanoTime();
+      stepdone.countDown();
+      if (statusthread!=null)
+      {
+        try
+        {
+          statusthread.join();
+        }
+        catch (InterruptedException e)
+        {
+        }
+      }
+      opsDone+=stepops;
+
+      Step step=new Step();
+      step._target=target;
+      step._runtimeMs=TimeUnit.NANOSECONDS.toMillis(en-st);
+      step._throughput=1000.0*stepops/step._runtimeMs;
+      step._latencyUs=Measurements.getMeasurements().getWorstPercentileLatency(_percentile);
+      step._passed=(step._latencyUs<=_sloUs) && (step._throughput>=(1-_tolerance)*target);
+      _steps.add(step);
+      report(i, step);
+
+      if (step._passed)
+      {
+        if ((_best==null) || (step._target>_best._target))
+        {
+          _best=step;
+        }
+      }
+      else
+      {
+        failed=target;
+      }
+
+      double best=(_best==null) ? 0 : _best._target;
+      if (!_binary)
+      {
+        if (!step._passed)
+        {
+          break;
+        }
+        target+=_increment;
+      }
+      else if (failed<0)
+      {
+        target*=2;
+      }
+      else
+      {
+        if ((failed-best)<=_precision*failed)
+        {
+          break;
+        }
+        target=(best+failed)/2;
+      }
+    }
+
+    runner.finish();
+
+    if (_best==null)
+    {
+      System.err.println("No target met the SLO.");
+    }
+    else
+    {
+      System.err.println("Highest target meeting the SLO: "+new DecimalFormat("#.##").format(_best._target)+" ops/sec");
+    }
+    return opsDone;
+  }
+
+  private void report(int i, Step step)
+  {
+    DecimalFormat d=new DecimalFormat("#.##");
+    System.err.println(stepName(i)+": target "+d.format(step._target)+" ops/sec, achieved "+
+        d.format(step._throughput)+" ops/sec, "+percentileName()+" latency "+d.format(step._latencyUs)+" us, "+
+        (step._passed ? "met" : "missed")+" the SLO");
+  }
+
+  static String stepName(int step)
+  {
+    return "STEP"+(step+1);
+  }
+
+  private String percentileName()
+  {
+    return new DecimalFormat("#.###").format(_percentile)+"thPercentile";
+  }
+
+  /**
+   * Export the outcome of each step and of the search.
+   */
+  @Override
+  public void exportResults(MeasurementsExporter exporter) throws IOException
+  {
+    for (int i=0; i<_steps.size(); i++)
+    {
+      Step step=_steps.get(i);
+      exporter.write(stepName(i), "Target(ops/sec)", step._target);
+      exporter.write(stepName(i), "RunTime(ms)", step._runtimeMs);
+      exporter.write(stepName(i), "Throughput(ops/sec)", step._throughput);
+      exporter.write(stepName(i), percentileName()+"Latency(us)", step._latencyUs);
+      exporter.write(stepName(i), "MetSLO", step._passed ? 1 : 0);
+    }
+    if (_best!=null)
+    {
+      exporter.write("SATURATION", "Target(ops/sec)", _best._target);
+      exporter.write("SATURATION", "Throughput(ops/sec)", _best._throughput);
+    }
+  }
+}
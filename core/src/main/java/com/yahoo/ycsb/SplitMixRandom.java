@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Random;
+
+/**
+ * A SplitMix64 generator, as used by java.util.SplittableRandom: a counter advanced by a fixed odd gamma and
+ * scrambled by a 64 bit mix. Unlike {@link Random} it keeps no atomic state, so it is much cheaper per value,
+ * and a seed and a stream number give a stream independent of every other stream number. It is not thread
+ * safe; each thread has its own, see {@link Utils#random()}.
+ */
+class SplitMixRandom extends Random
+{
+  private static final long serialVersionUID=-2712367153843394627L;
+
+  private static final long GOLDEN_GAMMA=0x9e3779b97f4a7c15L;
+
+  private long _state;
+
+  SplitMixRandom(long seed)
+  {
+    super(0);
+    _state=seed;
+  }
+
+  /**
+   * @return The seed of stream number stream of the streams for a seed.
+   */
+  static long streamSeed(long seed, long stream)
+  {
+    return mix64(seed+(stream+1)*GOLDEN_GAMMA);
+  }
+
+  private static long mix64(long z)
+  {
+    z=(z^(z>>>30))*0xbf58476d1ce4e5b9L;
+    z=(z^(z>>>27))*0x94d049bb133111ebL;
+    return z^(z>>>31);
+  }
+
+  @Override
+  public void setSeed(long seed)
+  {
+    // also called by the Random constructor
+    _state=seed;
+  }
+
+  @Override
+  protected int next(int bits)
+  {
+    return (int)(nextLong()>>>(64-bits));
+  }
+
+  @Override
+  public long nextLong()
+  {
+    _state+=GOLDEN_GAMMA;
+    return mix64(_state);
+  }
+
+  @Override
+  public int nextInt()
+  {
+    return (int)(nextLong()>>>32);
+  }
+
+  @Override
+  public double nextDouble()
+  {
+    return (nextLong()>>>11)*0x1.0p-53;
+  }
+}
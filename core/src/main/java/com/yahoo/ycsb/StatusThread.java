@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A thread to periodically show the status of the experiment, to reassure you that progress is being made.
+ *
+ * @author cooperb
+ */
+class StatusThread extends Thread
+{
+  /** Counts down each of the clients completing. */
+  private final CountDownLatch _completeLatch;
+
+  /** The clients that are running. */
+  private final List<ClientThread> _clients;
+
+  private final String _label;
+  private final boolean _standardstatus;
+
+  /** The interval for reporting status. */
+  private long _sleeptimeNs;
+
+  /**
+   * Creates a new StatusThread.
+   *
+   * @param completeLatch The latch that each client thread will {@link CountDownLatch#countDown()} as they complete.
+   * @param clients The clients to collect metrics from.
+   * @param label The label for the status.
+   * @param standardstatus If true the status is printed to stdout in addition to stderr.
+   * @param statusIntervalSeconds The number of seconds between status updates.
+   */
+  public StatusThread(CountDownLatch completeLatch, List<ClientThread> clients,
+      String label, boolean standardstatus, int statusIntervalSeconds)
+  {
+    _completeLatch=completeLatch;
+    _clients=clients;
+    _label=label;
+    _standardstatus=standardstatus;
+    _sleeptimeNs=TimeUnit.SECONDS.toNanos(statusIntervalSeconds);
+  }
+
+  /**
+   * Run and periodically report status. While it runs, this thread takes the measurements' intervals in place
+   * of their ticker.
+   */
+  @Override
+  public void run()
+  {
+    Measurements measurements=Measurements.getMeasurements();
+    measurements.pauseTicker();
+    try
+    {
+      report();
+    }
+    finally
+    {
+      measurements.resumeTicker();
+    }
+  }
+
+  private void report()
+  {
+    final long startTimeMs=System.currentTimeMillis();
+    final long startTimeNanos = System.nanoTime();
+    long deadline = startTimeNanos + _sleeptimeNs;
+    long startIntervalMs=startTimeMs;
+    long lastTotalOps=0;
+
+    boolean alldone;
+
+    do
+    {
+      long nowMs=System.currentTimeMillis();
+
+      lastTotalOps = computeStats(startTimeMs, startIntervalMs, nowMs, lastTotalOps);
+
+      alldone = waitForClientsUntil(deadline);
+
+      startIntervalMs=nowMs;
+      deadline+=_sleeptimeNs;
+    }
+    while (!alldone);
+
+    // Print the final stats.
+    computeStats(startTimeMs, startIntervalMs, System.currentTimeMillis(), lastTotalOps);
+  }
+
+  /**
+   * Computes and prints the stats.
+   *
+   * @param startTimeMs The start time of the test.
+   * @param startIntervalMs The start time of this interval.
+   * @param endIntervalMs The end time (now) for the interval.
+   * @param lastTotalOps The last total operations count.
+   *
+   * @return The current operation count.
+   */
+  private long computeStats(final long startTimeMs, long startIntervalMs, long endIntervalMs,
+      long lastTotalOps) {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
+
+    long totalops=0;
+    long todoops=0;
+
+    // Calculate the total number of operations completed.
+    for (ClientThread t : _clients)
+    {
+      totalops+=t.getOpsDone();
+      todoops+=t.getOpsTodo();
+    }
+
+
+    long interval=endIntervalMs-startTimeMs;
+    double throughput=1000.0*(((double)totalops)/(double)interval);
+    double curthroughput=1000.0*(((double)(totalops-lastTotalOps))/((double)(endIntervalMs-startIntervalMs)));
+    long estremaining = (long) Math.ceil(todoops / throughput);
+
+
+    DecimalFormat d = new DecimalFormat("#.##");
+    String label = _label + format.format(new Date());
+
+    StringBuilder msg = new StringBuilder(label).append(" ").append(interval/1000).append(" sec: ");
+    msg.append(totalops).append(" operations; ");
+
+    if (totalops != 0) {
+      msg.append(d.format(curthroughput)).append(" current ops/sec; ");
+    }
+    if (todoops != 0) {
+        msg.append("est completion in ").append(RemainingFormatter.format(estremaining));
+    }
+
+    msg.append(Measurements.getMeasurements().getSummary());
+
+    System.err.println(msg);
+
+    if (_standardstatus) {
+      System.out.println(msg);
+    }
+    return totalops;
+  }
+
+  /**
+   * Waits for all of the client to finish or the deadline to expire.
+   *
+   * @param deadline The current deadline.
+   *
+   * @return True if all of the clients completed.
+   */
+  private boolean waitForClientsUntil(long deadline) {
+    boolean alldone=false;
+    long now=System.nanoTime();
+
+    while( !alldone && now < deadline ) {
+      try {
+        alldone = _completeLatch.await(deadline-now, TimeUnit.NANOSECONDS);
+      }
+      catch( InterruptedException ie) {
+        // If we are interrupted the thread is being asked to shutdown.
+        // Return true to indicate that and reset the interrupt state
+        // of the thread.
+        Thread.currentThread().interrupt();
+        alldone=true;
+      }
+      now=System.nanoTime();
+    }
+
+    return alldone;
+  }
+}
+
+/**
+ * Turn seconds remaining into more useful units.
+ * i.e. if there are hours or days worth of seconds, use them.
+ */
+class RemainingFormatter {
+	public static StringBuilder format(long seconds) {
+		StringBuilder time = new StringBuilder();
+		long days = TimeUnit.SECONDS.toDays(seconds);
+		if (days > 0) {
+			time.append(days).append(" days ");
+			seconds -= TimeUnit.DAYS.toSeconds(days);
+		}
+		long hours = TimeUnit.SECONDS.toHours(seconds);
+		if (hours > 0) {
+			time.append(hours).append(" hours ");
+			seconds -= TimeUnit.HOURS.toSeconds(hours);
+		}
+		/* Only include minute granularity if we're < 1 day. */
+		if (days < 1) {
+			long minutes = TimeUnit.SECONDS.toMinutes(seconds);
+			if (minutes > 0) {
+				time.append(minutes).append(" minutes ");
+				seconds -= TimeUnit.MINUTES.toSeconds(seconds);
+			}
+		}
+		/* Only bother to include seconds if we're < 1 minute */
+		if (time.length() == 0) {
+			time.append(seconds).append(" seconds ");
+		}
+		return time;
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs the client threads through a series of steps, keeping each thread and its DB instance alive from one
+ * step to the next so that connections stay open and warm. Each DB is initialized once before the first
+ * step and cleaned up once after the last.
+ *
+ * Between steps every client thread waits for the next step to start, so the clients may safely be
+ * {@link ClientThread#reset reset} before each call to {@link #runStep()}.
+ */
+class StepRunner
+{
+  private final List<ClientThread> _clients;
+  private final List<Thread> _threads;
+  private final CyclicBarrier _start;
+  private final CyclicBarrier _end;
+  private volatile boolean _finished=false;
+
+  /**
+   * Creates the client threads; call {@link #start()} to start them.
+   *
+   * @param clients The clients to run.
+   * @param threadfactory Creates the threads the clients run on.
+   */
+  StepRunner(List<ClientThread> clients, ClientThreadFactory threadfactory)
+  {
+    _clients=clients;
+    _threads=new ArrayList<Thread>(clients.size());
+    _start=new CyclicBarrier(clients.size()+1);
+    _end=new CyclicBarrier(clients.size()+1);
+    for (final ClientThread client : clients)
+    {
+      _threads.add(threadfactory.newThread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          runSteps(client);
+        }
+      }));
+    }
+  }
+
+  private void runSteps(ClientThread client)
+  {
+    client.seedRandom();
+    if (!client.initDB())
+    {
+      System.out.println("Could not initialize the DB, exiting");
+      System.exit(0);
+    }
+    while (await(_start) && !_finished)
+    {
+      if (!client.runWorkload())
+      {
+        System.out.println("Could not initialize the workload, exiting");
+        System.exit(0);
+      }
+      if (!await(_end))
+      {
+        break;
+      }
+    }
+    client.cleanupDB();
+  }
+
+  /**
+   * Start the client threads, which initialize their DBs and wait for the first step.
+   */
+  void start()
+  {
+    for (Thread t : _threads)
+    {
+      t.start();
+    }
+  }
+
+  /**
+   * @return The clients this runner runs.
+   */
+  List<ClientThread> getClients()
+  {
+    return _clients;
+  }
+
+  /**
+   * Run one step on every client and wait for them all to finish it.
+   *
+   * @return The number of operations done in the step.
+   */
+  long runStep()
+  {
+    if (!await(_start) || !await(_end))
+    {
+      throw new IllegalStateException("interrupted while running a step");
+    }
+    long opsdone=0;
+    for (ClientThread client : _clients)
+    {
+      opsdone+=client.getOpsDone();
+    }
+    return opsdone;
+  }
+
+  /**
+   * Clean up the DBs and wait for the client threads to exit.
+   */
+  void finish()
+  {
+    _finished=true;
+    await(_start);
+    for (Thread t : _threads)
+    {
+      try
+      {
+        t.join();
+      }
+      catch (InterruptedException e)
+      {
+      }
+    }
+  }
+
+  /**
+   * @return false if the thread was interrupted or another thread gave up waiting.
+   */
+  private static boolean await(CyclicBarrier barrier)
+  {
+    try
+    {
+      barrier.await();
+      return true;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    catch (BrokenBarrierException e)
+    {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A target throughput that changes over the course of a run.
+ *
+ * A schedule is a comma separated list of stages, each a time range and the target for that range, e.g.
+ * "0-300s:10k,300-600s:20k" runs at 10,000 ops/sec for five minutes and then at 20,000 ops/sec for five
+ * more. A target of the form "from-to", e.g. "0-10m:1k-50k", ramps linearly across the stage. Times take
+ * an optional unit of s (the default), m or h; targets an optional multiplier of k or m. No operations are
+ * issued in gaps between stages, and the run ends with the last stage.
+ */
+public class TargetSchedule
+{
+  /**
+   * One stage of the schedule.
+   */
+  public static class Stage
+  {
+    final long _startNs;
+    final long _endNs;
+    final double _fromOpsPerSec;
+    final double _toOpsPerSec;
+
+    Stage(long startNs, long endNs, double fromOpsPerSec, double toOpsPerSec)
+    {
+      _startNs=startNs;
+      _endNs=endNs;
+      _fromOpsPerSec=fromOpsPerSec;
+      _toOpsPerSec=toOpsPerSec;
+    }
+
+    public long getStartNs()
+    {
+      return _startNs;
+    }
+
+    public long getEndNs()
+    {
+      return _endNs;
+    }
+
+    double rateAt(long elapsedNs)
+    {
+      if ((_fromOpsPerSec==_toOpsPerSec) || (_endNs==Long.MAX_VALUE))
+      {
+        return _fromOpsPerSec;
+      }
+      double fraction=((double)(elapsedNs-_startNs))/((double)(_endNs-_startNs));
+      return _fromOpsPerSec+(_toOpsPerSec-_fromOpsPerSec)*fraction;
+    }
+
+    /**
+     * @return Whether any operations are issued in this stage.
+     */
+    boolean hasOps()
+    {
+      return (_fromOpsPerSec>0) || (_toOpsPerSec>0);
+    }
+
+    /**
+     * @return The change in the target per second, in ops/sec.
+     */
+    private double slope()
+    {
+      if ((_fromOpsPerSec==_toOpsPerSec) || (_endNs==Long.MAX_VALUE))
+      {
+        return 0;
+      }
+      return (_toOpsPerSec-_fromOpsPerSec)/((double)(_endNs-_startNs)/TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @return The number of operations the stage issues between two of its times.
+     */
+    double opsBetween(long fromNs, long toNs)
+    {
+      return (rateAt(fromNs)+rateAt(toNs))/2*(toNs-fromNs)/TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Solve for when the stage, from the given time, has issued the given number of operations: the x for
+     * which rate*x+slope*x*x/2 = ops.
+     *
+     * @return The time, or positive infinity if the target falls to zero first.
+     */
+    double dueNs(long fromNs, double ops)
+    {
+      if (ops<=0)
+      {
+        return fromNs;
+      }
+      double rate=rateAt(fromNs);
+      double slope=slope();
+      double seconds;
+      if (slope==0)
+      {
+        seconds=(rate>0) ? ops/rate : Double.POSITIVE_INFINITY;
+      }
+      else
+      {
+        double discriminant=rate*rate+2*slope*ops;
+        double denominator=rate+Math.sqrt(Math.max(0, discriminant));
+        // the form without the difference of the roots is stable as the rate approaches zero
+        seconds=((discriminant<0) || (denominator<=0)) ? Double.POSITIVE_INFINITY : 2*ops/denominator;
+      }
+      return fromNs+seconds*TimeUnit.SECONDS.toNanos(1);
+    }
+  }
+
+  private final List<Stage> _stages;
+
+  private TargetSchedule(List<Stage> stages)
+  {
+    _stages=stages;
+  }
+
+  /**
+   * A schedule with a single stage that never ends.
+   *
+   * @param opsPerSec The target throughput.
+   */
+  public static TargetSchedule constant(double opsPerSec)
+  {
+    return constant(opsPerSec, Long.MAX_VALUE);
+  }
+
+  /**
+   * A schedule with a single stage of the given length.
+   *
+   * @param opsPerSec The target throughput.
+   * @param durationNs How long the schedule lasts.
+   */
+  public static TargetSchedule constant(double opsPerSec, long durationNs)
+  {
+    List<Stage> stages=new ArrayList<Stage>(1);
+    stages.add(new Stage(0, durationNs, opsPerSec, opsPerSec));
+    return new TargetSchedule(stages);
+  }
+
+  /**
+   * Parse a schedule specification.
+   *
+   * @throws IllegalArgumentException if the specification is malformed or its stages overlap.
+   */
+  public static TargetSchedule parse(String spec)
+  {
+    List<Stage> stages=new ArrayList<Stage>();
+    long lastEndNs=0;
+    for (String stagespec : spec.split(","))
+    {
+      stagespec=stagespec.trim();
+      int colon=stagespec.indexOf(':');
+      if (colon<0)
+      {
+        throw new IllegalArgumentException("stage \""+stagespec+"\" is not of the form start-end:target");
+      }
+      String[] times=splitRange(stagespec.substring(0, colon), stagespec);
+      String[] targets=splitRange(stagespec.substring(colon+1), stagespec);
+
+      long startNs=parseTimeNs(times[0]);
+      long endNs=parseTimeNs(times[1]);
+      if (endNs<=startNs)
+      {
+        throw new IllegalArgumentException("stage \""+stagespec+"\" ends before it starts");
+      }
+      if (startNs<lastEndNs)
+      {
+        throw new IllegalArgumentException("stage \""+stagespec+"\" overlaps the previous stage");
+      }
+      double from=parseOpsPerSec(targets[0]);
+      double to=(targets.length>1) ? parseOpsPerSec(targets[1]) : from;
+
+      stages.add(new Stage(startNs, endNs, from, to));
+      lastEndNs=endNs;
+    }
+    return new TargetSchedule(stages);
+  }
+
+  private static String[] splitRange(String range, String stagespec)
+  {
+    String[] parts=range.trim().split("-");
+    if ((parts.length<1) || (parts.length>2) || (parts[0].length()==0))
+    {
+      throw new IllegalArgumentException("cannot parse \""+range+"\" in stage \""+stagespec+"\"");
+    }
+    return parts;
+  }
+
+  /**
+   * Parse a time with an optional unit of s (the default), m or h.
+   */
+  static long parseTimeNs(String time)
+  {
+    TimeUnit unit=TimeUnit.SECONDS;
+    long multiplier=1;
+    char last=time.charAt(time.length()-1);
+    if (last=='s')
+    {
+      time=time.substring(0, time.length()-1);
+    }
+    else if (last=='m')
+    {
+      multiplier=60;
+      time=time.substring(0, time.length()-1);
+    }
+    else if (last=='h')
+    {
+      multiplier=3600;
+      time=time.substring(0, time.length()-1);
+    }
+    return (long)(Double.parseDouble(time)*multiplier*unit.toNanos(1));
+  }
+
+  private static double parseOpsPerSec(String target)
+  {
+    double multiplier=1;
+    char last=Character.toLowerCase(target.charAt(target.length()-1));
+    if (last=='k')
+    {
+      multiplier=1000;
+      target=target.substring(0, target.length()-1);
+    }
+    else if (last=='m')
+    {
+      multiplier=1000000;
+      target=target.substring(0, target.length()-1);
+    }
+    return Double.parseDouble(target)*multiplier;
+  }
+
+  /**
+   * @return The stages of this schedule, in order.
+   */
+  public List<Stage> getStages()
+  {
+    return _stages;
+  }
+
+  /**
+   * @return The time, relative to the start of the schedule, when the last stage ends.
+   */
+  public long getEndNs()
+  {
+    return _stages.get(_stages.size()-1)._endNs;
+  }
+
+  /**
+   * A copy of this schedule with every target multiplied by a factor, e.g. one client thread's share of it.
+   */
+  public TargetSchedule scale(double factor)
+  {
+    List<Stage> stages=new ArrayList<Stage>(_stages.size());
+    for (Stage s : _stages)
+    {
+      stages.add(new Stage(s._startNs, s._endNs, s._fromOpsPerSec*factor, s._toOpsPerSec*factor));
+    }
+    return new TargetSchedule(stages);
+  }
+
+  /**
+   * @return The index of the stage in effect at the given time, or -1 if it falls between or after the stages.
+   */
+  public int stageAt(long elapsedNs)
+  {
+    for (int i=0; i<_stages.size(); i++)
+    {
+      Stage s=_stages.get(i);
+      if (elapsedNs<s._startNs)
+      {
+        return -1;
+      }
+      if (elapsedNs<s._endNs)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The target throughput at the given time, 0 between or after the stages.
+   */
+  public double rateAt(long elapsedNs)
+  {
+    int i=stageAt(elapsedNs);
+    return (i<0) ? 0 : _stages.get(i).rateAt(elapsedNs);
+  }
+
+  /**
+   * Work out when the operation following one due at the given time is due. Within a stage the next operation
+   * is due once the target, integrated over time, has issued it, so ramps that start at zero still run; the
+   * count carries over into a stage that starts as the previous one ends. After a gap between stages, the
+   * next operation is due as the next stage with a non-zero target starts.
+   *
+   * @param elapsedNs When the previous operation was due, relative to the start of the schedule.
+   * @param gapScale The gap to the next operation as a multiple of the mean gap at the current target: 1 for
+   *        evenly spaced operations, or an exponentially distributed value with mean 1 for Poisson arrivals.
+   * @return When the next operation is due relative to the start of the schedule, or -1 if the schedule has ended.
+   */
+  public long nextNs(long elapsedNs, double gapScale)
+  {
+    double ops=gapScale;
+    long fromNs=elapsedNs;
+    for (int i=0; i<_stages.size(); i++)
+    {
+      Stage s=_stages.get(i);
+      if (s._endNs<=fromNs)
+      {
+        continue;
+      }
+      if (s._startNs>fromNs)
+      {
+        // skip ahead to the next stage with a non-zero target
+        for (int j=i; j<_stages.size(); j++)
+        {
+          if (_stages.get(j).hasOps())
+          {
+            return _stages.get(j)._startNs;
+          }
+        }
+        return -1;
+      }
+      double dueNs=s.dueNs(fromNs, ops);
+      if (dueNs<s._endNs)
+      {
+        return (long)dueNs;
+      }
+      ops-=s.opsBetween(fromNs, s._endNs);
+      fromNs=s._endNs;
+    }
+    return -1;
+  }
+}
@@ -26,15 +26,42 @@ public class Utils
 {
   private static final Random rand = new Random();
   private static final ThreadLocal<Random> rng = new ThreadLocal<Random>();
+  private static volatile Long seed = null;
 
+  /**
+   * Return the random number generator of the calling thread, which is used by every generator. It is
+   * not thread safe and must not be handed to another thread.
+   */
   public static Random random() {
     Random ret = rng.get();
     if(ret == null) {
-      ret = new Random(rand.nextLong());
+      ret = new SplitMixRandom(rand.nextLong());
       rng.set(ret);
     }
     return ret;
   }
+
+  /**
+   * Make the random numbers of the run reproducible: the calling thread and every thread later given a
+   * stream with {@link #seedThread(int)} draw from a stream determined by the seed.
+   */
+  public static void setSeed(long s) {
+    seed = s;
+    rng.set(new SplitMixRandom(SplitMixRandom.streamSeed(s, -1)));
+  }
+
+  /**
+   * Give the calling thread its own stream of the seed set with {@link #setSeed(long)}, independent of the
+   * other streams. Without a seed, the thread keeps its unseeded generator.
+   *
+   * @param stream The number of the stream, e.g. the number of a client thread.
+   */
+  public static void seedThread(int stream) {
+    Long s = seed;
+    if (s != null) {
+      rng.set(new SplitMixRandom(SplitMixRandom.streamSeed(s, stream)));
+    }
+  }
       /**
        * Generate a random ASCII string of a given length.
        */
@@ -67,6 +67,15 @@ public abstract class Workload
 	 return null;
       }
       
+      /**
+       * Cleanup any state for a particular client thread. Called once per client thread, on that thread, after
+       * its last operation and before its DB is cleaned up. Workloads that buffer operations in the thread state
+       * (e.g. to issue them as a batch) should complete them here.
+       */
+      public void cleanupThread(DB db, Object threadstate) throws WorkloadException
+      {
+      }
+
       /**
        * Cleanup the scenario. Called once, in the main client thread, after all operations have completed.
        */
@@ -17,38 +17,63 @@
 
 package com.yahoo.ycsb.generator;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Generates a sequence of integers 0, 1, ...
  */
 public class CounterGenerator extends IntegerGenerator
 {
-	final AtomicInteger counter;
+	final AtomicLong counter;
+	final long countstart;
+	final long step;
+	final long lastbeforestart;
 
 	/**
 	 * Create a counter that starts at countstart
 	 */
-	public CounterGenerator(int countstart)
+	public CounterGenerator(long countstart)
 	{
-		counter=new AtomicInteger(countstart);
-		setLastInt(counter.get()-1);
+		this(countstart,1);
+	}
+
+	/**
+	 * Create a counter that starts at countstart and counts in steps of step, e.g. so that several clients
+	 * can count through the same range without overlapping.
+	 */
+	public CounterGenerator(long countstart, long step)
+	{
+		this(countstart,step,countstart-1);
+	}
+
+	/**
+	 * Create a counter that starts at countstart and counts in steps of step, whose last value is lastbeforestart
+	 * until it returns its first, e.g. the last key loaded before a client inserts keys from an offset.
+	 */
+	public CounterGenerator(long countstart, long step, long lastbeforestart)
+	{
+		this.countstart=countstart;
+		this.step=step;
+		this.lastbeforestart=lastbeforestart;
+		counter=new AtomicLong(countstart);
+		setLastLong(lastbeforestart);
 	}
 	
 	/**
-	 * If the generator returns numeric (integer) values, return the next value as an int. Default is to return -1, which
+	 * If the generator returns numeric (integer) values, return the next value as a long. Default is to return -1, which
 	 * is appropriate for generators that do not return numeric values.
 	 */
-	public int nextInt() 
+	public long nextLong() 
 	{
-		int ret = counter.getAndIncrement();
-		setLastInt(ret);
+		long ret = counter.getAndAdd(step);
+		setLastLong(ret);
 		return ret;
 	}
 	@Override
-	public int lastInt()
+	public long lastLong()
 	{
-	                return counter.get() - 1;
+	                long next=counter.get();
+	                return (next==countstart) ? lastbeforestart : next - step;
 	}
 	@Override
 	public double mean() {
@@ -65,21 +65,9 @@ public class ExponentialGenerator extends IntegerGenerator
 	/** 
 	 * Generate the next item. this distribution will be skewed toward lower integers; e.g. 0 will
 	 * be the most popular, 1 the next most popular, etc.
-	 * @param itemcount The number of items in the distribution.
 	 * @return The next item in the sequence.
 	 */
 	@Override
-	public int nextInt()
-	{
-		return (int)nextLong();
-	}
-
-	/**
-	 * Generate the next item as a long.
-	 * 
-	 * @param itemcount The number of items in the distribution.
-	 * @return The next item in the sequence.
-	 */
 	public long nextLong()
 	{
 		return (long) (-Math.log(Utils.random().nextDouble()) / _gamma);
@@ -93,7 +81,7 @@ public class ExponentialGenerator extends IntegerGenerator
         ExponentialGenerator e = new ExponentialGenerator(90, 100);
         int j = 0;
         for(int i = 0; i < 1000; i++) {
-            if(e.nextInt() < 100) {
+            if(e.nextLong() < 100) {
                 j++;
             }
         }
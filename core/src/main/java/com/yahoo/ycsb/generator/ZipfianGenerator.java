@@ -25,7 +25,7 @@ import com.yahoo.ycsb.Utils;
  * A generator of a zipfian distribution. It produces a sequence of items, such that some items are more popular than others, according
  * to a zipfian distribution. When you construct an instance of this class, you specify the number of items in the set to draw from, either
  * by specifying an itemcount (so that the sequence is of items from 0 to itemcount-1) or by specifying a min and a max (so that the sequence is of 
- * items from min to max inclusive). After you construct the instance, you can change the number of items by calling nextInt(itemcount) or nextLong(itemcount).
+ * items from min to max inclusive). After you construct the instance, you can change the number of items by calling nextLong(itemcount).
  * 
  * Note that the popular items will be clustered together, e.g. item 0 is the most popular, item 1 the second most popular, and so on (or min is the most 
  * popular, min+1 the next most popular, etc.) If you don't want this clustering, and instead want the popular items scattered throughout the 
@@ -148,7 +148,7 @@ public class ZipfianGenerator extends IntegerGenerator
 		eta=(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan);
 		
 		//System.out.println("XXXX 3 XXXX");
-		nextInt();
+		nextLong();
 		//System.out.println("XXXX 4 XXXX");
 	}
 	
@@ -220,18 +220,8 @@ public class ZipfianGenerator extends IntegerGenerator
 	/****************************************************************************************/
 	
 	/** 
-	 * Generate the next item. this distribution will be skewed toward lower integers; e.g. 0 will
+	 * Generate the next item as a long. this distribution will be skewed toward lower integers; e.g. 0 will
 	 * be the most popular, 1 the next most popular, etc.
-	 * @param itemcount The number of items in the distribution.
-	 * @return The next item in the sequence.
-	 */
-	public int nextInt(int itemcount)
-	{
-		return (int)nextLong(itemcount);
-	}
-
-	/**
-	 * Generate the next item as a long.
 	 * 
 	 * @param itemcount The number of items in the distribution.
 	 * @return The next item in the sequence.
@@ -285,7 +275,7 @@ public class ZipfianGenerator extends IntegerGenerator
 		}
 
 		long ret=base+(long)((itemcount) * Math.pow(eta*u - eta + 1, alpha));
-		setLastInt((int)ret);
+		setLastLong(ret);
 		return ret;
 	}
 
@@ -295,16 +285,6 @@ public class ZipfianGenerator extends IntegerGenerator
 	 * popular items scattered throughout the item space, use ScrambledZipfianGenerator instead.
 	 */
 	@Override
-	public int nextInt() 
-	{
-		return (int)nextLong(items);
-	}
-
-	/**
-	 * Return the next value, skewed by the Zipfian distribution. The 0th item will be the most popular, followed by the 1st, followed
-	 * by the 2nd, etc. (Or, if min != 0, the min-th item is the most popular, the min+1th item the next most popular, etc.) If you want the
-	 * popular items scattered throughout the item space, use ScrambledZipfianGenerator instead.
-	 */
 	public long nextLong()
 	{
 		return nextLong(items);
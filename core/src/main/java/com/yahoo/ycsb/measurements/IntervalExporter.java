@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
+
+/**
+ * Appends a record of every interval histogram to a file while the run is in progress, so that the
+ * measurements survive a crash and show how latency drifts over the run.
+ *
+ * Each record holds the end of the interval (ms since the epoch), the name of the measurement, its count,
+ * throughput, min, mean and max and the configured percentiles, all latencies in us. The records are kept
+ * in memory and appended with one write per status interval, as JSON lines or CSV.
+ */
+public class IntervalExporter implements IntervalListener
+{
+  /**
+   * The file to append the interval records to. Intervals are not exported if not set.
+   */
+  public static final String FILE_PROPERTY="hdrhistogram.intervalexport";
+
+  /**
+   * "json" for one JSON object per line, or "csv".
+   */
+  public static final String FORMAT_PROPERTY="hdrhistogram.intervalexport.format";
+  public static final String FORMAT_PROPERTY_DEFAULT="json";
+
+  /**
+   * The comma separated percentiles to export.
+   */
+  public static final String PERCENTILES_PROPERTY="hdrhistogram.intervalexport.percentiles";
+  public static final String PERCENTILES_PROPERTY_DEFAULT="50,90,99,99.9,99.99";
+
+  /** Not a FileChannel, which the interrupt of whichever thread takes the intervals would close. */
+  private final OutputStream _out;
+  private final boolean _csv;
+  private final String[] _percentileNames;
+  private final double[] _percentiles;
+
+  /** The records taken since the last write. */
+  private final ByteArrayOutputStream _pending=new ByteArrayOutputStream();
+  private final JsonGenerator _json;
+  private boolean _closed;
+
+  /**
+   * Open the file named by the properties, truncating it.
+   *
+   * @throws IllegalArgumentException if the format or the percentiles are invalid.
+   */
+  IntervalExporter(Properties props) throws IOException
+  {
+    String format=props.getProperty(FORMAT_PROPERTY, FORMAT_PROPERTY_DEFAULT);
+    if (!format.equals("json") && !format.equals("csv"))
+    {
+      throw new IllegalArgumentException("unknown "+FORMAT_PROPERTY+"="+format);
+    }
+    _csv=format.equals("csv");
+
+    _percentileNames=props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT).split(",");
+    _percentiles=new double[_percentileNames.length];
+    for (int i=0; i<_percentiles.length; i++)
+    {
+      _percentileNames[i]=_percentileNames[i].trim();
+      try
+      {
+        _percentiles[i]=Double.parseDouble(_percentileNames[i]);
+      }
+      catch (NumberFormatException e)
+      {
+        throw new IllegalArgumentException("invalid "+PERCENTILES_PROPERTY+"="+_percentileNames[i]);
+      }
+      if ((_percentiles[i]<0) || (_percentiles[i]>100))
+      {
+        throw new IllegalArgumentException("invalid "+PERCENTILES_PROPERTY+"="+_percentileNames[i]);
+      }
+    }
+
+    _out=new FileOutputStream(props.getProperty(FILE_PROPERTY));
+    if (_csv)
+    {
+      _json=null;
+      StringBuilder header=new StringBuilder("time,operation,count,throughput,min,mean,max");
+      for (String name : _percentileNames)
+      {
+        header.append(",p").append(name);
+      }
+      header.append('\n');
+      _pending.write(header.toString().getBytes("UTF-8"));
+    }
+    else
+    {
+      _json=new JsonFactory().createJsonGenerator(_pending);
+      _json.setPrettyPrinter(new MinimalPrettyPrinter(""));
+    }
+  }
+
+  @Override
+  public synchronized void intervalHistogram(String name, Histogram interval)
+  {
+    long count=interval.getTotalCount();
+    long periodMs=interval.getEndTimeStamp()-interval.getStartTimeStamp();
+    double throughput=(periodMs>0) ? 1000.0*count/periodMs : 0;
+    // an empty interval has no mean, and NaN is not valid JSON
+    long min=(count>0) ? interval.getMinValue() : 0;
+    double mean=(count>0) ? interval.getMean() : 0;
+    try
+    {
+      if (_csv)
+      {
+        StringBuilder row=new StringBuilder();
+        row.append(interval.getEndTimeStamp()).append(',').append(name).append(',').append(count)
+            .append(',').append(throughput).append(',').append(min).append(',').append(mean)
+            .append(',').append(interval.getMaxValue());
+        for (double percentile : _percentiles)
+        {
+          row.append(',').append(interval.getValueAtPercentile(percentile));
+        }
+        row.append('\n');
+        _pending.write(row.toString().getBytes("UTF-8"));
+      }
+      else
+      {
+        _json.writeStartObject();
+        _json.writeNumberField("time", interval.getEndTimeStamp());
+        _json.writeStringField("operation", name);
+        _json.writeNumberField("count", count);
+        _json.writeNumberField("throughput", throughput);
+        _json.writeNumberField("min", min);
+        _json.writeNumberField("mean", mean);
+        _json.writeNumberField("max", interval.getMaxValue());
+        for (int i=0; i<_percentiles.length; i++)
+        {
+          _json.writeNumberField("p"+_percentileNames[i], interval.getValueAtPercentile(_percentiles[i]));
+        }
+        _json.writeEndObject();
+        _json.flush();
+        _pending.write('\n');
+      }
+    }
+    catch (IOException e)
+    {
+      // only thrown by the generator, which writes to memory
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Write out the records of the intervals just taken, once per status interval.
+   */
+  @Override
+  public synchronized void intervalsTaken()
+  {
+    try
+    {
+      write();
+    }
+    catch (IOException e)
+    {
+      System.err.println("Could not export the interval measurements: "+e.getMessage());
+      _closed=true;
+    }
+  }
+
+  /**
+   * Append the records taken since the last write to the file.
+   */
+  synchronized void write() throws IOException
+  {
+    if (_closed || (_pending.size()==0))
+    {
+      return;
+    }
+    _pending.writeTo(_out);
+    _out.flush();
+    _pending.reset();
+  }
+
+  /**
+   * Write the last records and close the file.
+   */
+  synchronized void close() throws IOException
+  {
+    write();
+    _closed=true;
+    _out.close();
+  }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Notified of every interval histogram taken by an HdrHistogram measurement, whether for the status line,
+ * a percentile query or the final export, so that another consumer sees every value exactly once. Listeners
+ * never take the intervals themselves: the status thread, or {@link Measurements#startTicker(long)} when there
+ * is none, takes them every status interval.
+ *
+ * @see Measurements#addIntervalListener(IntervalListener)
+ */
+public interface IntervalListener {
+  /**
+   * Called on the thread that took the interval. The histogram is not modified afterwards.
+   *
+   * @param name The name of the measurement, e.g. "READ".
+   * @param interval The values measured since the previous interval.
+   */
+  void intervalHistogram(String name, Histogram interval);
+
+  /**
+   * Called once the intervals of every measurement have been taken for a status interval, after the calls to
+   * {@link #intervalHistogram} for them, e.g. to write them out or close a window of them.
+   */
+  void intervalsTaken();
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+/**
+ * The measurements of one operation, resolved once with {@link Measurements#getHandle(String)} and then used
+ * on every operation instead of looking the measurement up by name.
+ *
+ * A handle keeps a reference to the measurement of the current scope, and looks it up again only when a new
+ * scope is started. As with the lookups by name, the measurements are created when first used. Handles may be
+ * shared between threads.
+ */
+public final class MeasurementHandle
+{
+  /** A measurement and the scope it belongs to. */
+  private static final class Resolved
+  {
+    final Measurements.Scope _scope;
+    final OneMeasurement _measurement;
+
+    Resolved(Measurements.Scope scope, OneMeasurement measurement)
+    {
+      _scope=scope;
+      _measurement=measurement;
+    }
+  }
+
+  private final Measurements _measurements;
+  private final String _operation;
+  private volatile Resolved _op;
+  private volatile Resolved _intended;
+  private volatile Resolved _bytes;
+  /** The measurements of the operations of this kind that failed, created when first needed. */
+  private volatile MeasurementHandle _failed;
+
+  MeasurementHandle(Measurements measurements, String operation)
+  {
+    _measurements=measurements;
+    _operation=operation;
+  }
+
+  /**
+   * @return The name of the operation, e.g. "READ".
+   */
+  public String getOperation()
+  {
+    return _operation;
+  }
+
+  /**
+   * @param code The return code of an operation.
+   * @return This handle for a successful operation, and the handle of the failed operations, "name-FAILED", for
+   *         any other return code, unless failures are measured with the successes.
+   */
+  public MeasurementHandle forReturnCode(int code)
+  {
+    if ((code==0) || !_measurements._splitFailures)
+    {
+      return this;
+    }
+    MeasurementHandle failed=_failed;
+    if (failed==null)
+    {
+      failed=new MeasurementHandle(_measurements, _operation+Measurements.FAILED_SUFFIX);
+      _failed=failed;
+    }
+    return failed;
+  }
+
+  private OneMeasurement op()
+  {
+    Measurements.Scope scope=_measurements._scope;
+    Resolved resolved=_op;
+    if ((resolved==null) || (resolved._scope!=scope))
+    {
+      resolved=new Resolved(scope, _measurements.getOpMeasurement(scope, _operation));
+      _op=resolved;
+    }
+    return resolved._measurement;
+  }
+
+  private OneMeasurement intended()
+  {
+    Measurements.Scope scope=_measurements._scope;
+    Resolved resolved=_intended;
+    if ((resolved==null) || (resolved._scope!=scope))
+    {
+      resolved=new Resolved(scope, _measurements.getOpIntendedMeasurement(scope, _operation));
+      _intended=resolved;
+    }
+    return resolved._measurement;
+  }
+
+  private OneMeasurementBytes bytes()
+  {
+    Measurements.Scope scope=_measurements._scope;
+    Resolved resolved=_bytes;
+    if ((resolved==null) || (resolved._scope!=scope))
+    {
+      resolved=new Resolved(scope, _measurements.getOpBytesMeasurement(scope, _operation));
+      _bytes=resolved;
+    }
+    return (OneMeasurementBytes)resolved._measurement;
+  }
+
+  /**
+   * Report the bytes written or returned by one operation, if {@link Measurements#isMeasuringBytes()}.
+   */
+  public void reportBytes(long bytes)
+  {
+    if (_measurements._measureBytes)
+    {
+      bytes().measureBytes(bytes);
+    }
+  }
+
+  /**
+   * Report the latency of one operation, as {@link Measurements#measure(String, int)}.
+   */
+  public void measure(int latency)
+  {
+    if (_measurements._measurementInterval==1)
+    {
+      return;
+    }
+    op().measure(latency);
+  }
+
+  /**
+   * Report the latency of one operation from its intended start, as
+   * {@link Measurements#measureIntended(String, int)}.
+   */
+  public void measureIntended(int latency)
+  {
+    if (_measurements._measurementInterval==0)
+    {
+      return;
+    }
+    intended().measure(latency);
+  }
+
+  /**
+   * Report the return code of one operation, as {@link Measurements#reportReturnCode(String, int)}.
+   */
+  public void reportReturnCode(int code)
+  {
+    OneMeasurement m=(_measurements._measurementInterval==1) ? intended() : op();
+    m.reportReturnCode(code);
+  }
+}
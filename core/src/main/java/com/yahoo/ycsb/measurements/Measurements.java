@@ -18,8 +18,18 @@
 package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.HdrHistogram.Histogram;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -38,6 +48,30 @@ public class Measurements
   public static final String MEASUREMENT_INTERVAL = "measurement.interval";
   private static final String MEASUREMENT_INTERVAL_DEFAULT = "op";
 
+  /**
+   * Whether to measure the operations that return an error apart from the successful ones, under the name of
+   * the operation followed by {@link #FAILED_SUFFIX}, so that errors returned quickly do not make the DB look
+   * faster. Off by default, so that the output keeps its usual names.
+   */
+  public static final String SPLIT_FAILURES_PROPERTY = "measurement.splitfailures";
+  public static final String SPLIT_FAILURES_PROPERTY_DEFAULT = "false";
+  public static final String FAILED_SUFFIX = "-FAILED";
+
+  /**
+   * Whether to measure the bytes written and returned by each operation, as e.g. "READ-BYTES".
+   */
+  public static final String BYTES_PROPERTY = "measurement.bytes";
+  public static final String BYTES_PROPERTY_DEFAULT = "false";
+  public static final String BYTES_SUFFIX = "-BYTES";
+
+  /**
+   * The operations corrected for coordinated omission, when asked to: the latencies of single DB calls measured
+   * from their actual start. Intended latencies already include the time an operation waited to be issued, and
+   * the other measurements, e.g. CLEANUP or the failed operations, do not follow the expected interval.
+   */
+  static final Set<String> CORRECTED_OPERATIONS=new HashSet<String>(Arrays.asList(
+      "READ", "SCAN", "UPDATE", "INSERT", "DELETE", "BATCH-READ", "BATCH-INSERT", "BATCH-UPDATE", "BATCH-DELETE"));
+
   static Measurements singleton=null;
   static Properties measurementproperties=null;
 
@@ -58,10 +92,65 @@ public class Measurements
     return singleton;
   }
 
-  final ConcurrentHashMap<String,OneMeasurement> _opToMesurementMap;
-  final ConcurrentHashMap<String,OneMeasurement> _opToIntendedMesurementMap;
+  /**
+   * The measurements taken during one part of a run. The names of the measurements in a named scope are
+   * prefixed with the scope's name, e.g. "STAGE2-READ".
+   */
+  static class Scope
+  {
+    final String _prefix;
+    final ConcurrentHashMap<String,OneMeasurement> _opToMesurementMap=new ConcurrentHashMap<String,OneMeasurement>();
+    final ConcurrentHashMap<String,OneMeasurement> _opToIntendedMesurementMap=new ConcurrentHashMap<String,OneMeasurement>();
+    final ConcurrentHashMap<String,OneMeasurementBytes> _opToBytesMap=new ConcurrentHashMap<String,OneMeasurementBytes>();
+
+    Scope(String name)
+    {
+      _prefix=(name.length()==0) ? "" : name+"-";
+    }
+  }
+
+  /** The scope operations are currently measured in. */
+  volatile Scope _scope;
+  /** Earlier scopes, still to be exported. */
+  final List<Scope> _endedScopes;
+  /** Notified of every interval histogram; handed to each measurement as it is created. */
+  final List<IntervalListener> _intervalListeners=new CopyOnWriteArrayList<IntervalListener>();
+  private final IntervalListener _intervalDispatcher=new IntervalListener()
+  {
+    @Override
+    public void intervalHistogram(String name, Histogram interval)
+    {
+      for (IntervalListener listener : _intervalListeners)
+      {
+        listener.intervalHistogram(name, interval);
+      }
+    }
+
+    @Override
+    public void intervalsTaken()
+    {
+      for (IntervalListener listener : _intervalListeners)
+      {
+        listener.intervalsTaken();
+      }
+    }
+  };
+  /** Appends every interval to a file, if asked to. */
+  private IntervalExporter _intervalExporter;
+  /** Takes the intervals every status interval while no status thread does, once started. */
+  private Thread _ticker;
+  /** The number of status threads taking the intervals for their status lines. */
+  private int _statusThreads;
+  /** Records every DB operation, if asked to. */
+  private SampleRecorder _sampleRecorder;
+  /** Emits a Flight Recorder event for each DB operation, if asked to. */
+  private OperationEvents _operationEvents;
   final int _measurementType;
   final int _measurementInterval;
+  /** The expected interval between operations in us for the coordinated omission correction, or 0 if none. */
+  final long _expectedInterval;
+  final boolean _splitFailures;
+  final boolean _measureBytes;
   private Properties _props;
 
   /**
@@ -69,12 +158,16 @@ public class Measurements
    */
   public Measurements(Properties props)
   {
-    _opToMesurementMap=new ConcurrentHashMap<String,OneMeasurement>();
-    _opToIntendedMesurementMap=new ConcurrentHashMap<String,OneMeasurement>();
+    _scope=new Scope("");
+    _endedScopes=new ArrayList<Scope>();
 
     _props=props;
 
-    String mTypeString = _props.getProperty(MEASUREMENT_TYPE_PROPERTY, MEASUREMENT_TYPE_PROPERTY_DEFAULT);
+    boolean exportIntervals = _props.getProperty(IntervalExporter.FILE_PROPERTY) != null;
+    _expectedInterval = OneMeasurementHdrHistogram.getExpectedInterval(_props);
+    boolean correct = _expectedInterval > 0;
+    String mTypeString = _props.getProperty(MEASUREMENT_TYPE_PROPERTY,
+        (exportIntervals || correct) ? "hdrhistogram" : MEASUREMENT_TYPE_PROPERTY_DEFAULT);
     if (mTypeString.equals("histogram"))
     {
       _measurementType = 0;
@@ -95,6 +188,9 @@ public class Measurements
       throw new IllegalArgumentException("unknown "+MEASUREMENT_TYPE_PROPERTY+"="+mTypeString);
     }
 
+    _measureBytes = Boolean.parseBoolean(_props.getProperty(BYTES_PROPERTY, BYTES_PROPERTY_DEFAULT));
+    _splitFailures = Boolean.parseBoolean(_props.getProperty(SPLIT_FAILURES_PROPERTY, SPLIT_FAILURES_PROPERTY_DEFAULT));
+
     String mIntervalString = _props.getProperty(MEASUREMENT_INTERVAL, MEASUREMENT_INTERVAL_DEFAULT);
     if (mIntervalString.equals("op"))
     {
@@ -111,23 +207,73 @@ public class Measurements
     else {
       throw new IllegalArgumentException("unknown "+MEASUREMENT_INTERVAL+"="+mIntervalString);
     }
+
+    if (correct && (_measurementType != 1) && (_measurementType != 2))
+    {
+      throw new IllegalArgumentException(OneMeasurementHdrHistogram.CORRECT_PROPERTY+" requires hdrhistogram measurements");
+    }
+
+    if (exportIntervals)
+    {
+      if ((_measurementType != 1) && (_measurementType != 2))
+      {
+        throw new IllegalArgumentException(IntervalExporter.FILE_PROPERTY+" requires hdrhistogram measurements");
+      }
+      try
+      {
+        _intervalExporter = new IntervalExporter(_props);
+      }
+      catch (IOException e)
+      {
+        throw new RuntimeException("Failed to open the interval export file", e);
+      }
+      _intervalListeners.add(_intervalExporter);
+    }
+
+    if (_props.getProperty(SampleRecorder.FILE_PROPERTY) != null)
+    {
+      try
+      {
+        _sampleRecorder = new SampleRecorder(_props);
+      }
+      catch (IOException e)
+      {
+        throw new RuntimeException("Failed to open the sample file", e);
+      }
+    }
+
+    if (Boolean.parseBoolean(_props.getProperty(OperationEvents.EVENTS_PROPERTY, OperationEvents.EVENTS_PROPERTY_DEFAULT)))
+    {
+      _operationEvents = new OperationEvents(_props);
+    }
   }
 
-  OneMeasurement constructOneMeasurement(String name)
+  /**
+   * @param corrected Whether to correct the measurement for coordinated omission, if asked to.
+   */
+  OneMeasurement constructOneMeasurement(String name, boolean corrected)
   {
+    long expectedInterval = corrected ? _expectedInterval : 0;
+    OneMeasurement m;
     switch (_measurementType)
     {
     case 0:
-      return new OneMeasurementHistogram(name, _props);
+      m = new OneMeasurementHistogram(name, _props);
+      break;
     case 1:
-      return new OneMeasurementHdrHistogram(name, _props);
+      m = new OneMeasurementHdrHistogram(name, _props, expectedInterval);
+      break;
     case 2:
-      return new TwoInOneMeasurement(name,
-              new OneMeasurementHdrHistogram("Hdr"+name, _props),
+      m = new TwoInOneMeasurement(name,
+              new OneMeasurementHdrHistogram("Hdr"+name, _props, expectedInterval),
               new OneMeasurementHistogram("Bucket"+name, _props));
+      break;
     default:
-      return new OneMeasurementTimeSeries(name, _props);
+      m = new OneMeasurementTimeSeries(name, _props);
+      break;
     }
+    m.setIntervalListener(_intervalDispatcher);
+    return m;
   }
 
   static class StartTimeHolder {
@@ -171,7 +317,7 @@ public class Measurements
       return;
     try
     {
-      OneMeasurement m = getOpMeasurement(operation);
+      OneMeasurement m = getOpMeasurement(_scope, operation);
       m.measure(latency);
     }
     // This seems like a terribly hacky way to cover up for a bug in the measurement code
@@ -193,7 +339,7 @@ public class Measurements
       return;
     try
     {
-      OneMeasurement m = getOpIntendedMeasurement(operation);
+      OneMeasurement m = getOpIntendedMeasurement(_scope, operation);
       m.measure(latency);
     }
     // This seems like a terribly hacky way to cover up for a bug in the measurement code
@@ -205,12 +351,12 @@ public class Measurements
     }
   }
 
-  private OneMeasurement getOpMeasurement(String operation) {
-    OneMeasurement m = _opToMesurementMap.get(operation);
+  OneMeasurement getOpMeasurement(Scope scope, String operation) {
+    OneMeasurement m = scope._opToMesurementMap.get(operation);
     if(m == null)
     {
-      m = constructOneMeasurement(operation);
-      OneMeasurement oldM = _opToMesurementMap.putIfAbsent(operation, m);
+      m = constructOneMeasurement(scope._prefix + operation, CORRECTED_OPERATIONS.contains(operation));
+      OneMeasurement oldM = scope._opToMesurementMap.putIfAbsent(operation, m);
       if(oldM != null)
       {
           m = oldM;
@@ -219,13 +365,27 @@ public class Measurements
     return m;
   }
 
-  private OneMeasurement getOpIntendedMeasurement(String operation) {
-    OneMeasurement m = _opToIntendedMesurementMap.get(operation);
+  OneMeasurement getOpIntendedMeasurement(Scope scope, String operation) {
+    OneMeasurement m = scope._opToIntendedMesurementMap.get(operation);
     if(m == null)
     {
       final String name = _measurementInterval==1 ? operation : "Intended-" + operation;
-      m = constructOneMeasurement(name);
-      OneMeasurement oldM = _opToIntendedMesurementMap.putIfAbsent(operation, m);
+      m = constructOneMeasurement(scope._prefix + name, false);
+      OneMeasurement oldM = scope._opToIntendedMesurementMap.putIfAbsent(operation, m);
+      if(oldM != null)
+      {
+        m = oldM;
+      }
+    }
+    return m;
+  }
+
+  OneMeasurementBytes getOpBytesMeasurement(Scope scope, String operation) {
+    OneMeasurementBytes m = scope._opToBytesMap.get(operation);
+    if(m == null)
+    {
+      m = new OneMeasurementBytes(scope._prefix + operation + BYTES_SUFFIX);
+      OneMeasurementBytes oldM = scope._opToBytesMap.putIfAbsent(operation, m);
       if(oldM != null)
       {
         m = oldM;
@@ -234,49 +394,265 @@ public class Measurements
     return m;
   }
 
+  /**
+   * @return The region of the sample file for a new client thread to record its operations to, or null if
+   *         operations are not recorded.
+   */
+  public SampleRecorder.Region newSampleRegion()
+  {
+    return (_sampleRecorder == null) ? null : _sampleRecorder.newRegion();
+  }
+
+  /**
+   * @return What emits a Flight Recorder event for each DB operation, or null if no events are emitted.
+   */
+  public OperationEvents getOperationEvents()
+  {
+    return _operationEvents;
+  }
+
+  /**
+   * @return Whether the bytes written and returned by each operation are measured.
+   */
+  public boolean isMeasuringBytes()
+  {
+    return _measureBytes;
+  }
+
   /**
    * Report a return code for a single DB operation.
    */
   public void reportReturnCode(String operation, int code)
   {
+    Scope scope = _scope;
     OneMeasurement m = _measurementInterval==1 ?
-          getOpIntendedMeasurement(operation) :
-          getOpMeasurement(operation);
+          getOpIntendedMeasurement(scope, operation) :
+          getOpMeasurement(scope, operation);
     m.reportReturnCode(code);
   }
 
   /**
-   * Export the current measurements to a suitable format.
+   * Resolve the measurements of an operation once, for code that reports it on every operation and should not
+   * look it up by name each time.
+   *
+   * @param operation The name of the operation, e.g. "READ"; any name can be used.
+   */
+  public MeasurementHandle getHandle(String operation)
+  {
+    return new MeasurementHandle(this, operation);
+  }
+
+  /**
+   * Notify a listener of every interval histogram taken from now on, e.g. to stream them to a coordinator.
+   * Only HdrHistogram measurements take interval histograms.
+   */
+  public synchronized void addIntervalListener(IntervalListener listener)
+  {
+    _intervalListeners.add(listener);
+  }
+
+  /**
+   * Stop notifying a listener added with {@link #addIntervalListener(IntervalListener)}.
+   */
+  public synchronized void removeIntervalListener(IntervalListener listener)
+  {
+    _intervalListeners.remove(listener);
+  }
+
+  /**
+   * Take the intervals of the measurements every status interval from now on, so that the interval listeners
+   * and the "hdrhistogram.fileoutput" log get them without a status line. Intervals are only ever taken in one
+   * place at a time: while a status thread runs it takes them for its status line instead, see
+   * {@link #pauseTicker()}. Does nothing if already started.
+   *
+   * @param intervalMs The status interval.
+   */
+  public synchronized void startTicker(final long intervalMs)
+  {
+    if (_ticker != null)
+    {
+      return;
+    }
+    _ticker = new Thread("MeasurementsTicker")
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          while (true)
+          {
+            Thread.sleep(intervalMs);
+            tick();
+          }
+        }
+        catch (InterruptedException e)
+        {
+        }
+      }
+    };
+    _ticker.setDaemon(true);
+    _ticker.start();
+  }
+
+  private synchronized void tick()
+  {
+    if (_statusThreads == 0)
+    {
+      getSummary();
+    }
+  }
+
+  /**
+   * Leave the intervals to a status thread that takes them with {@link #getSummary()} every status interval,
+   * until it calls {@link #resumeTicker()}.
+   */
+  public synchronized void pauseTicker()
+  {
+    _statusThreads++;
+  }
+
+  /**
+   * Take the intervals with the ticker again, once a status thread has stopped.
+   */
+  public synchronized void resumeTicker()
+  {
+    _statusThreads--;
+  }
+
+  private List<OneMeasurement> allMeasurements()
+  {
+    List<OneMeasurement> measurements=new ArrayList<OneMeasurement>();
+    for (Scope scope : _endedScopes)
+    {
+      measurements.addAll(scope._opToMesurementMap.values());
+      measurements.addAll(scope._opToIntendedMesurementMap.values());
+    }
+    measurements.addAll(_scope._opToMesurementMap.values());
+    measurements.addAll(_scope._opToIntendedMesurementMap.values());
+    return measurements;
+  }
+
+  /**
+   * @return The number of times each return code has been reported, by measurement name, across all scopes.
+   */
+  public synchronized Map<String,Map<Integer,Integer>> getReturnCodes()
+  {
+    Map<String,Map<Integer,Integer>> codes=new HashMap<String,Map<Integer,Integer>>();
+    for (OneMeasurement m : allMeasurements())
+    {
+      codes.put(m.getName(), m.getReturnCodes());
+    }
+    return codes;
+  }
+
+  /**
+   * Start measuring in a new scope. Operations measured from now on are kept apart from those measured
+   * before, which are still exported, under names prefixed with the new scope's name.
+   *
+   * @param name The name of the new scope, or "" for no prefix.
+   */
+  public synchronized void startScope(String name)
+  {
+    if (!_intervalListeners.isEmpty())
+    {
+      // hand the listener the last of the ending scope, no one else will take its intervals until the export
+      getSummary();
+    }
+    _endedScopes.add(_scope);
+    _scope=new Scope(name);
+  }
+
+  /**
+   * Export the measurements of every scope to a suitable format.
    *
    * @param exporter Exporter representing the type of format to write to.
    * @throws IOException Thrown if the export failed.
    */
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  {
+    for (Scope scope : _endedScopes)
+    {
+      exportMeasurements(scope, exporter);
+    }
+    exportMeasurements(_scope, exporter);
+    if (_ticker != null)
+    {
+      _ticker.interrupt();
+    }
+    if (_intervalExporter != null)
+    {
+      // the export took the last intervals
+      _intervalExporter.close();
+    }
+    if (_sampleRecorder != null)
+    {
+      _sampleRecorder.close();
+    }
+  }
+
+  private void exportMeasurements(Scope scope, MeasurementsExporter exporter) throws IOException
   {
-    for (OneMeasurement measurement : _opToMesurementMap.values())
+    for (OneMeasurement measurement : scope._opToMesurementMap.values())
     {
       measurement.exportMeasurements(exporter);
     }
-    for (OneMeasurement measurement : _opToIntendedMesurementMap.values())
+    for (OneMeasurement measurement : scope._opToIntendedMesurementMap.values())
+    {
+      measurement.exportMeasurements(exporter);
+    }
+    for (OneMeasurement measurement : scope._opToBytesMap.values())
     {
       measurement.exportMeasurements(exporter);
     }
   }
 
   /**
-   * Return a one line summary of the measurements.
+   * Find the worst latency at a percentile across the operations measured in the current scope. Latencies
+   * are taken from the intended start of each operation when those are measured.
+   *
+   * @param percentile The percentile, e.g. 99.
+   * @return The highest latency at that percentile in microseconds, 0 if nothing has been measured, or -1 if
+   *         the measurement type does not keep track of percentiles.
+   */
+  public synchronized double getWorstPercentileLatency(double percentile)
+  {
+    ConcurrentHashMap<String,OneMeasurement> measurements = _measurementInterval==0 ?
+        _scope._opToMesurementMap :
+        _scope._opToIntendedMesurementMap;
+    double worst=0;
+    for (OneMeasurement m : measurements.values())
+    {
+      double value=m.getPercentile(percentile);
+      if (value<0)
+      {
+        return -1;
+      }
+      worst=Math.max(worst, value);
+    }
+    return worst;
+  }
+
+  /**
+   * Return a one line summary of the measurements in the current scope, taking their intervals. Only the status
+   * thread or the ticker should call this every interval, or each of them sees only part of the intervals.
    */
   public synchronized String getSummary()
   {
     String ret="";
-    for (OneMeasurement m : _opToMesurementMap.values())
+    for (OneMeasurement m : _scope._opToMesurementMap.values())
+    {
+      ret += m.getSummary()+" ";
+    }
+    for (OneMeasurement m : _scope._opToIntendedMesurementMap.values())
     {
       ret += m.getSummary()+" ";
     }
-    for (OneMeasurement m : _opToIntendedMesurementMap.values())
+    for (OneMeasurement m : _scope._opToBytesMap.values())
     {
       ret += m.getSummary()+" ";
     }
+    _intervalDispatcher.intervalsTaken();
     return ret;
   }
 
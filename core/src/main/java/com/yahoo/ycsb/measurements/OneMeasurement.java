@@ -20,7 +20,9 @@ package com.yahoo.ycsb.measurements;
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -29,7 +31,14 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
  */
 public abstract class OneMeasurement {
 
+  /** Return codes from MIN_FIXED_CODE up to MIN_FIXED_CODE+FIXED_CODES-1 are counted without a lookup. */
+  static final int MIN_FIXED_CODE = -64;
+  static final int FIXED_CODES = 128;
+
   String _name;
+  /** The counts of the return codes in the fixed range, 0 for codes never reported. */
+  final AtomicIntegerArray fixedreturncodes;
+  /** The counts of the other return codes. */
   final ConcurrentHashMap<Integer, AtomicInteger> returncodes;
 
   public String getName() {
@@ -41,6 +50,7 @@ public abstract class OneMeasurement {
    */
   public OneMeasurement(String _name) {
     this._name = _name;
+    this.fixedreturncodes = new AtomicIntegerArray(FIXED_CODES);
     this.returncodes = new ConcurrentHashMap<Integer, AtomicInteger>();
   }
 
@@ -49,9 +59,47 @@ public abstract class OneMeasurement {
   public abstract String getSummary();
 
   /**
-   * No need for synchronization, using CHM to deal with that
+   * Set the listener to notify of each interval histogram, for measurements that take them.
+   */
+  public void setIntervalListener(IntervalListener listener) {
+  }
+
+  /**
+   * @return A snapshot of the number of times each return code has been reported.
+   */
+  public Map<Integer, Integer> getReturnCodes() {
+    Map<Integer, Integer> codes = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < FIXED_CODES; i++) {
+      int count = fixedreturncodes.get(i);
+      if (count > 0) {
+        codes.put(MIN_FIXED_CODE + i, count);
+      }
+    }
+    for (Map.Entry<Integer, AtomicInteger> entry : returncodes.entrySet()) {
+      codes.put(entry.getKey(), entry.getValue().get());
+    }
+    return codes;
+  }
+
+  /**
+   * @param percentile The percentile, e.g. 99.
+   * @return The value at the given percentile of everything measured so far, or -1 if this kind of
+   *         measurement does not keep track of percentiles.
+   */
+  public double getPercentile(double percentile) {
+    return -1;
+  }
+
+  /**
+   * No need for synchronization, the common codes are counted in an atomic array and the others in a CHM
    */
   public void reportReturnCode(int code) {
+    int index = code - MIN_FIXED_CODE;
+    if (index >= 0 && index < FIXED_CODES) {
+      fixedreturncodes.incrementAndGet(index);
+      return;
+    }
+
     Integer Icode = code;
     AtomicInteger counter = returncodes.get(Icode);
 
@@ -65,6 +113,15 @@ public abstract class OneMeasurement {
     counter.incrementAndGet();
   }
 
+  /**
+   * Export the number of times each return code has been reported, as "Return=code".
+   */
+  void exportReturnCodes(MeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<Integer, Integer> entry : getReturnCodes().entrySet()) {
+      exporter.write(getName(), "Return=" + entry.getKey(), entry.getValue());
+    }
+  }
+
   /**
    * Export the current measurements to a suitable format.
    *
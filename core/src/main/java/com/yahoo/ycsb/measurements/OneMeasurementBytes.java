@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * The payload of one operation, such as the bytes written by INSERT or returned by READ: a histogram of the
+ * bytes per operation and the total, from which the throughput in MB/s (2^20 bytes) is taken over the time
+ * since the first operation.
+ */
+class OneMeasurementBytes extends OneMeasurement {
+
+  private static final double MB = 1024 * 1024;
+
+  final Recorder sizes = new Recorder(3);
+  Histogram totalSizes;
+  final AtomicLong bytes = new AtomicLong();
+
+  /** The start of the first interval and the end of the last, in ms since the epoch. */
+  long startTimeStamp;
+  long endTimeStamp;
+  /** The total bytes at the end of the last interval, for the status. */
+  long windowStartBytes;
+
+  OneMeasurementBytes(String name) {
+    super(name);
+  }
+
+  @Override
+  public void measure(int payload) {
+    measureBytes(payload);
+  }
+
+  void measureBytes(long payload) {
+    sizes.recordValue(payload);
+    bytes.addAndGet(payload);
+  }
+
+  private Histogram getIntervalAndAccumulate() {
+    Histogram interval = sizes.getIntervalHistogram();
+    if (totalSizes == null) {
+      totalSizes = interval.copy();
+      startTimeStamp = interval.getStartTimeStamp();
+    }
+    else {
+      totalSizes.add(interval);
+    }
+    endTimeStamp = interval.getEndTimeStamp();
+    return interval;
+  }
+
+  private static double mbPerSec(long bytes, long periodMs) {
+    return (periodMs > 0) ? 1000 * bytes / MB / periodMs : 0;
+  }
+
+  @Override
+  public String getSummary() {
+    Histogram interval = getIntervalAndAccumulate();
+    if (interval.getTotalCount() == 0) {
+      return "";
+    }
+    long total = bytes.get();
+    long windowBytes = total - windowStartBytes;
+    windowStartBytes = total;
+    DecimalFormat d = new DecimalFormat("#.##");
+    return "[" + getName() +
+        ": MB/s=" + d.format(mbPerSec(windowBytes, interval.getEndTimeStamp() - interval.getStartTimeStamp())) +
+        ", AvgBytes=" + d.format(interval.getMean()) +
+        ", MaxBytes=" + interval.getMaxValue() + "]";
+  }
+
+  @Override
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    getIntervalAndAccumulate();
+    long total = bytes.get();
+    exporter.write(getName(), "Operations", totalSizes.getTotalCount());
+    exporter.write(getName(), "TotalBytes", total);
+    exporter.write(getName(), "Throughput(MB/sec)", mbPerSec(total, endTimeStamp - startTimeStamp));
+    exporter.write(getName(), "AverageBytes", totalSizes.getMean());
+    exporter.write(getName(), "MinBytes", totalSizes.getMinValue());
+    exporter.write(getName(), "MaxBytes", totalSizes.getMaxValue());
+    exporter.write(getName(), "50thPercentileBytes", totalSizes.getValueAtPercentile(50));
+    exporter.write(getName(), "95thPercentileBytes", totalSizes.getValueAtPercentile(95));
+    exporter.write(getName(), "99thPercentileBytes", totalSizes.getValueAtPercentile(99));
+  }
+}
@@ -23,9 +23,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.DecimalFormat;
-import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramLogWriter;
@@ -42,14 +40,46 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
  */
 public class OneMeasurementHdrHistogram extends OneMeasurement {
 
+  /**
+   * Whether to also keep a histogram corrected for coordinated omission, exported as "Corrected-name". When a
+   * client thread is held up by a slow operation, the operations it would have issued in the meantime are not
+   * measured; the corrected histogram adds them back, as if they had been issued at the expected interval.
+   */
+  public static final String CORRECT_PROPERTY = "hdrhistogram.correctomission";
+  public static final String CORRECT_PROPERTY_DEFAULT = "false";
+
+  /**
+   * The expected interval between the operations of one client thread in us, for the correction. Defaults to
+   * the interval at the target throughput, "threadcount" threads sharing the "target"; must be set for runs
+   * without a target, e.g. to the latency expected of the DB, and for runs whose threads do not each issue
+   * their share of a constant target, i.e. with a "targetschedule" or an open-loop "arrivalprocess".
+   */
+  public static final String EXPECTED_INTERVAL_PROPERTY = "hdrhistogram.expectedinterval";
+
   // we need one log per measurement histogram
   final PrintStream log;
   final HistogramLogWriter histogramLogWriter;
 
   final Recorder histogram;
   Histogram totalHistogram;
+  /** The start of the first interval and the end of the last, in ms since the epoch. */
+  long totalStartTimeStamp;
+  long totalEndTimeStamp;
+  /** The expected interval between operations in us, or 0 if not corrected. */
+  final long expectedInterval;
+  final Recorder correctedHistogram;
+  Histogram totalCorrectedHistogram;
+  volatile IntervalListener intervalListener;
 
   public OneMeasurementHdrHistogram(String name, Properties props) {
+    this(name, props, 0);
+  }
+
+  /**
+   * @param expectedInterval The expected interval between operations in us, see {@link #getExpectedInterval},
+   *          or 0 to not correct this measurement.
+   */
+  public OneMeasurementHdrHistogram(String name, Properties props, long expectedInterval) {
     super(name);
     boolean shouldLog = Boolean.parseBoolean(props.getProperty("hdrhistogram.fileoutput", "false"));
     if (!shouldLog) {
@@ -71,6 +101,37 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       histogramLogWriter.outputLegend();
     }
     histogram = new Recorder(3);
+    this.expectedInterval = expectedInterval;
+    correctedHistogram = (expectedInterval > 0) ? new Recorder(3) : null;
+  }
+
+  /**
+   * @return The expected interval between the operations of one client thread in us, or 0 if the measurements
+   *         are not to be corrected for coordinated omission.
+   * @throws IllegalArgumentException if they are to be corrected but the interval is not known.
+   */
+  public static long getExpectedInterval(Properties props) {
+    if (!Boolean.parseBoolean(props.getProperty(CORRECT_PROPERTY, CORRECT_PROPERTY_DEFAULT))) {
+      return 0;
+    }
+    long interval;
+    String configured = props.getProperty(EXPECTED_INTERVAL_PROPERTY);
+    if (configured != null) {
+      interval = Long.parseLong(configured);
+    } else if (props.getProperty("targetschedule") != null
+        || !props.getProperty("arrivalprocess", "closed").equals("closed")) {
+      // the target is not spread evenly over the threads, and open-loop arrivals omit no operations
+      throw new IllegalArgumentException(CORRECT_PROPERTY + " with a targetschedule or an open-loop arrivalprocess needs "
+          + EXPECTED_INTERVAL_PROPERTY);
+    } else {
+      double target = Double.parseDouble(props.getProperty("target", "0"));
+      int threads = Integer.parseInt(props.getProperty("threadcount", "1"));
+      interval = (target > 0) ? Math.round(threads * 1000000.0 / target) : 0;
+    }
+    if (interval <= 0) {
+      throw new IllegalArgumentException(CORRECT_PROPERTY + " needs a target or a positive " + EXPECTED_INTERVAL_PROPERTY);
+    }
+    return interval;
   }
 
   /**
@@ -81,6 +142,9 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
     */
   public void measure(int latencyInMicros) {
     histogram.recordValue(latencyInMicros);
+    if (correctedHistogram != null) {
+      correctedHistogram.recordValueWithExpectedInterval(latencyInMicros, expectedInterval);
+    }
   }
 
   /**
@@ -97,16 +161,29 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       // we can close now
       log.close();
     }
-    exporter.write(getName(), "Operations", totalHistogram.getTotalCount());
-    exporter.write(getName(), "AverageLatency(us)", totalHistogram.getMean());
-    exporter.write(getName(), "MinLatency(us)", totalHistogram.getMinValue());
-    exporter.write(getName(), "MaxLatency(us)", totalHistogram.getMaxValue());
-    exporter.write(getName(), "95thPercentileLatency(ms)", totalHistogram.getValueAtPercentile(90)/1000);
-    exporter.write(getName(), "99thPercentileLatency(ms)", totalHistogram.getValueAtPercentile(99)/1000);
-
-    for (Map.Entry<Integer, AtomicInteger> entry : returncodes.entrySet()) {
-      exporter.write(getName(), "Return=" + entry.getKey(), entry.getValue().get());
+    exportHistogram(exporter, getName(), totalHistogram);
+    long periodMs = totalEndTimeStamp - totalStartTimeStamp;
+    if (periodMs > 0) {
+      exporter.write(getName(), "Throughput(ops/sec)", 1000.0 * totalHistogram.getTotalCount() / periodMs);
     }
+
+    exportReturnCodes(exporter);
+
+    if (totalCorrectedHistogram != null) {
+      exportHistogram(exporter, "Corrected-" + getName(), totalCorrectedHistogram);
+    }
+  }
+
+  /**
+    * Export the statistics of a histogram of latencies in micros, as for a single measurement.
+    */
+  public static void exportHistogram(MeasurementsExporter exporter, String name, Histogram histogram) throws IOException {
+    exporter.write(name, "Operations", histogram.getTotalCount());
+    exporter.write(name, "AverageLatency(us)", histogram.getMean());
+    exporter.write(name, "MinLatency(us)", histogram.getMinValue());
+    exporter.write(name, "MaxLatency(us)", histogram.getMaxValue());
+    exporter.write(name, "95thPercentileLatency(ms)", histogram.getValueAtPercentile(90)/1000);
+    exporter.write(name, "99thPercentileLatency(ms)", histogram.getValueAtPercentile(99)/1000);
   }
 
   /**
@@ -122,8 +199,15 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       histogramLogWriter.outputIntervalHistogram(intervalHistogram);
     }
 
+    return summarize(getName(), intervalHistogram);
+  }
+
+  /**
+    * Summarize an interval histogram of latencies in micros for the status line.
+    */
+  public static String summarize(String name, Histogram intervalHistogram) {
     DecimalFormat d = new DecimalFormat("#.##");
-    return "[" + getName() +
+    return "[" + name +
             ": Count=" + intervalHistogram.getTotalCount() +
             ", Max=" + intervalHistogram.getMaxValue() +
             ", Min=" + intervalHistogram.getMinValue() +
@@ -134,15 +218,52 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
             ", 99.99=" + d.format(intervalHistogram.getValueAtPercentile(99.99)) +"]";
   }
 
+  /**
+    * Not thread safe with respect to {@link #getSummary()}; callers take care of that.
+    *
+    * @see com.yahoo.ycsb.measurements.OneMeasurement#getPercentile(double)
+    */
+  @Override
+  public double getPercentile(double percentile) {
+    Histogram intervalHistogram = getIntervalHistogramAndAccumulate();
+    if(histogramLogWriter != null) {
+      histogramLogWriter.outputIntervalHistogram(intervalHistogram);
+    }
+    return totalHistogram.getValueAtPercentile(percentile);
+  }
+
+  /**
+    * @see com.yahoo.ycsb.measurements.OneMeasurement#setIntervalListener(IntervalListener)
+    */
+  @Override
+  public void setIntervalListener(IntervalListener listener) {
+    intervalListener = listener;
+  }
+
   private Histogram getIntervalHistogramAndAccumulate() {
       Histogram intervalHistogram = histogram.getIntervalHistogram();
-      // add this to the total time histogram.
+      IntervalListener listener = intervalListener;
+      if (listener != null) {
+        listener.intervalHistogram(getName(), intervalHistogram);
+      }
+      // add this to the total time histogram, keeping the interval itself intact.
       if (totalHistogram == null) {
-        totalHistogram = intervalHistogram;
+        totalHistogram = intervalHistogram.copy();
+        totalStartTimeStamp = intervalHistogram.getStartTimeStamp();
       }
       else {
         totalHistogram.add(intervalHistogram);
       }
+      totalEndTimeStamp = intervalHistogram.getEndTimeStamp();
+      if (correctedHistogram != null) {
+        Histogram correctedInterval = correctedHistogram.getIntervalHistogram();
+        if (totalCorrectedHistogram == null) {
+          totalCorrectedHistogram = correctedInterval;
+        }
+        else {
+          totalCorrectedHistogram.add(correctedInterval);
+        }
+      }
       return intervalHistogram;
   }
 
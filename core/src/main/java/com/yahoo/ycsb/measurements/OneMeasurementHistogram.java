@@ -21,8 +21,9 @@ import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Properties;
 
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -30,6 +31,10 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 /**
  * Take measurements and maintain a histogram of a given metric, such as READ LATENCY.
  *
+ * Measurements are recorded without locking into one of several stripes, chosen by the recording thread,
+ * so that threads rarely touch the same counters. The stripes are only added up for the status line and
+ * the export.
+ *
  * @author cooperb
  *
  */
@@ -38,65 +43,91 @@ public class OneMeasurementHistogram extends OneMeasurement
   public static final String BUCKETS="histogram.buckets";
   public static final String BUCKETS_DEFAULT="1000";
 
-  int _buckets;
-  int[] histogram;
-  int histogramoverflow;
-  int operations;
-  long totallatency;
+  /**
+   * The counters of the measurements recorded by some of the threads.
+   */
+  static final class Stripe
+  {
+    /** The number of measurements in each bucket, followed by the number beyond the last bucket. */
+    final AtomicIntegerArray histogram;
+    final AtomicInteger operations=new AtomicInteger();
+    final AtomicLong totallatency=new AtomicLong();
+    final AtomicInteger min=new AtomicInteger(-1);
+    final AtomicInteger max=new AtomicInteger(-1);
+
+    Stripe(int buckets)
+    {
+      histogram=new AtomicIntegerArray(buckets+1);
+    }
+  }
 
-  //keep a windowed version of these stats for printing status
-  int windowoperations;
-  long windowtotallatency;
+  int _buckets;
+  final Stripe[] _stripes;
 
-  int min;
-  int max;
+  //the totals at the last status, to report the window since then
+  int windowstartoperations;
+  long windowstarttotallatency;
 
   public OneMeasurementHistogram(String name, Properties props)
   {
     super(name);
     _buckets=Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT));
-    histogram=new int[_buckets];
-    histogramoverflow=0;
-    operations=0;
-    totallatency=0;
-    windowoperations=0;
-    windowtotallatency=0;
-    min=-1;
-    max=-1;
+    int stripes=Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()*2-1))<<1;
+    _stripes=new Stripe[stripes];
+    for (int i=0; i<stripes; i++)
+    {
+      _stripes[i]=new Stripe(_buckets);
+    }
+    windowstartoperations=0;
+    windowstarttotallatency=0;
   }
 
   /* (non-Javadoc)
    * @see com.yahoo.ycsb.OneMeasurement#measure(int)
    */
-  public synchronized void measure(int latency)
+  public void measure(int latency)
   {
-    if (latency/1000>=_buckets)
-    {
-      histogramoverflow++;
-    }
-    else
-    {
-      histogram[latency/1000]++;
-    }
-    operations++;
-    totallatency+=latency;
-    windowoperations++;
-    windowtotallatency+=latency;
+    Stripe stripe=_stripes[(int)Thread.currentThread().getId()&(_stripes.length-1)];
+    stripe.histogram.incrementAndGet(Math.min(latency/1000, _buckets));
+    stripe.operations.incrementAndGet();
+    stripe.totallatency.addAndGet(latency);
 
-    if ( (min<0) || (latency<min) )
+    int min;
+    while ( (((min=stripe.min.get())<0) || (latency<min)) && !stripe.min.compareAndSet(min, latency) )
     {
-      min=latency;
     }
-
-    if ( (max<0) || (latency>max) )
+    int max;
+    while ( (((max=stripe.max.get())<0) || (latency>max)) && !stripe.max.compareAndSet(max, latency) )
     {
-      max=latency;
     }
   }
 
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
+    int[] histogram=new int[_buckets];
+    int histogramoverflow=0;
+    int operations=0;
+    long totallatency=0;
+    int min=-1;
+    int max=-1;
+    for (Stripe stripe : _stripes)
+    {
+      for (int i=0; i<_buckets; i++)
+      {
+        histogram[i]+=stripe.histogram.get(i);
+      }
+      histogramoverflow+=stripe.histogram.get(_buckets);
+      operations+=stripe.operations.get();
+      totallatency+=stripe.totallatency.get();
+      int stripemin=stripe.min.get();
+      if ( (stripemin>=0) && ((min<0) || (stripemin<min)) )
+      {
+        min=stripemin;
+      }
+      max=Math.max(max, stripe.max.get());
+    }
+
     exporter.write(getName(), "Operations", operations);
     exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
     exporter.write(getName(), "MinLatency(us)", min);
@@ -119,9 +150,7 @@ public class OneMeasurementHistogram extends OneMeasurement
       }
     }
 
-    for (Map.Entry<Integer, AtomicInteger> entry : returncodes.entrySet()) {
-      exporter.write(getName(), "Return=" + entry.getKey(), entry.getValue().get());
-    }
+    exportReturnCodes(exporter);
 
     for (int i=0; i<_buckets; i++)
     {
@@ -132,14 +161,25 @@ public class OneMeasurementHistogram extends OneMeasurement
 
   @Override
   public String getSummary() {
+    int operations=0;
+    long totallatency=0;
+    for (Stripe stripe : _stripes)
+    {
+      // a measurement being recorded may be counted in the latency before the operations or vice versa;
+      // the window is only approximate until the threads have finished
+      operations+=stripe.operations.get();
+      totallatency+=stripe.totallatency.get();
+    }
+    int windowoperations=operations-windowstartoperations;
+    long windowtotallatency=totallatency-windowstarttotallatency;
     if (windowoperations==0)
     {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
     double report=((double)windowtotallatency)/((double)windowoperations);
-    windowtotallatency=0;
-    windowoperations=0;
+    windowstartoperations=operations;
+    windowstarttotallatency=totallatency;
     return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
   }
 }
@@ -18,30 +18,23 @@
 package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
-import java.util.Vector;
+import java.util.Arrays;
 import java.util.Properties;
 import java.text.DecimalFormat;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
-import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 
-class SeriesUnit
-{
-  /**
-   * @param time
-   * @param average
-   */
-  public SeriesUnit(long time, double average) {
-    this.time = time;
-    this.average = average;
-  }
-  public long time;
-  public double average;
-}
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 /**
  * A time series measurement of a metric, such as READ LATENCY.
+ *
+ * The latencies of the current unit of time are recorded without locking into a {@link Recorder}, whose
+ * histogram is swapped out when the unit ends; only that swap, the status line and the export take a lock.
+ * Each ended unit keeps only its count, average and configured percentiles, in primitive arrays, so that a
+ * long run at a fine granularity costs a few tens of bytes per unit. Latencies are kept to 3 significant
+ * digits, so the averages are within 0.1% of the exact ones.
  */
 public class OneMeasurementTimeSeries extends OneMeasurement
 {
@@ -52,109 +45,158 @@ public class OneMeasurementTimeSeries extends OneMeasurement
   public static final String GRANULARITY="timeseries.granularity";
   public static final String GRANULARITY_DEFAULT="1000";
 
-  int _granularity;
-  Vector<SeriesUnit> _measurements;
+  /**
+   * The comma separated percentiles to export for each unit of time, and for the whole run.
+   */
+  public static final String PERCENTILES="timeseries.percentiles";
+  public static final String PERCENTILES_DEFAULT="95,99";
 
-  long start=-1;
-  long currentunit=-1;
-  int count=0;
-  int sum=0;
-  int operations=0;
-  long totallatency=0;
+  int _granularity;
+  final double[] _percentiles;
+  final String[] _percentileNames;
+
+  /** Records the latencies of the current unit, in us. */
+  final Recorder _recorder=new Recorder(3);
+  /** The latencies of the ended units, for the whole run. */
+  final Histogram _totalhistogram=new Histogram(3);
+  /** The histogram of the last unit, to be recycled by the recorder. */
+  Histogram _unithistogram;
+
+  /** The units of time ended so far: their start, count, average and percentiles (_percentiles.length each). */
+  int _units=0;
+  long[] _unittimes=new long[64];
+  int[] _unitcounts=new int[64];
+  double[] _unitaverages=new double[64];
+  long[] _unitpercentiles;
+
+  final long start;
+  long currentunit=0;
+  /** When the current unit ends, in ms since the epoch; checked without a lock on every measurement. */
+  volatile long _unitend;
 
   //keep a windowed version of these stats for printing status
   int windowoperations=0;
-  long windowtotallatency=0;
-
-  int min=-1;
-  int max=-1;
+  double windowtotallatency=0;
 
   public OneMeasurementTimeSeries(String name, Properties props)
   {
     super(name);
     _granularity=Integer.parseInt(props.getProperty(GRANULARITY,GRANULARITY_DEFAULT));
-    _measurements=new Vector<SeriesUnit>();
+    _percentileNames=props.getProperty(PERCENTILES,PERCENTILES_DEFAULT).split(",");
+    _percentiles=new double[_percentileNames.length];
+    for (int i=0; i<_percentiles.length; i++)
+    {
+      _percentileNames[i]=_percentileNames[i].trim();
+      _percentiles[i]=Double.parseDouble(_percentileNames[i]);
+      if ((_percentiles[i]<0) || (_percentiles[i]>100))
+      {
+        throw new IllegalArgumentException("invalid "+PERCENTILES+"="+_percentileNames[i]);
+      }
+    }
+    _unitpercentiles=new long[64*_percentiles.length];
+    // measurements are created as their first operation is measured
+    start=System.currentTimeMillis();
+    _unitend=start+_granularity;
   }
 
-  void checkEndOfUnit(boolean forceend)
+  synchronized void checkEndOfUnit(boolean forceend)
   {
     long now=System.currentTimeMillis();
 
-    if (start<0)
-    {
-      currentunit=0;
-      start=now;
-    }
-
     long unit=((now-start)/_granularity)*_granularity;
 
     if ( (unit>currentunit) || (forceend) )
     {
-      double avg=((double)sum)/((double)count);
-      _measurements.add(new SeriesUnit(currentunit,avg));
+      endUnit();
 
       currentunit=unit;
-
-      count=0;
-      sum=0;
+      _unitend=start+unit+_granularity;
     }
   }
 
-  @Override
-  public void measure(int latency)
+  /**
+   * Keep the statistics of the current unit, and start recording the next one.
+   */
+  private void endUnit()
   {
-    checkEndOfUnit(false);
-
-    count++;
-    sum+=latency;
-    totallatency+=latency;
-    operations++;
-    windowoperations++;
-    windowtotallatency+=latency;
-
-    if (latency>max)
+    _unithistogram=_recorder.getIntervalHistogram(_unithistogram);
+    if (_units==_unittimes.length)
+    {
+      int capacity=_units*2;
+      _unittimes=Arrays.copyOf(_unittimes, capacity);
+      _unitcounts=Arrays.copyOf(_unitcounts, capacity);
+      _unitaverages=Arrays.copyOf(_unitaverages, capacity);
+      _unitpercentiles=Arrays.copyOf(_unitpercentiles, capacity*_percentiles.length);
+    }
+    int count=(int)_unithistogram.getTotalCount();
+    _unittimes[_units]=currentunit;
+    _unitcounts[_units]=count;
+    _unitaverages[_units]=(count==0) ? Double.NaN : _unithistogram.getMean();
+    for (int i=0; i<_percentiles.length; i++)
     {
-      max=latency;
+      _unitpercentiles[_units*_percentiles.length+i]=_unithistogram.getValueAtPercentile(_percentiles[i]);
     }
+    _units++;
+    _totalhistogram.add(_unithistogram);
+    windowoperations+=count;
+    windowtotallatency+=_unitaverages[_units-1]*count;
+  }
 
-    if ( (latency<min) || (min<0) )
+  @Override
+  public void measure(int latency)
+  {
+    if (System.currentTimeMillis()>=_unitend)
     {
-      min=latency;
+      checkEndOfUnit(false);
     }
+    _recorder.recordValue(latency);
   }
 
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
     checkEndOfUnit(true);
 
+    int operations=(int)_totalhistogram.getTotalCount();
     exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
-
-    //TODO: 95th and 99th percentile latency
-
-
-    for (Map.Entry<Integer, AtomicInteger> entry : returncodes.entrySet()) {
-      exporter.write(getName(), "Return=" + entry.getKey(), entry.getValue().get());
+    exporter.write(getName(), "AverageLatency(us)", (operations==0) ? Double.NaN : _totalhistogram.getMean());
+    exporter.write(getName(), "MinLatency(us)", (operations==0) ? -1 : (int)_totalhistogram.getMinValue());
+    exporter.write(getName(), "MaxLatency(us)", (operations==0) ? -1 : (int)_totalhistogram.getMaxValue());
+    for (int i=0; i<_percentiles.length; i++)
+    {
+      exporter.write(getName(), _percentileNames[i]+"thPercentileLatency(us)", _totalhistogram.getValueAtPercentile(_percentiles[i]));
     }
 
-    for (SeriesUnit unit : _measurements)
+    exportReturnCodes(exporter);
+
+    for (int u=0; u<_units; u++)
     {
-      exporter.write(getName(), Long.toString(unit.time), unit.average);
+      String time=Long.toString(_unittimes[u]);
+      exporter.write(getName(), time, _unitaverages[u]);
+      exporter.write(getName(), time+"-Operations", _unitcounts[u]);
+      if (_unitcounts[u]>0)
+      {
+        for (int i=0; i<_percentiles.length; i++)
+        {
+          exporter.write(getName(), time+"-p"+_percentileNames[i]+"(us)", _unitpercentiles[u*_percentiles.length+i]);
+        }
+      }
     }
   }
 
+  /**
+   * Reports the units ended since the last status line; the current unit is reported once it ends.
+   */
   @Override
-  public String getSummary() {
+  public synchronized String getSummary() {
+    checkEndOfUnit(false);
     if (windowoperations==0)
     {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
-    double report=((double)windowtotallatency)/((double)windowoperations);
+    double report=windowtotallatency/windowoperations;
     windowtotallatency=0;
     windowoperations=0;
     return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Emits a JDK Flight Recorder event, "com.yahoo.ycsb.Operation", for each DB operation slower than a threshold,
+ * carrying the operation, table, key, return code and how late the operation started. The event's start time
+ * and duration are those of the operation, so recorded along with the JVM's own GC, safepoint and socket
+ * events, it shows whether a slow operation waited on the client JVM or on the DB. Events are only written
+ * while a recording is running, e.g. one started with "-XX:StartFlightRecording".
+ *
+ * Needs a JVM with the Flight Recorder API, i.e. Java 11 or later, or 8u262 or later. The event type is defined
+ * reflectively through jdk.jfr.EventFactory, so the client still builds and runs on older JVMs. While no
+ * recording runs, an operation only costs a volatile read: a recorder listener tracks whether the event is
+ * enabled. While one runs, the event type's threshold lets JFR drop fast operations before any field is set.
+ */
+public class OperationEvents
+{
+  /**
+   * Whether to emit an event for each DB operation.
+   */
+  public static final String EVENTS_PROPERTY="jfr.events";
+  public static final String EVENTS_PROPERTY_DEFAULT="false";
+
+  /**
+   * The latency in us below which operations emit no event. "jfr.threshold.&lt;operation&gt;", e.g.
+   * "jfr.threshold.READ", sets it for one operation.
+   */
+  public static final String THRESHOLD_PROPERTY="jfr.threshold";
+  public static final String THRESHOLD_PROPERTY_DEFAULT="0";
+
+  /** The indexes of the event's fields, in the order they are defined in {@link EventType}. */
+  private static final int OPERATION=0;
+  private static final int TABLE=1;
+  private static final int KEY=2;
+  private static final int RETURN_CODE=3;
+  private static final int START_DELAY=4;
+
+  /** The event type, shared by every instance as the type is registered once per JVM. */
+  private static EventType _type;
+
+  private final EventType _eventType;
+  /** The threshold in ns of each operation, by its index in {@link SampleRecorder#OPERATIONS}. */
+  private final long[] _thresholdNanos;
+
+  OperationEvents(Properties props)
+  {
+    long threshold=Long.parseLong(props.getProperty(THRESHOLD_PROPERTY, THRESHOLD_PROPERTY_DEFAULT));
+    _thresholdNanos=new long[SampleRecorder.OPERATIONS.length];
+    long lowest=Long.MAX_VALUE;
+    for (int i=0; i<_thresholdNanos.length; i++)
+    {
+      _thresholdNanos[i]=1000*Long.parseLong(props.getProperty(THRESHOLD_PROPERTY+"."+SampleRecorder.OPERATIONS[i],
+          Long.toString(threshold)));
+      lowest=Math.min(lowest, _thresholdNanos[i]);
+    }
+    _eventType=eventType(lowest/1000);
+  }
+
+  /**
+   * Defines the event type, the first time it is asked for.
+   *
+   * @param thresholdMicros The lowest threshold of any operation, below which JFR drops the events.
+   */
+  private static synchronized EventType eventType(long thresholdMicros)
+  {
+    if (_type==null)
+    {
+      try
+      {
+        if (!(Boolean)Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable").invoke(null))
+        {
+          throw new IllegalArgumentException(EVENTS_PROPERTY+" requires the JDK Flight Recorder, which is not available");
+        }
+        _type=new EventType(thresholdMicros);
+      }
+      catch (IllegalArgumentException e)
+      {
+        throw e;
+      }
+      catch (Exception e)
+      {
+        throw new IllegalArgumentException(EVENTS_PROPERTY+" requires a JVM with the JDK Flight Recorder, this is "+
+            System.getProperty("java.version"), e);
+      }
+    }
+    else if (thresholdMicros<_type._thresholdMicros)
+    {
+      throw new IllegalArgumentException(THRESHOLD_PROPERTY+" cannot be lowered below the "+_type._thresholdMicros+
+          " us the event type was defined with");
+    }
+    return _type;
+  }
+
+  /**
+   * The jdk.jfr event type, and whether a recording takes its events.
+   */
+  private static final class EventType implements InvocationHandler
+  {
+    private static final Object[] NO_ARGS=new Object[0];
+
+    final long _thresholdMicros;
+    final Object _factory;
+    final Method _newEvent;
+    final Method _isEnabled;
+    final Method _begin;
+    final Method _end;
+    final Method _shouldCommit;
+    final Method _set;
+    final Method _commit;
+    /** Used to check whether the event is enabled when a recording starts or stops. */
+    final Object _probe;
+    /** Whether a running recording takes the events, updated by the recorder as recordings change. */
+    volatile boolean _enabled;
+
+    EventType(long thresholdMicros) throws Exception
+    {
+      _thresholdMicros=thresholdMicros;
+      List<Object> annotations=new ArrayList<Object>();
+      annotations.add(annotation("Name", "com.yahoo.ycsb.Operation"));
+      annotations.add(annotation("Label", "YCSB Operation"));
+      annotations.add(annotation("Category", new String[] {"YCSB"}));
+      annotations.add(annotation("Description", "A DB operation issued by a YCSB client thread"));
+      annotations.add(annotation("StackTrace", Boolean.FALSE));
+      annotations.add(annotation("Threshold", thresholdMicros+" us"));
+
+      List<Object> fields=new ArrayList<Object>();
+      fields.add(OPERATION, field(String.class, "operation", annotation("Label", "Operation")));
+      fields.add(TABLE, field(String.class, "table", annotation("Label", "Table")));
+      fields.add(KEY, field(String.class, "key", annotation("Label", "Key"),
+          annotation("Description", "The key of the operation; the first key of a batch")));
+      fields.add(RETURN_CODE, field(int.class, "returnCode", annotation("Label", "Return Code")));
+      fields.add(START_DELAY, field(long.class, "startDelay", annotation("Label", "Start Delay"),
+          annotation("Description", "How long after its intended start the operation started; zero unless a "+
+              "target throughput is set and measurement.interval is intended or both"),
+          annotation("Timespan", "NANOSECONDS")));
+
+      _factory=Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class)
+          .invoke(null, annotations, fields);
+      Class<?> event=Class.forName("jdk.jfr.Event");
+      _newEvent=_factory.getClass().getMethod("newEvent");
+      _isEnabled=event.getMethod("isEnabled");
+      _begin=event.getMethod("begin");
+      _end=event.getMethod("end");
+      _shouldCommit=event.getMethod("shouldCommit");
+      _set=event.getMethod("set", int.class, Object.class);
+      _commit=event.getMethod("commit");
+      _probe=_newEvent.invoke(_factory);
+
+      // the recorder calls back at once if it is already initialized, e.g. by -XX:StartFlightRecording
+      Class<?> listener=Class.forName("jdk.jfr.FlightRecorderListener");
+      Object proxy=Proxy.newProxyInstance(listener.getClassLoader(), new Class<?>[] {listener}, this);
+      Class.forName("jdk.jfr.FlightRecorder").getMethod("addListener", listener).invoke(null, proxy);
+      _enabled=(Boolean)_isEnabled.invoke(_probe);
+    }
+
+    /**
+     * Handles the recorder's calls to the jdk.jfr.FlightRecorderListener, i.e. recorderInitialized and
+     * recordingStateChanged, by checking again whether the event is enabled.
+     */
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+      if (method.getName().equals("equals"))
+      {
+        return proxy==args[0];
+      }
+      if (method.getName().equals("hashCode"))
+      {
+        return System.identityHashCode(proxy);
+      }
+      if (method.getName().equals("toString"))
+      {
+        return "OperationEvents listener";
+      }
+      _enabled=(Boolean)_isEnabled.invoke(_probe, NO_ARGS);
+      return null;
+    }
+
+    Object newEvent() throws Exception
+    {
+      return _newEvent.invoke(_factory, NO_ARGS);
+    }
+  }
+
+  /**
+   * @return A jdk.jfr.AnnotationElement of the jdk.jfr annotation with the given simple name and value.
+   */
+  private static Object annotation(String name, Object value) throws Exception
+  {
+    Class<?> type=Class.forName("jdk.jfr."+name);
+    return Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class).newInstance(type, value);
+  }
+
+  /**
+   * @return A jdk.jfr.ValueDescriptor of an event field.
+   */
+  private static Object field(Class<?> type, String name, Object... annotations) throws Exception
+  {
+    List<Object> list=new ArrayList<Object>();
+    Collections.addAll(list, annotations);
+    Constructor<?> c=Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+    return c.newInstance(type, name, list);
+  }
+
+  /**
+   * @return A new event, for a thread that issues one operation at a time to pass to each {@link #begin}.
+   */
+  public Object newEvent()
+  {
+    try
+    {
+      return _eventType.newEvent();
+    }
+    catch (Exception e)
+    {
+      throw new IllegalStateException("could not create a Flight Recorder event", e);
+    }
+  }
+
+  /**
+   * Start the event of an operation that is about to be issued.
+   *
+   * @param reuse An event from {@link #newEvent()} that no other operation is using, or null to create one if
+   *          a recording takes the event.
+   * @return The event, to pass to {@link #commit}, or null if no recording takes it.
+   */
+  public Object begin(Object reuse)
+  {
+    EventType type=_eventType;
+    if (!type._enabled)
+    {
+      return null;
+    }
+    try
+    {
+      Object event=(reuse==null) ? type.newEvent() : reuse;
+      type._begin.invoke(event, EventType.NO_ARGS);
+      return event;
+    }
+    catch (Exception e)
+    {
+      throw new IllegalStateException("could not begin a Flight Recorder event", e);
+    }
+  }
+
+  /**
+   * End the event of an operation that has completed, and write it if the operation took at least its
+   * threshold. The event may be committed on another thread than the one that began it; it is then recorded
+   * as an event of the committing thread.
+   *
+   * @param event The event returned by {@link #begin}, or null.
+   * @param op The operation, e.g. {@link SampleRecorder#READ}.
+   * @param intendedStartTimeNanos The intended start of the operation on the System.nanoTime() clock, or 0 if it
+   *          has none.
+   * @param startTimeNanos The start of the operation on the System.nanoTime() clock.
+   * @param endTimeNanos The end of the operation on the System.nanoTime() clock.
+   * @param code The return code.
+   */
+  public void commit(Object event, byte op, String table, String key, long intendedStartTimeNanos,
+      long startTimeNanos, long endTimeNanos, int code)
+  {
+    if (event==null)
+    {
+      return;
+    }
+    EventType type=_eventType;
+    try
+    {
+      type._end.invoke(event, EventType.NO_ARGS);
+      // a recording's own settings may lower the type's threshold, so check the operation's too
+      if ((endTimeNanos-startTimeNanos<_thresholdNanos[op]) ||
+          !(Boolean)type._shouldCommit.invoke(event, EventType.NO_ARGS))
+      {
+        return;
+      }
+      type._set.invoke(event, OPERATION, SampleRecorder.OPERATIONS[op]);
+      type._set.invoke(event, TABLE, table);
+      type._set.invoke(event, KEY, key);
+      type._set.invoke(event, RETURN_CODE, code);
+      type._set.invoke(event, START_DELAY,
+          (intendedStartTimeNanos==0) ? 0L : Math.max(0, startTimeNanos-intendedStartTimeNanos));
+      type._commit.invoke(event, EventType.NO_ARGS);
+    }
+    catch (Exception e)
+    {
+      throw new IllegalStateException("could not commit a Flight Recorder event", e);
+    }
+  }
+}
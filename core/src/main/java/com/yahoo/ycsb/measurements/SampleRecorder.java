@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records every DB operation of a run, so that single slow operations can be matched against the logs of the
+ * DB. Each client thread writes to its own region of a memory mapped file, which holds the last
+ * "samples.perthread" operations of the thread as a ring; recording takes no lock and allocates nothing.
+ *
+ * The file is a 64 byte header, the magic "YCSBSMP1", the format version, the record size, the records per
+ * thread and the number of threads, followed by one region per thread: the number of records the thread has
+ * written (8 bytes), then its ring of records. All numbers are big-endian. Each record holds:
+ * <UL>
+ * <LI>the start of the operation in us since the epoch (8 bytes)
+ * <LI>the latency in us (4 bytes)
+ * <LI>the return code (4 bytes)
+ * <LI>the thread (2 bytes)
+ * <LI>the operation (1 byte), an index into {@link #OPERATIONS}
+ * <LI>the length of the key (1 byte)
+ * <LI>the key, or the first 28 bytes of it, as ASCII (28 bytes); the first key of a batch
+ * </UL>
+ *
+ * <code>java com.yahoo.ycsb.measurements.SampleRecorder samples.bin</code> prints the records as CSV, thread
+ * by thread, oldest first.
+ */
+public class SampleRecorder
+{
+  /**
+   * The file to record the operations to. Operations are not recorded if not set.
+   */
+  public static final String FILE_PROPERTY="samples.file";
+
+  /**
+   * The number of operations kept for each client thread; older ones are overwritten.
+   */
+  public static final String RECORDS_PER_THREAD_PROPERTY="samples.perthread";
+  public static final String RECORDS_PER_THREAD_PROPERTY_DEFAULT="100000";
+
+  public static final byte READ=0;
+  public static final byte SCAN=1;
+  public static final byte UPDATE=2;
+  public static final byte INSERT=3;
+  public static final byte DELETE=4;
+  public static final byte BATCH_READ=5;
+  public static final byte BATCH_INSERT=6;
+  public static final byte BATCH_UPDATE=7;
+  public static final byte BATCH_DELETE=8;
+
+  public static final String[] OPERATIONS={"READ", "SCAN", "UPDATE", "INSERT", "DELETE", "BATCH-READ", "BATCH-INSERT",
+    "BATCH-UPDATE", "BATCH-DELETE"};
+
+  static final byte[] MAGIC={'Y', 'C', 'S', 'B', 'S', 'M', 'P', '1'};
+  static final int VERSION=1;
+  static final int HEADER_SIZE=64;
+  static final int RECORD_SIZE=48;
+  static final int KEY_SIZE=28;
+  /** The size of the count at the start of each region. */
+  static final int REGION_HEADER_SIZE=8;
+
+  /**
+   * The part of the file one client thread writes to. Each record claims its slot in the ring with an atomic
+   * increment, so the completions of an asynchronous DB can be recorded from several threads without a lock.
+   * The count at the start of the region is only exact once the file is closed.
+   */
+  public static class Region
+  {
+    private final MappedByteBuffer _buffer;
+    private final short _thread;
+    private final long _records;
+    private final long _epochUs;
+    private final long _nanoBase;
+    private final AtomicLong _written=new AtomicLong();
+
+    Region(MappedByteBuffer buffer, int thread, long records, long epochUs, long nanoBase)
+    {
+      _buffer=buffer;
+      _thread=(short)thread;
+      _records=records;
+      _epochUs=epochUs;
+      _nanoBase=nanoBase;
+    }
+
+    /**
+     * Record an operation.
+     *
+     * @param op The operation, e.g. {@link SampleRecorder#READ}.
+     * @param key The key of the operation.
+     * @param startTimeNanos The start of the operation on the System.nanoTime() clock.
+     * @param endTimeNanos The end of the operation on the System.nanoTime() clock.
+     * @param code The return code.
+     */
+    public void record(byte op, String key, long startTimeNanos, long endTimeNanos, int code)
+    {
+      long slot=_written.getAndIncrement();
+      int offset=REGION_HEADER_SIZE+(int)(slot%_records)*RECORD_SIZE;
+      _buffer.putLong(offset, _epochUs+(startTimeNanos-_nanoBase)/1000);
+      _buffer.putInt(offset+8, (int)((endTimeNanos-startTimeNanos)/1000));
+      _buffer.putInt(offset+12, code);
+      _buffer.putShort(offset+16, _thread);
+      _buffer.put(offset+18, op);
+      int length=(key==null) ? 0 : Math.min(key.length(), KEY_SIZE);
+      _buffer.put(offset+19, (byte)length);
+      for (int i=0; i<length; i++)
+      {
+        _buffer.put(offset+20+i, (byte)key.charAt(i));
+      }
+      // concurrent records may publish their counts out of order; close() writes the final one
+      _buffer.putLong(0, slot+1);
+    }
+
+    /**
+     * Write the final count of records, once nothing records to the region any more.
+     */
+    void close()
+    {
+      _buffer.putLong(0, _written.get());
+      _buffer.force();
+    }
+  }
+
+  private final RandomAccessFile _file;
+  private final MappedByteBuffer[] _regions;
+  /** The regions handed out so far, by thread. */
+  private final Region[] _threadRegions;
+  private final long _records;
+  private final AtomicInteger _nextRegion=new AtomicInteger();
+  private final long _epochUs;
+  private final long _nanoBase;
+
+  /**
+   * Create the file named by the properties, with a region for each of "threadcount" client threads.
+   */
+  SampleRecorder(Properties props) throws IOException
+  {
+    int threads=Integer.parseInt(props.getProperty("threadcount", "1"));
+    _records=Long.parseLong(props.getProperty(RECORDS_PER_THREAD_PROPERTY, RECORDS_PER_THREAD_PROPERTY_DEFAULT));
+    if ((_records<1) || (REGION_HEADER_SIZE+_records*RECORD_SIZE>Integer.MAX_VALUE))
+    {
+      throw new IllegalArgumentException("invalid "+RECORDS_PER_THREAD_PROPERTY+"="+_records);
+    }
+    _epochUs=System.currentTimeMillis()*1000;
+    _nanoBase=System.nanoTime();
+
+    long regionSize=REGION_HEADER_SIZE+_records*RECORD_SIZE;
+    _file=new RandomAccessFile(props.getProperty(FILE_PROPERTY), "rw");
+    _file.setLength(0);
+    _file.setLength(HEADER_SIZE+threads*regionSize);
+    FileChannel channel=_file.getChannel();
+    MappedByteBuffer header=channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    header.put(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(RECORD_SIZE);
+    header.putLong(_records);
+    header.putInt(threads);
+    header.force();
+    _regions=new MappedByteBuffer[threads];
+    _threadRegions=new Region[threads];
+    for (int i=0; i<threads; i++)
+    {
+      _regions[i]=channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE+i*regionSize, regionSize);
+    }
+  }
+
+  /**
+   * @return The region for the next client thread, or null if every thread already has one.
+   */
+  public Region newRegion()
+  {
+    int thread=_nextRegion.getAndIncrement();
+    if (thread>=_regions.length)
+    {
+      return null;
+    }
+    Region region=new Region(_regions[thread], thread, _records, _epochUs, _nanoBase);
+    synchronized (_threadRegions)
+    {
+      _threadRegions[thread]=region;
+    }
+    return region;
+  }
+
+  /**
+   * Write the records out and close the file. The client threads must have finished.
+   */
+  void close() throws IOException
+  {
+    synchronized (_threadRegions)
+    {
+      for (Region region : _threadRegions)
+      {
+        if (region!=null)
+        {
+          region.close();
+        }
+      }
+    }
+    for (MappedByteBuffer region : _regions)
+    {
+      region.force();
+    }
+    _file.close();
+  }
+
+  /**
+   * Print the records of a file as CSV, one "time in us,thread,operation,key,latency in us,return code" line
+   * per operation.
+   */
+  public static void dump(String file, Writer out) throws IOException
+  {
+    RandomAccessFile raf=new RandomAccessFile(file, "r");
+    try
+    {
+      FileChannel channel=raf.getChannel();
+      if (channel.size()<HEADER_SIZE)
+      {
+        throw new IOException(file+" is not a sample file");
+      }
+      MappedByteBuffer header=channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      byte[] magic=new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC) || (header.getInt()!=VERSION) || (header.getInt()!=RECORD_SIZE))
+      {
+        throw new IOException(file+" is not a sample file");
+      }
+      long records=header.getLong();
+      int threads=header.getInt();
+      long regionSize=REGION_HEADER_SIZE+records*RECORD_SIZE;
+
+      out.write("time,thread,operation,key,latency,return\n");
+      StringBuilder line=new StringBuilder();
+      for (int t=0; t<threads; t++)
+      {
+        ByteBuffer region=channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE+t*regionSize, regionSize);
+        long written=region.getLong(0);
+        for (long r=Math.max(0, written-records); r<written; r++)
+        {
+          int offset=REGION_HEADER_SIZE+(int)(r%records)*RECORD_SIZE;
+          int op=region.get(offset+18);
+          int length=region.get(offset+19);
+          line.setLength(0);
+          line.append(region.getLong(offset)).append(',').append(region.getShort(offset+16)).append(',')
+              .append(((op>=0) && (op<OPERATIONS.length)) ? OPERATIONS[op] : Integer.toString(op)).append(',');
+          for (int i=0; i<length; i++)
+          {
+            line.append((char)region.get(offset+20+i));
+          }
+          line.append(',').append(region.getInt(offset+8)).append(',').append(region.getInt(offset+12)).append('\n');
+          out.write(line.toString());
+        }
+      }
+      out.flush();
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length!=1)
+    {
+      System.out.println("Usage: java com.yahoo.ycsb.measurements.SampleRecorder samples.bin");
+      System.out.println("Prints each operation as \"time in us,thread,operation,key,latency in us,return code\".");
+      System.exit(0);
+    }
+    dump(args[0], new BufferedWriter(new OutputStreamWriter(System.out, "US-ASCII")));
+  }
+}
@@ -18,6 +18,7 @@
 package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.HdrHistogram.Recorder;
 
@@ -78,4 +79,32 @@ public class TwoInOneMeasurement extends OneMeasurement {
     return thing1.getSummary() + "\n" + thing2.getSummary();
   }
 
+  /**
+   * @see com.yahoo.ycsb.measurements.OneMeasurement#setIntervalListener(IntervalListener)
+   */
+  @Override
+  public void setIntervalListener(IntervalListener listener) {
+    thing1.setIntervalListener(listener);
+    thing2.setIntervalListener(listener);
+  }
+
+  /**
+   * Return codes are only counted by the first measurement.
+   *
+   * @see com.yahoo.ycsb.measurements.OneMeasurement#getReturnCodes()
+   */
+  @Override
+  public Map<Integer, Integer> getReturnCodes() {
+    return thing1.getReturnCodes();
+  }
+
+  /**
+   * @see com.yahoo.ycsb.measurements.OneMeasurement#getPercentile(double)
+   */
+  @Override
+  public double getPercentile(double percentile) {
+    double value = thing1.getPercentile(percentile);
+    return value >= 0 ? value : thing2.getPercentile(percentile);
+  }
+
 }
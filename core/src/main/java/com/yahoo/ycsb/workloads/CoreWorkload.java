@@ -32,6 +32,7 @@ import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
 import com.yahoo.ycsb.generator.SkewedLatestGenerator;
 import com.yahoo.ycsb.generator.UniformIntegerGenerator;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
+import com.yahoo.ycsb.measurements.MeasurementHandle;
 import com.yahoo.ycsb.measurements.Measurements;
 
 import java.io.IOException;
@@ -40,6 +41,7 @@ import java.util.HashSet;
 import java.util.Vector;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
 
 /**
@@ -62,6 +64,9 @@ import java.util.ArrayList;
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed") (default: hashed)
+ * <LI><b>readbatchsize</b>, <b>updatebatchsize</b>, <b>insertbatchsize</b>: the number of records each client thread buffers and then reads, updates or inserts with a single batch call (default: 1, no batching)
+ * <LI><b>transactioninsertoffset</b>, <b>transactioninsertstride</b>: the first key inserted in the transaction phase, as an offset from recordcount, and the step between the keys it inserts, so that several clients can share the phase without inserting the same keys (default: 0 and 1)
+ * <LI><b>recordtrace</b>: a file to record every operation to, for {@link TraceReplayWorkload} to replay (default: none)
  * </ul> 
  */
 public class CoreWorkload extends Workload
@@ -291,6 +296,64 @@ public class CoreWorkload extends Workload
    */
   public static final String HOTSPOT_OPN_FRACTION_DEFAULT = "0.8";
 	
+  /**
+   * The name of the property for the number of reads to issue together. Reads are buffered per client thread and
+   * issued with {@link DB#batchRead} once the batch is full. If readallfields is false, the whole batch reads one
+   * randomly chosen field.
+   */
+  public static final String READ_BATCH_SIZE_PROPERTY = "readbatchsize";
+
+  /**
+   * The name of the property for the number of updates to issue together with {@link DB#batchUpdate}.
+   */
+  public static final String UPDATE_BATCH_SIZE_PROPERTY = "updatebatchsize";
+
+  /**
+   * The name of the property for the number of inserts, in both the load and the transaction phase, to issue
+   * together with {@link DB#batchInsert}.
+   */
+  public static final String INSERT_BATCH_SIZE_PROPERTY = "insertbatchsize";
+
+  /**
+   * Default batch size, i.e. every operation is issued on its own.
+   */
+  public static final String BATCH_SIZE_PROPERTY_DEFAULT = "1";
+
+  int readbatchsize;
+  int updatebatchsize;
+  int insertbatchsize;
+
+  /**
+   * The name of the property for the offset from recordcount of the first key inserted in the transaction phase,
+   * and for the step between the keys it inserts. Clients that share a transaction run, such as the agents of a
+   * {@link com.yahoo.ycsb.Coordinator}, each take an offset below a common stride so their keys do not overlap.
+   */
+  public static final String TRANSACTION_INSERT_OFFSET_PROPERTY = "transactioninsertoffset";
+  public static final String TRANSACTION_INSERT_OFFSET_PROPERTY_DEFAULT = "0";
+  public static final String TRANSACTION_INSERT_STRIDE_PROPERTY = "transactioninsertstride";
+  public static final String TRANSACTION_INSERT_STRIDE_PROPERTY_DEFAULT = "1";
+
+  /**
+   * The name of the property for a file to record every operation to, in the format of {@link OperationTrace}.
+   * Not supported with batched operations.
+   */
+  public static final String RECORD_TRACE_PROPERTY = "recordtrace";
+
+  OperationTrace.Writer tracewriter;
+
+  /**
+   * The operations a client thread has buffered for its next batches.
+   */
+  static class BatchState {
+    final List<String> readkeys = new ArrayList<String>();
+    final List<String> updatekeys = new ArrayList<String>();
+    final List<HashMap<String, ByteIterator>> updatevalues = new ArrayList<HashMap<String, ByteIterator>>();
+    final List<String> insertkeys = new ArrayList<String>();
+    final List<HashMap<String, ByteIterator>> insertvalues = new ArrayList<HashMap<String, ByteIterator>>();
+    /** Transaction inserts buffered; their keys are only taken when the batch is written. */
+    int transactioninserts;
+  }
+
 	IntegerGenerator keysequence;
 
 	DiscreteGenerator operationchooser;
@@ -300,14 +363,20 @@ public class CoreWorkload extends Workload
 	Generator fieldchooser;
 
 	CounterGenerator transactioninsertkeysequence;
+
+	/** The offset and stride of the keys this client inserts in the transaction phase. */
+	long transactioninsertoffset;
+	long transactioninsertstride;
 	
 	IntegerGenerator scanlength;
 	
 	boolean orderedinserts;
 
-	int recordcount;
+	long recordcount;
 
     private Measurements _measurements = Measurements.getMeasurements();
+    private MeasurementHandle _readModifyWrite = _measurements.getHandle("READ-MODIFY-WRITE");
+    private MeasurementHandle _verify = _measurements.getHandle("VERIFY");
 	
 	protected static IntegerGenerator getFieldLengthGenerator(Properties p) throws WorkloadException{
 		IntegerGenerator fieldlengthgenerator;
@@ -352,14 +421,14 @@ public class CoreWorkload extends Workload
 		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
 		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
 		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
-		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY, Client.DEFAULT_RECORD_COUNT));
+		recordcount=Long.parseLong(p.getProperty(Client.RECORD_COUNT_PROPERTY, Client.DEFAULT_RECORD_COUNT));
 		if(recordcount == 0)
 		    recordcount = Integer.MAX_VALUE;
 		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
 		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
 		String scanlengthdistrib=p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY,SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 		
-		int insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		long insertstart=Long.parseLong(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
 		
 		readallfields=Boolean.parseBoolean(p.getProperty(READ_ALL_FIELDS_PROPERTY,READ_ALL_FIELDS_PROPERTY_DEFAULT));
 		writeallfields=Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY,WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
@@ -417,7 +486,13 @@ public class CoreWorkload extends Workload
 			operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
 		}
 
-		transactioninsertkeysequence=new CounterGenerator(recordcount);
+		transactioninsertoffset=Long.parseLong(p.getProperty(TRANSACTION_INSERT_OFFSET_PROPERTY,TRANSACTION_INSERT_OFFSET_PROPERTY_DEFAULT));
+		transactioninsertstride=Long.parseLong(p.getProperty(TRANSACTION_INSERT_STRIDE_PROPERTY,TRANSACTION_INSERT_STRIDE_PROPERTY_DEFAULT));
+		if ((transactioninsertstride<1) || (transactioninsertoffset<0) || (transactioninsertoffset>=transactioninsertstride))
+		{
+			throw new WorkloadException(TRANSACTION_INSERT_OFFSET_PROPERTY+" must be at least 0 and below "+TRANSACTION_INSERT_STRIDE_PROPERTY);
+		}
+		transactioninsertkeysequence=new CounterGenerator(recordcount+transactioninsertoffset,transactioninsertstride,recordcount-1);
 		if (requestdistrib.compareTo("uniform")==0)
 		{
 			keychooser=new UniformIntegerGenerator(0,recordcount-1);
@@ -431,8 +506,8 @@ public class CoreWorkload extends Workload
 			//plus the number of predicted keys as the total keyspace. then, if the generator picks a key that hasn't been inserted yet, will
 			//just ignore it and pick another key. this way, the size of the keyspace doesn't change from the perspective of the scrambled zipfian generator
 			
-			int opcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
-			int expectednewkeys=(int)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
+			long opcount=Long.parseLong(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+			long expectednewkeys=(long)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
 			
 			keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys);
 		}
@@ -455,6 +530,27 @@ public class CoreWorkload extends Workload
 		}
 
 		fieldchooser=new UniformIntegerGenerator(0,fieldcount-1);
+
+		readbatchsize=Integer.parseInt(p.getProperty(READ_BATCH_SIZE_PROPERTY,BATCH_SIZE_PROPERTY_DEFAULT));
+		updatebatchsize=Integer.parseInt(p.getProperty(UPDATE_BATCH_SIZE_PROPERTY,BATCH_SIZE_PROPERTY_DEFAULT));
+		insertbatchsize=Integer.parseInt(p.getProperty(INSERT_BATCH_SIZE_PROPERTY,BATCH_SIZE_PROPERTY_DEFAULT));
+
+		String tracefile=p.getProperty(RECORD_TRACE_PROPERTY);
+		if (tracefile!=null)
+		{
+			if ((readbatchsize>1) || (updatebatchsize>1) || (insertbatchsize>1))
+			{
+				throw new WorkloadException("\""+RECORD_TRACE_PROPERTY+"\" does not support batched operations");
+			}
+			try
+			{
+				tracewriter=new OperationTrace.Writer(tracefile,fieldcount,System.nanoTime());
+			}
+			catch (IOException e)
+			{
+				throw new WorkloadException("Couldn't create trace file: "+tracefile, e);
+			}
+		}
 		
 		if (scanlengthdistrib.compareTo("uniform")==0)
 		{
@@ -471,12 +567,65 @@ public class CoreWorkload extends Workload
 	}
 
 	public String buildKeyName(long keynum) {
+		return buildKeyName(keynum,orderedinserts);
+	}
+
+	/**
+	 * Name a key as CoreWorkload does, hashing its number unless records are inserted in order.
+	 */
+	static String buildKeyName(long keynum, boolean orderedinserts) {
  		if (!orderedinserts)
  		{
  			keynum=Utils.hash(keynum);
  		}
 		return "user"+keynum;
 	}
+
+	/**
+	 * Record an operation to the trace, if one is being recorded.
+	 */
+	private void trace(byte op, long keynum, int field, int bytes, int scanlength)
+	{
+		if (tracewriter==null)
+		{
+			return;
+		}
+		long ist=_measurements.getIntendedtartTimeNs();
+		try
+		{
+			tracewriter.record((ist!=0) ? ist : System.nanoTime(),op,keynum,field,bytes,scanlength);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Couldn't record the trace", e);
+		}
+	}
+
+	/**
+	 * @return The index of the only field read, or -1 for all of them.
+	 */
+	private int traceField(Set<String> fields)
+	{
+		return (fields==null) ? -1 : fieldnames.indexOf(fields.iterator().next());
+	}
+
+	/**
+	 * @return The index of the only field written, or -1 for all of them.
+	 */
+	private int traceField(HashMap<String,ByteIterator> values)
+	{
+		return (values.size()==fieldcount) ? -1 : fieldnames.indexOf(values.keySet().iterator().next());
+	}
+
+	private static int traceBytes(HashMap<String,ByteIterator> values)
+	{
+		long bytes=0;
+		for (ByteIterator value : values.values())
+		{
+			bytes+=value.bytesLeft();
+		}
+		return (int)bytes;
+	}
 	
   /**
    * Builds a value for a randomly chosen field.
@@ -534,6 +683,67 @@ public class CoreWorkload extends Workload
     return sb.toString();
   }
 
+	/**
+	 * Close the trace, if one is being recorded.
+	 */
+	@Override
+	public void cleanup() throws WorkloadException
+	{
+		if (tracewriter!=null)
+		{
+			try
+			{
+				tracewriter.close();
+			}
+			catch (IOException e)
+			{
+				throw new WorkloadException("Couldn't write the trace", e);
+			}
+		}
+	}
+
+	/**
+	 * Initialize the thread state. Only needed to buffer operations when some of them are batched.
+	 */
+	@Override
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		if ((readbatchsize>1) || (updatebatchsize>1) || (insertbatchsize>1))
+		{
+			return new BatchState();
+		}
+		return null;
+	}
+
+	/**
+	 * Issue the batches this thread still has buffered.
+	 */
+	@Override
+	public void cleanupThread(DB db, Object threadstate) throws WorkloadException
+	{
+		if (threadstate==null)
+		{
+			return;
+		}
+		BatchState batch=(BatchState)threadstate;
+		if (!batch.readkeys.isEmpty())
+		{
+			flushReads(db,batch);
+		}
+		if (!batch.updatekeys.isEmpty())
+		{
+			flushUpdates(db,batch);
+		}
+		if (batch.transactioninserts>0)
+		{
+			flushTransactionInserts(db,batch);
+		}
+		if (!batch.insertkeys.isEmpty())
+		{
+			flushInserts(db,batch);
+		}
+	}
+
 	/**
 	 * Do one insert operation. Because it will be called concurrently from multiple client threads, this 
 	 * function must be thread safe. However, avoid synchronized, or the threads will block waiting for each 
@@ -542,9 +752,14 @@ public class CoreWorkload extends Workload
 	 */
 	public boolean doInsert(DB db, Object threadstate)
 	{
-		int keynum=keysequence.nextInt();
+		long keynum=keysequence.nextLong();
 		String dbkey = buildKeyName(keynum);
 		HashMap<String, ByteIterator> values = buildValues(dbkey);
+		if (insertbatchsize>1)
+		{
+			return bufferInsert(db,(BatchState)threadstate,dbkey,values) == 0;
+		}
+		trace(OperationTrace.INSERT,keynum,-1,traceBytes(values),0);
 		if (db.insert(table,dbkey,values) == 0)
 			return true;
 		else
@@ -563,15 +778,36 @@ public class CoreWorkload extends Workload
 
 		if (op.compareTo("READ")==0)
 		{
-			doTransactionRead(db);
+			if (readbatchsize>1)
+			{
+				doTransactionBatchedRead(db,(BatchState)threadstate);
+			}
+			else
+			{
+				doTransactionRead(db);
+			}
 		}
 		else if (op.compareTo("UPDATE")==0)
 		{
-			doTransactionUpdate(db);
+			if (updatebatchsize>1)
+			{
+				doTransactionBatchedUpdate(db,(BatchState)threadstate);
+			}
+			else
+			{
+				doTransactionUpdate(db);
+			}
 		}
 		else if (op.compareTo("INSERT")==0)
 		{
-			doTransactionInsert(db);
+			if (insertbatchsize>1)
+			{
+				doTransactionBatchedInsert(db,(BatchState)threadstate);
+			}
+			else
+			{
+				doTransactionInsert(db);
+			}
 		}
 		else if (op.compareTo("SCAN")==0)
 		{
@@ -606,31 +842,39 @@ public class CoreWorkload extends Workload
       //This assumes that null data is never valid
       matchType = DATA_INT_UNEXPECTED_NULL;
     }
-    Measurements.getMeasurements().measure("VERIFY", matchType);
+    _verify.measure(matchType);
   }
 
-    int nextKeynum() {
-        int keynum;
+    long nextKeynum() {
+        long keynum;
         if(keychooser instanceof ExponentialGenerator) {
             do
                 {
-                    keynum=transactioninsertkeysequence.lastInt() - keychooser.nextInt();
+                    keynum=transactioninsertkeysequence.lastLong() - keychooser.nextLong();
                 }
-            while(keynum < 0);
+            while(keynum < 0 || !isOwnKey(keynum));
         } else {
             do
                 {
-                    keynum=keychooser.nextInt();
+                    keynum=keychooser.nextLong();
                 }
-            while (keynum > transactioninsertkeysequence.lastInt());
+            while (keynum > transactioninsertkeysequence.lastLong() || !isOwnKey(keynum));
         }
         return keynum;
     }
 
+    /**
+     * Whether a key was loaded or is one this client inserts. Clients that share a transaction run only read
+     * their own inserts, as they cannot tell whether another client has inserted its keys yet.
+     */
+    boolean isOwnKey(long keynum) {
+        return keynum < recordcount || (keynum - recordcount) % transactioninsertstride == transactioninsertoffset;
+    }
+
 	public void doTransactionRead(DB db)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long keynum = nextKeynum();
 		
 		String keyname = buildKeyName(keynum);
 		
@@ -647,6 +891,7 @@ public class CoreWorkload extends Workload
 
     HashMap<String,ByteIterator> cells =
         new HashMap<String,ByteIterator>();
+		trace(OperationTrace.READ,keynum,traceField(fields),0,0);
 		db.read(table,keyname,fields,cells);
 
     if (dataintegrity) {
@@ -657,7 +902,7 @@ public class CoreWorkload extends Workload
 	public void doTransactionReadModifyWrite(DB db)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long keynum = nextKeynum();
 
 		String keyname = buildKeyName(keynum);
 
@@ -691,11 +936,13 @@ public class CoreWorkload extends Workload
 		    new HashMap<String,ByteIterator>();
 
 		
+		trace(OperationTrace.READMODIFYWRITE,keynum,traceField(values),traceBytes(values),0);
+
 		long ist=_measurements.getIntendedtartTimeNs();
 	    long st = System.nanoTime();
-		db.read(table,keyname,fields,cells);
+		int res=db.read(table,keyname,fields,cells);
 		
-		db.update(table,keyname,values);
+		int updateres=db.update(table,keyname,values);
 
 		long en=System.nanoTime();
 
@@ -703,14 +950,15 @@ public class CoreWorkload extends Workload
       verifyRow(keyname, cells);
     }
 
-		_measurements .measure("READ-MODIFY-WRITE", (int)((en-st)/1000));
-		_measurements .measureIntended("READ-MODIFY-WRITE", (int)((en-ist)/1000));
+		MeasurementHandle outcome=_readModifyWrite.forReturnCode((res!=0) ? res : updateres);
+		outcome.measure((int)((en-st)/1000));
+		outcome.measureIntended((int)((en-ist)/1000));
 	}
 	
 	public void doTransactionScan(DB db)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long keynum = nextKeynum();
 
 		String startkeyname = buildKeyName(keynum);
 		
@@ -728,13 +976,14 @@ public class CoreWorkload extends Workload
 			fields.add(fieldname);
 		}
 
+		trace(OperationTrace.SCAN,keynum,traceField(fields),0,len);
 		db.scan(table,startkeyname,len,fields,new Vector<HashMap<String,ByteIterator>>());
 	}
 
 	public void doTransactionUpdate(DB db)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long keynum = nextKeynum();
 
 		String keyname=buildKeyName(keynum);
 
@@ -751,17 +1000,122 @@ public class CoreWorkload extends Workload
 		   values = buildSingleValue(keyname);
 		}
 
+		trace(OperationTrace.UPDATE,keynum,traceField(values),traceBytes(values),0);
 		db.update(table,keyname,values);
 	}
 
 	public void doTransactionInsert(DB db)
 	{
 		//choose the next key
-		int keynum=transactioninsertkeysequence.nextInt();
+		long keynum=transactioninsertkeysequence.nextLong();
 
 		String dbkey = buildKeyName(keynum);
 
 		HashMap<String, ByteIterator> values = buildValues(dbkey);
+		trace(OperationTrace.INSERT,keynum,-1,traceBytes(values),0);
 		db.insert(table,dbkey,values);
 	}
+
+	/**
+	 * Buffer a read of a random key, reading the batch once it is full.
+	 */
+	public void doTransactionBatchedRead(DB db, BatchState batch)
+	{
+		batch.readkeys.add(buildKeyName(nextKeynum()));
+		if (batch.readkeys.size()>=readbatchsize)
+		{
+			flushReads(db,batch);
+		}
+	}
+
+	/**
+	 * Buffer an update of a random key, writing the batch once it is full.
+	 */
+	public void doTransactionBatchedUpdate(DB db, BatchState batch)
+	{
+		String keyname=buildKeyName(nextKeynum());
+		batch.updatekeys.add(keyname);
+		batch.updatevalues.add(writeallfields ? buildValues(keyname) : buildSingleValue(keyname));
+		if (batch.updatekeys.size()>=updatebatchsize)
+		{
+			flushUpdates(db,batch);
+		}
+	}
+
+	/**
+	 * Buffer an insert of the next key, writing the batch once it is full. The keys are taken from the insert
+	 * sequence only when the batch is written, so that reads do not choose keys that are still buffered.
+	 */
+	public void doTransactionBatchedInsert(DB db, BatchState batch)
+	{
+		batch.transactioninserts++;
+		if (batch.transactioninserts>=insertbatchsize)
+		{
+			flushTransactionInserts(db,batch);
+		}
+	}
+
+	private void flushTransactionInserts(DB db, BatchState batch)
+	{
+		for (int i=0; i<batch.transactioninserts; i++)
+		{
+			String dbkey=buildKeyName(transactioninsertkeysequence.nextLong());
+			batch.insertkeys.add(dbkey);
+			batch.insertvalues.add(buildValues(dbkey));
+		}
+		batch.transactioninserts=0;
+		flushInserts(db,batch);
+	}
+
+	private int bufferInsert(DB db, BatchState batch, String dbkey, HashMap<String, ByteIterator> values)
+	{
+		batch.insertkeys.add(dbkey);
+		batch.insertvalues.add(values);
+		if (batch.insertkeys.size()>=insertbatchsize)
+		{
+			return flushInserts(db,batch);
+		}
+		return 0;
+	}
+
+	private void flushReads(DB db, BatchState batch)
+	{
+		HashSet<String> fields=null;
+		if (!readallfields)
+		{
+			fields=new HashSet<String>();
+			fields.add(fieldnames.get(Integer.parseInt(fieldchooser.nextString())));
+		}
+
+		List<HashMap<String,ByteIterator>> results=new ArrayList<HashMap<String,ByteIterator>>(batch.readkeys.size());
+		for (int i=0; i<batch.readkeys.size(); i++)
+		{
+			results.add(new HashMap<String,ByteIterator>());
+		}
+		db.batchRead(table,batch.readkeys,fields,results);
+
+		if (dataintegrity)
+		{
+			for (int i=0; i<batch.readkeys.size(); i++)
+			{
+				verifyRow(batch.readkeys.get(i), results.get(i));
+			}
+		}
+		batch.readkeys.clear();
+	}
+
+	private void flushUpdates(DB db, BatchState batch)
+	{
+		db.batchUpdate(table,batch.updatekeys,batch.updatevalues);
+		batch.updatekeys.clear();
+		batch.updatevalues.clear();
+	}
+
+	private int flushInserts(DB db, BatchState batch)
+	{
+		int res=db.batchInsert(table,batch.insertkeys,batch.insertvalues);
+		batch.insertkeys.clear();
+		batch.insertvalues.clear();
+		return res;
+	}
 }
@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A binary trace of the operations of a run, recorded by {@link CoreWorkload} and replayed by
+ * {@link TraceReplayWorkload}.
+ *
+ * A trace is a 16 byte header, the magic "YCSBTRC1", the format version and the number of fields in a
+ * record, followed by one fixed size record per operation. All numbers are big-endian. Each record holds:
+ * <UL>
+ * <LI>the time of the operation in ns since the start of the trace (8 bytes), from its intended start when
+ * the run was throttled
+ * <LI>the key number (8 bytes), named as by CoreWorkload
+ * <LI>the number of bytes written (4 bytes), 0 for reads and scans
+ * <LI>the number of records to scan (4 bytes), 0 for other operations
+ * <LI>the field read or written (2 bytes), or -1 for all of them
+ * <LI>the operation (1 byte), one of {@link #READ}, {@link #UPDATE}, {@link #INSERT}, {@link #SCAN},
+ * {@link #READMODIFYWRITE} or {@link #DELETE}
+ * <LI>a zero byte for alignment
+ * </UL>
+ *
+ * Traces from other sources, such as the access logs of a production system, can be converted with
+ * <code>java com.yahoo.ycsb.workloads.OperationTrace fieldcount input.csv output.trace</code>, where each
+ * line of the input is "time in us,operation,key number,field,bytes written,scan length" and the operation
+ * is one of READ, UPDATE, INSERT, SCAN, READMODIFYWRITE and DELETE.
+ */
+public class OperationTrace
+{
+  public static final byte READ=0;
+  public static final byte UPDATE=1;
+  public static final byte INSERT=2;
+  public static final byte SCAN=3;
+  public static final byte READMODIFYWRITE=4;
+  public static final byte DELETE=5;
+
+  static final String[] OPERATIONS={"READ", "UPDATE", "INSERT", "SCAN", "READMODIFYWRITE", "DELETE"};
+
+  static final byte[] MAGIC={'Y', 'C', 'S', 'B', 'T', 'R', 'C', '1'};
+  static final int VERSION=1;
+  static final int HEADER_SIZE=16;
+  static final int RECORD_SIZE=28;
+
+  /**
+   * Appends records to a new trace. Safe to use from several threads; the records are buffered and written
+   * in large blocks, so a trace records a run at close to its full speed.
+   */
+  public static class Writer
+  {
+    private final FileChannel _channel;
+    private final ByteBuffer _buffer=ByteBuffer.allocateDirect(RECORD_SIZE*32768);
+    private final long _startNs;
+
+    /**
+     * Create a trace, overwriting the file if it exists.
+     *
+     * @param startNs The time of the start of the trace, on the System.nanoTime() clock.
+     */
+    public Writer(String file, int fieldcount, long startNs) throws IOException
+    {
+      _channel=new FileOutputStream(file).getChannel();
+      _startNs=startNs;
+      _buffer.put(MAGIC);
+      _buffer.putInt(VERSION);
+      _buffer.putInt(fieldcount);
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param timeNs The time of the operation on the System.nanoTime() clock.
+     * @param op The operation, e.g. {@link OperationTrace#READ}.
+     * @param keynum The key number.
+     * @param field The field read or written, or -1 for all of them.
+     * @param bytes The number of bytes written.
+     * @param scanlength The number of records to scan.
+     */
+    public synchronized void record(long timeNs, byte op, long keynum, int field, int bytes, int scanlength)
+        throws IOException
+    {
+      if (_buffer.remaining()<RECORD_SIZE)
+      {
+        flush();
+      }
+      _buffer.putLong(timeNs-_startNs);
+      _buffer.putLong(keynum);
+      _buffer.putInt(bytes);
+      _buffer.putInt(scanlength);
+      _buffer.putShort((short)field);
+      _buffer.put(op);
+      _buffer.put((byte)0);
+    }
+
+    private void flush() throws IOException
+    {
+      _buffer.flip();
+      while (_buffer.hasRemaining())
+      {
+        _channel.write(_buffer);
+      }
+      _buffer.clear();
+    }
+
+    /**
+     * Write the buffered records and close the trace.
+     */
+    public synchronized void close() throws IOException
+    {
+      flush();
+      _channel.close();
+    }
+  }
+
+  /**
+   * Reads the records of a trace by their index, from memory mapped from the file, so that traces larger than
+   * the heap replay without being loaded. Safe to use from several threads.
+   */
+  public static class Reader
+  {
+    /** The records in each mapping, which are limited to 2GB. */
+    private static final long RECORDS_PER_MAP=Integer.MAX_VALUE/RECORD_SIZE;
+
+    private final MappedByteBuffer[] _maps;
+    private final long _count;
+    private final int _fieldcount;
+
+    public Reader(String file) throws IOException
+    {
+      RandomAccessFile raf=new RandomAccessFile(file, "r");
+      try
+      {
+        FileChannel channel=raf.getChannel();
+        ByteBuffer header=ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && (channel.read(header)>=0))
+        {
+        }
+        header.flip();
+        byte[] magic=new byte[MAGIC.length];
+        if (header.remaining()<HEADER_SIZE)
+        {
+          throw new IOException(file+" is not a trace");
+        }
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || (header.getInt()!=VERSION))
+        {
+          throw new IOException(file+" is not a trace");
+        }
+        _fieldcount=header.getInt();
+
+        _count=(channel.size()-HEADER_SIZE)/RECORD_SIZE;
+        _maps=new MappedByteBuffer[(int)((_count+RECORDS_PER_MAP-1)/RECORDS_PER_MAP)];
+        for (int i=0; i<_maps.length; i++)
+        {
+          long first=i*RECORDS_PER_MAP;
+          long records=Math.min(RECORDS_PER_MAP, _count-first);
+          _maps[i]=channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE+first*RECORD_SIZE, records*RECORD_SIZE);
+        }
+      }
+      finally
+      {
+        // the mappings stay valid once the file is closed
+        raf.close();
+      }
+    }
+
+    /**
+     * @return The number of records.
+     */
+    public long size()
+    {
+      return _count;
+    }
+
+    /**
+     * @return The number of fields in a record.
+     */
+    public int getFieldCount()
+    {
+      return _fieldcount;
+    }
+
+    private MappedByteBuffer map(long index)
+    {
+      return _maps[(int)(index/RECORDS_PER_MAP)];
+    }
+
+    private int offset(long index)
+    {
+      return (int)(index%RECORDS_PER_MAP)*RECORD_SIZE;
+    }
+
+    /** @return The time of a record, in ns since the start of the trace. */
+    public long getTimeNs(long index)
+    {
+      return map(index).getLong(offset(index));
+    }
+
+    public long getKeynum(long index)
+    {
+      return map(index).getLong(offset(index)+8);
+    }
+
+    public int getBytes(long index)
+    {
+      return map(index).getInt(offset(index)+16);
+    }
+
+    public int getScanLength(long index)
+    {
+      return map(index).getInt(offset(index)+20);
+    }
+
+    /** @return The field of a record, or -1 for all of them. */
+    public int getField(long index)
+    {
+      return map(index).getShort(offset(index)+24);
+    }
+
+    public byte getOperation(long index)
+    {
+      return map(index).get(offset(index)+26);
+    }
+  }
+
+  /**
+   * @return The code of an operation by name, e.g. {@link #READ} for "READ".
+   * @throws IllegalArgumentException if there is no such operation.
+   */
+  public static byte parseOperation(String name)
+  {
+    for (int i=0; i<OPERATIONS.length; i++)
+    {
+      if (OPERATIONS[i].equals(name))
+      {
+        return (byte)i;
+      }
+    }
+    throw new IllegalArgumentException("unknown operation "+name);
+  }
+
+  /**
+   * Convert a trace in CSV, one "time in us,operation,key number,field,bytes written,scan length" line per
+   * operation, into a binary trace.
+   */
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length!=3)
+    {
+      System.out.println("Usage: java com.yahoo.ycsb.workloads.OperationTrace fieldcount input.csv output.trace");
+      System.out.println("Each line of the input is \"time in us,operation,key number,field,bytes written,scan length\"");
+      System.out.println("with an operation of READ, UPDATE, INSERT, SCAN, READMODIFYWRITE or DELETE, and a field of -1 for all.");
+      System.exit(0);
+    }
+    Writer writer=new Writer(args[2], Integer.parseInt(args[0]), 0);
+    BufferedReader reader=new BufferedReader(new FileReader(args[1]));
+    long records=0;
+    try
+    {
+      String line;
+      while ((line=reader.readLine())!=null)
+      {
+        line=line.trim();
+        if ((line.length()==0) || line.startsWith("#"))
+        {
+          continue;
+        }
+        String[] parts=line.split(",");
+        if (parts.length!=6)
+        {
+          throw new IOException("invalid line: "+line);
+        }
+        writer.record(Long.parseLong(parts[0].trim())*1000, parseOperation(parts[1].trim()),
+            Long.parseLong(parts[2].trim()), Integer.parseInt(parts[3].trim()), Integer.parseInt(parts[4].trim()),
+            Integer.parseInt(parts[5].trim()));
+        records++;
+      }
+    }
+    finally
+    {
+      reader.close();
+      writer.close();
+    }
+    System.out.println("Wrote "+records+" records to "+args[2]);
+  }
+}
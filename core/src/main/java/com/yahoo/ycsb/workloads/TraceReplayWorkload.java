@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.MeasurementHandle;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Replays the operations of an {@link OperationTrace}, such as one recorded by {@link CoreWorkload}, so that
+ * the same stream of operations can be run against different systems. The client threads take the
+ * operations in the order of the trace, in both the load and the transaction phase, until the trace or the
+ * operation count runs out. The trace is memory mapped rather than read into the heap.
+ *
+ * Properties to control the client:
+ * <UL>
+ * <LI><b>tracefile</b>: the trace to replay (required)
+ * <LI><b>preservetiming</b>: issue each operation at its time in the trace, measuring its latency from then,
+ * rather than as fast as possible (default: false)
+ * <LI><b>table</b>: the name of the table (default: usertable)
+ * <LI><b>insertorder</b>: whether the keys are named in order or hashed, as for CoreWorkload (default: hashed)
+ * </UL>
+ */
+public class TraceReplayWorkload extends Workload
+{
+  /**
+   * The name of the property for the trace to replay.
+   */
+  public static final String TRACE_FILE_PROPERTY="tracefile";
+
+  /**
+   * The name of the property for whether to issue each operation at its time in the trace.
+   */
+  public static final String PRESERVE_TIMING_PROPERTY="preservetiming";
+  public static final String PRESERVE_TIMING_PROPERTY_DEFAULT="false";
+
+  private OperationTrace.Reader _trace;
+  private String _table;
+  private boolean _orderedinserts;
+  private boolean _preservetiming;
+  private List<String> _fieldnames;
+
+  /** The index of the next record to replay. */
+  private final AtomicLong _next=new AtomicLong();
+  /** When the replay started, on the System.nanoTime() clock, or 0 before the first operation. */
+  private final AtomicLong _startNs=new AtomicLong();
+
+  private final Measurements _measurements=Measurements.getMeasurements();
+  private final MeasurementHandle _readModifyWrite=_measurements.getHandle("READ-MODIFY-WRITE");
+
+  @Override
+  public void init(Properties p) throws WorkloadException
+  {
+    String tracefile=p.getProperty(TRACE_FILE_PROPERTY);
+    if (tracefile==null)
+    {
+      throw new WorkloadException("Missing property \""+TRACE_FILE_PROPERTY+"\"");
+    }
+    try
+    {
+      _trace=new OperationTrace.Reader(tracefile);
+    }
+    catch (IOException e)
+    {
+      throw new WorkloadException("Couldn't read trace file: "+tracefile, e);
+    }
+    _table=p.getProperty(CoreWorkload.TABLENAME_PROPERTY, CoreWorkload.TABLENAME_PROPERTY_DEFAULT);
+    _orderedinserts=!p.getProperty(CoreWorkload.INSERT_ORDER_PROPERTY, CoreWorkload.INSERT_ORDER_PROPERTY_DEFAULT)
+        .equals("hashed");
+    _preservetiming=Boolean.parseBoolean(p.getProperty(PRESERVE_TIMING_PROPERTY, PRESERVE_TIMING_PROPERTY_DEFAULT));
+    _fieldnames=new ArrayList<String>();
+    for (int i=0; i<_trace.getFieldCount(); i++)
+    {
+      _fieldnames.add("field"+i);
+    }
+  }
+
+  @Override
+  public boolean doInsert(DB db, Object threadstate)
+  {
+    return replay(db);
+  }
+
+  @Override
+  public boolean doTransaction(DB db, Object threadstate)
+  {
+    return replay(db);
+  }
+
+  /**
+   * Replay the next operation of the trace.
+   *
+   * @return false if the trace has been replayed.
+   */
+  private boolean replay(DB db)
+  {
+    long index=_next.getAndIncrement();
+    if (index>=_trace.size())
+    {
+      return false;
+    }
+
+    if (_preservetiming)
+    {
+      _startNs.compareAndSet(0, System.nanoTime());
+      long due=_startNs.get()+_trace.getTimeNs(index);
+      long now;
+      while ((now=System.nanoTime())<due)
+      {
+        LockSupport.parkNanos(due-now);
+      }
+      _measurements.setIntendedStartTimeNs(due);
+    }
+
+    String key=CoreWorkload.buildKeyName(_trace.getKeynum(index), _orderedinserts);
+    int field=_trace.getField(index);
+    switch (_trace.getOperation(index))
+    {
+    case OperationTrace.READ:
+      db.read(_table, key, fields(field), new HashMap<String,ByteIterator>());
+      break;
+    case OperationTrace.UPDATE:
+      db.update(_table, key, values(field, _trace.getBytes(index)));
+      break;
+    case OperationTrace.INSERT:
+      db.insert(_table, key, values(field, _trace.getBytes(index)));
+      break;
+    case OperationTrace.SCAN:
+      db.scan(_table, key, _trace.getScanLength(index), fields(field), new Vector<HashMap<String,ByteIterator>>());
+      break;
+    case OperationTrace.READMODIFYWRITE:
+      HashMap<String,ByteIterator> values=values(field, _trace.getBytes(index));
+      long ist=_measurements.getIntendedtartTimeNs();
+      long st=System.nanoTime();
+      int res=db.read(_table, key, fields(field), new HashMap<String,ByteIterator>());
+      int updateres=db.update(_table, key, values);
+      long en=System.nanoTime();
+      MeasurementHandle outcome=_readModifyWrite.forReturnCode((res!=0) ? res : updateres);
+      outcome.measure((int)((en-st)/1000));
+      outcome.measureIntended((int)((en-ist)/1000));
+      break;
+    case OperationTrace.DELETE:
+      db.delete(_table, key);
+      break;
+    default:
+      System.err.println("Skipping record "+index+" of the trace, with unknown operation "+_trace.getOperation(index));
+    }
+    return true;
+  }
+
+  /**
+   * @return The one field to read, or null for all of them.
+   */
+  private Set<String> fields(int field)
+  {
+    if (field<0)
+    {
+      return null;
+    }
+    Set<String> fields=new HashSet<String>();
+    fields.add(_fieldnames.get(field));
+    return fields;
+  }
+
+  /**
+   * @return Random values of the given total size for one field, or spread over all of them.
+   */
+  private HashMap<String,ByteIterator> values(int field, int bytes)
+  {
+    HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+    if (field>=0)
+    {
+      values.put(_fieldnames.get(field), new RandomByteIterator(bytes));
+      return values;
+    }
+    int count=_fieldnames.size();
+    for (int i=0; i<count; i++)
+    {
+      values.put(_fieldnames.get(i), new RandomByteIterator(bytes/count+((i<bytes%count) ? 1 : 0)));
+    }
+    return values;
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class TestArrivalScheduler {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testFixedSpacing() {
+        ArrivalScheduler scheduler = new ArrivalScheduler(ArrivalScheduler.FIXED, TargetSchedule.constant(1000), 0);
+        long first = scheduler.nextArrivalNs();
+        assertTrue(Math.abs(System.nanoTime() - first) < 1000 * MS);
+        for (int i = 1; i < 100; i++) {
+            assertEquals(first + i * MS, scheduler.nextArrivalNs());
+        }
+    }
+
+    @Test
+    public void testPoissonMean() {
+        ArrivalScheduler scheduler = new ArrivalScheduler(ArrivalScheduler.POISSON, TargetSchedule.constant(1000), 0);
+        long first = scheduler.nextArrivalNs();
+        long last = first;
+        int shorter = 0;
+        int n = 20000;
+        for (int i = 1; i < n; i++) {
+            long arrival = scheduler.nextArrivalNs();
+            // exponential gaps: 1 - 1/e of them are shorter than the mean
+            if (arrival - last < MS) {
+                shorter++;
+            }
+            last = arrival;
+        }
+        assertEquals(1.0, (double) (last - first) / (n - 1) / MS, 0.03);
+        assertEquals(1 - Math.exp(-1), (double) shorter / (n - 1), 0.02);
+    }
+
+    @Test
+    public void testOpcountCap() {
+        ArrivalScheduler scheduler = new ArrivalScheduler(ArrivalScheduler.FIXED, TargetSchedule.constant(1000), 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(scheduler.nextArrivalNs() >= 0);
+        }
+        assertEquals(-1, scheduler.nextArrivalNs());
+        assertEquals(-1, scheduler.nextArrivalNs());
+    }
+
+    @Test
+    public void testFollowsTheScheduleAcrossGapsToItsEnd() {
+        ArrivalScheduler scheduler = new ArrivalScheduler(ArrivalScheduler.FIXED,
+                TargetSchedule.parse("0-1s:10,2-2.5s:10"), 0);
+        long first = scheduler.nextArrivalNs();
+        for (int i = 1; i < 10; i++) {
+            assertEquals(first + i * 100 * MS, scheduler.nextArrivalNs());
+        }
+        for (int i = 20; i < 25; i++) {
+            assertEquals(first + i * 100 * MS, scheduler.nextArrivalNs());
+        }
+        assertEquals(-1, scheduler.nextArrivalNs());
+    }
+
+    @Test
+    public void testTokenBucketDropsArrivalsPastTheBurst() throws Exception {
+        ArrivalScheduler fixed = new ArrivalScheduler(ArrivalScheduler.FIXED, TargetSchedule.constant(1000), 0);
+        ArrivalScheduler bucket = new ArrivalScheduler(ArrivalScheduler.TOKEN_BUCKET, TargetSchedule.constant(1000),
+                0, 10 * MS);
+        long fixedFirst = fixed.nextArrivalNs();
+        long bucketFirst = bucket.nextArrivalNs();
+        Thread.sleep(50);
+
+        // the fixed schedule issues the missed arrivals back to back
+        assertEquals(fixedFirst + MS, fixed.nextArrivalNs());
+        // the bucket skips to no more than the burst behind the present, then keeps the spacing
+        long now = System.nanoTime();
+        long next = bucket.nextArrivalNs();
+        assertTrue(next >= now - 10 * MS);
+        assertTrue(next - bucketFirst >= 40 * MS);
+        assertEquals(next + MS, bucket.nextArrivalNs());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsUnknownProcess() {
+        new ArrivalScheduler("uniform", TargetSchedule.constant(1000), 0);
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+public class TestAsyncDBWrapper {
+    /** Leaves every operation pending until the test completes it. */
+    private static class PendingDB extends AsyncDB {
+        final List<DBFuture> pending = new CopyOnWriteArrayList<DBFuture>();
+
+        private DBFuture issue() {
+            DBFuture future = new DBFuture();
+            pending.add(future);
+            return future;
+        }
+
+        public DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String, ByteIterator> result) {
+            return issue();
+        }
+
+        public DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields,
+                Vector<HashMap<String, ByteIterator>> result) {
+            return issue();
+        }
+
+        public DBFuture updateAsync(String table, String key, HashMap<String, ByteIterator> values) {
+            return issue();
+        }
+
+        public DBFuture insertAsync(String table, String key, HashMap<String, ByteIterator> values) {
+            return issue();
+        }
+
+        public DBFuture deleteAsync(String table, String key) {
+            return issue();
+        }
+    }
+
+    private static class MapExporter implements MeasurementsExporter {
+        final Map<String, Double> values = new HashMap<String, Double>();
+
+        public void write(String metric, String measurement, int i) {
+            values.put(metric + " " + measurement, (double) i);
+        }
+
+        public void write(String metric, String measurement, double d) {
+            values.put(metric + " " + measurement, d);
+        }
+
+        public void close() {
+        }
+    }
+
+    /** @return The exported count of a return code, e.g. "UPDATE Return=0", or null if none was reported. */
+    private static Double exported(Measurements measurements, String name) throws Exception {
+        MapExporter exporter = new MapExporter();
+        measurements.exportMeasurements(exporter);
+        return exporter.values.get(name);
+    }
+
+    private static Properties inflight(int limit) {
+        Properties props = new Properties();
+        props.setProperty(AsyncDBWrapper.MAX_IN_FLIGHT_PROPERTY, Integer.toString(limit));
+        return props;
+    }
+
+    private static void waitFor(PendingDB db, int issued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((db.pending.size() < issued) && (System.nanoTime() < deadline)) {
+            Thread.sleep(1);
+        }
+        assertEquals(issued, db.pending.size());
+    }
+
+    @Test
+    public void testBlocksAtTheInFlightLimit() throws Exception {
+        final PendingDB db = new PendingDB();
+        final AsyncDBWrapper wrapper = new AsyncDBWrapper(db, inflight(2), new Measurements(new Properties()));
+        Thread client = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 3; i++) {
+                    wrapper.delete("usertable", "user" + i);
+                }
+            }
+        };
+        client.start();
+        waitFor(db, 2);
+        Thread.sleep(50);
+        // the third delete waits for a slot
+        assertEquals(2, db.pending.size());
+        assertTrue(client.isAlive());
+
+        db.pending.get(0).complete(0);
+        waitFor(db, 3);
+        client.join(10000);
+        assertTrue(!client.isAlive());
+    }
+
+    @Test
+    public void testMeasuresAndReleasesOnCompletion() throws Exception {
+        PendingDB db = new PendingDB();
+        Measurements measurements = new Measurements(new Properties());
+        AsyncDBWrapper wrapper = new AsyncDBWrapper(db, inflight(2), measurements);
+        assertEquals(0, wrapper.update("usertable", "user1", new HashMap<String, ByteIterator>()));
+        assertEquals(1, wrapper._inflight.availablePermits());
+        assertNull(exported(measurements, "UPDATE Return=0"));
+
+        db.pending.get(0).complete(0);
+        assertEquals(2, wrapper._inflight.availablePermits());
+        assertEquals(1.0, exported(measurements, "UPDATE Return=0"));
+    }
+
+    @Test
+    public void testReturnsTheCodeWhenAlreadyComplete() {
+        AsyncDB db = new PendingDB() {
+            @Override
+            public DBFuture insertAsync(String table, String key, HashMap<String, ByteIterator> values) {
+                return DBFuture.completed(-3);
+            }
+        };
+        AsyncDBWrapper wrapper = new AsyncDBWrapper(db, inflight(4), new Measurements(new Properties()));
+        assertEquals(-3, wrapper.insert("usertable", "user1", new HashMap<String, ByteIterator>()));
+        assertEquals(4, wrapper._inflight.availablePermits());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsDataIntegrityWhilePipelining() {
+        Properties props = inflight(8);
+        props.setProperty(CoreWorkload.DATA_INTEGRITY_PROPERTY, "true");
+        new AsyncDBWrapper(new PendingDB(), props, new Measurements(new Properties()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsReadModifyWriteWhilePipelining() {
+        Properties props = inflight(8);
+        props.setProperty(CoreWorkload.READMODIFYWRITE_PROPORTION_PROPERTY, "0.1");
+        new AsyncDBWrapper(new PendingDB(), props, new Measurements(new Properties()));
+    }
+}
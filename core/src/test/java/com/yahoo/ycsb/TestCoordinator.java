@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.HdrHistogram.Histogram;
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+public class TestCoordinator {
+    private static Coordinator.Hello hello(boolean dotransactions, long opcount, long insertstart, int target) {
+        Coordinator.Hello hello = new Coordinator.Hello();
+        hello._dotransactions = dotransactions;
+        hello._opcount = opcount;
+        hello._insertstart = insertstart;
+        hello._target = target;
+        return hello;
+    }
+
+    private static List<Coordinator.Hello> hellos(int agents, Coordinator.Hello hello) {
+        return new ArrayList<Coordinator.Hello>(Collections.nCopies(agents, hello));
+    }
+
+    @Test
+    public void testSplitsTransactions() {
+        List<Properties> split = Coordinator.split(hellos(3, hello(true, 10, 0, 100)));
+        assertEquals(3, split.size());
+        for (int i = 0; i < 3; i++) {
+            Properties p = split.get(i);
+            assertEquals(i == 0 ? "4" : "3", p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+            assertEquals(i == 0 ? "34" : "33", p.getProperty(Client.TARGET_PROPERTY));
+            assertEquals(Integer.toString(i), p.getProperty(CoreWorkload.TRANSACTION_INSERT_OFFSET_PROPERTY));
+            assertEquals("3", p.getProperty(CoreWorkload.TRANSACTION_INSERT_STRIDE_PROPERTY));
+            assertEquals("hdrhistogram", p.getProperty("measurementtype"));
+        }
+    }
+
+    @Test
+    public void testSplitsLoadIntoConsecutiveRanges() {
+        List<Properties> split = Coordinator.split(hellos(3, hello(false, 10, 5, 0)));
+        assertEquals("5", split.get(0).getProperty("insertstart"));
+        assertEquals("4", split.get(0).getProperty(Client.INSERT_COUNT_PROPERTY));
+        assertEquals("9", split.get(1).getProperty("insertstart"));
+        assertEquals("3", split.get(1).getProperty(Client.INSERT_COUNT_PROPERTY));
+        assertEquals("12", split.get(2).getProperty("insertstart"));
+        assertEquals(null, split.get(2).getProperty(Client.TARGET_PROPERTY));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsAgentsAskedForDifferentRuns() {
+        List<Coordinator.Hello> hellos = hellos(2, hello(true, 10, 0, 100));
+        hellos.add(hello(true, 20, 0, 100));
+        Coordinator.split(hellos);
+    }
+
+    @Test
+    public void testReadsWhatAnAgentWrites() throws Exception {
+        Coordinator coordinator = new Coordinator(1);
+        ServerSocket server = new ServerSocket(0);
+        Socket socket = new Socket("localhost", server.getLocalPort());
+        Coordinator.Agent agent = coordinator.new Agent(0, server.accept());
+        server.close();
+
+        Histogram interval = new Histogram(3);
+        interval.recordValue(100);
+        interval.recordValue(300);
+        Map<Integer, Integer> codes = new TreeMap<Integer, Integer>();
+        codes.put(0, 7);
+        codes.put(-1, 2);
+        Map<String, Map<Integer, Integer>> returncodes = new TreeMap<String, Map<Integer, Integer>>();
+        returncodes.put("READ", codes);
+
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        Coordinator.writeHello(out, hello(true, 9, 3, 50));
+        Coordinator.writeInterval(out, "READ", interval);
+        out.writeByte(Coordinator.PROGRESS);
+        out.writeLong(5);
+        Coordinator.writeReturnCodes(out, returncodes);
+        out.writeByte(Coordinator.DONE);
+        out.writeLong(9);
+        out.writeLong(1234);
+        out.flush();
+        socket.close();
+
+        agent.readHello();
+        assertTrue(agent._hello.agrees(hello(true, 9, 3, 50)));
+        agent.run();
+        assertEquals(9, agent._opsdone);
+        assertEquals(1234, agent._runtimeMs);
+        assertEquals(2, coordinator._interval.get("READ").getTotalCount());
+        assertEquals(300, coordinator._interval.get("READ").getMaxValue(), 1);
+        assertEquals(codes, coordinator._returncodes.get("READ"));
+    }
+}
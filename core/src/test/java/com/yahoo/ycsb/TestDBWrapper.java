@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+public class TestDBWrapper {
+    /** Reads a single field holding the key, and fails the keys starting with "bad". */
+    private static class KeyDB extends DB {
+        final List<String> calls = new ArrayList<String>();
+
+        public int read(String table, String key, Set<String> fields, HashMap<String, ByteIterator> result) {
+            calls.add("read " + key);
+            result.put("field0", new StringByteIterator(key));
+            return key.startsWith("bad") ? -1 : 0;
+        }
+
+        public int scan(String table, String startkey, int recordcount, Set<String> fields,
+                Vector<HashMap<String, ByteIterator>> result) {
+            return 0;
+        }
+
+        public int update(String table, String key, HashMap<String, ByteIterator> values) {
+            calls.add("update " + key);
+            return 0;
+        }
+
+        public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+            calls.add("insert " + key);
+            return key.startsWith("bad") ? -2 : 0;
+        }
+
+        public int delete(String table, String key) {
+            calls.add("delete " + key);
+            return 0;
+        }
+    }
+
+    private static class MapExporter implements MeasurementsExporter {
+        final Map<String, Double> values = new HashMap<String, Double>();
+
+        public void write(String metric, String measurement, int i) {
+            values.put(metric + " " + measurement, (double) i);
+        }
+
+        public void write(String metric, String measurement, double d) {
+            values.put(metric + " " + measurement, d);
+        }
+
+        public void close() {
+        }
+    }
+
+    private static List<HashMap<String, ByteIterator>> maps(int n) {
+        List<HashMap<String, ByteIterator>> maps = new ArrayList<HashMap<String, ByteIterator>>();
+        for (int i = 0; i < n; i++) {
+            maps.add(new HashMap<String, ByteIterator>());
+        }
+        return maps;
+    }
+
+    @Test
+    public void testDefaultBatchesIssueEachRecord() {
+        KeyDB db = new KeyDB();
+        List<HashMap<String, ByteIterator>> results = maps(3);
+        assertEquals(-1, db.batchRead("usertable", Arrays.asList("a", "bad1", "c"), null, results));
+        assertEquals("c", results.get(2).get("field0").toString());
+        assertEquals(-2, db.batchInsert("usertable", Arrays.asList("bad2", "bad3"), maps(2)));
+        assertEquals(0, db.batchUpdate("usertable", Arrays.asList("d"), maps(1)));
+        assertEquals(0, db.batchDelete("usertable", Arrays.asList("e", "f")));
+        assertEquals(Arrays.asList("read a", "read bad1", "read c", "insert bad2", "insert bad3", "update d",
+                "delete e", "delete f"), db.calls);
+    }
+
+    @Test
+    public void testBatchRecordsMeasuredApart() throws Exception {
+        Measurements measurements = new Measurements(new Properties());
+        DBWrapper wrapper = new DBWrapper(new KeyDB(), measurements);
+        wrapper.batchRead("usertable", Arrays.asList("a", "b", "c"), null, maps(3));
+        wrapper.read("usertable", "d", null, new HashMap<String, ByteIterator>());
+
+        MapExporter exporter = new MapExporter();
+        measurements.exportMeasurements(exporter);
+        assertEquals(1.0, exporter.values.get("BATCH-READ Return=0"));
+        assertEquals(3.0, exporter.values.get("READ-ITEM Return=0"));
+        // only the single read, not the reads the default batch issued through the wrapped DB
+        assertEquals(1.0, exporter.values.get("READ Return=0"));
+    }
+
+    @Test
+    public void testMeasuresFailuresApartOnlyWhenAsked() {
+        Measurements measurements = new Measurements(new Properties());
+        DBWrapper wrapper = new DBWrapper(new KeyDB(), measurements);
+        wrapper.read("usertable", "bad1", null, new HashMap<String, ByteIterator>());
+        assertEquals(Integer.valueOf(1), measurements.getReturnCodes().get("READ").get(-1));
+        assertFalse(measurements.getReturnCodes().containsKey("READ" + Measurements.FAILED_SUFFIX));
+
+        Properties props = new Properties();
+        props.setProperty(Measurements.SPLIT_FAILURES_PROPERTY, "true");
+        measurements = new Measurements(props);
+        wrapper = new DBWrapper(new KeyDB(), measurements);
+        wrapper.read("usertable", "a", null, new HashMap<String, ByteIterator>());
+        wrapper.read("usertable", "bad1", null, new HashMap<String, ByteIterator>());
+        wrapper.insert("usertable", "bad2", new HashMap<String, ByteIterator>());
+
+        Map<String, Map<Integer, Integer>> codes = measurements.getReturnCodes();
+        assertEquals(1, codes.get("READ").size());
+        assertEquals(Integer.valueOf(1), codes.get("READ").get(0));
+        assertEquals(Integer.valueOf(1), codes.get("READ-FAILED").get(-1));
+        assertEquals(Integer.valueOf(1), codes.get("INSERT-FAILED").get(-2));
+        assertFalse(codes.containsKey("INSERT"));
+    }
+
+    /** Consumes the values it writes, as a DB sending them over the network does. */
+    private static class ConsumingDB extends KeyDB {
+        public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+            for (ByteIterator value : values.values()) {
+                value.toArray();
+            }
+            return super.insert(table, key, values);
+        }
+    }
+
+    @Test
+    public void testCountsBytesBeforeTheyAreConsumed() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(Measurements.BYTES_PROPERTY, "true");
+        Measurements measurements = new Measurements(props);
+        DBWrapper wrapper = new DBWrapper(new ConsumingDB(), measurements);
+        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+        values.put("field0", new RandomByteIterator(100));
+        values.put("field1", new RandomByteIterator(50));
+        wrapper.insert("usertable", "a", values);
+        assertEquals(0, values.get("field0").bytesLeft());
+        wrapper.read("usertable", "abc", null, new HashMap<String, ByteIterator>());
+        wrapper.insert("usertable", "bad1", new HashMap<String, ByteIterator>(values));
+
+        MapExporter exporter = new MapExporter();
+        measurements.exportMeasurements(exporter);
+        // only the successful insert
+        assertEquals(1.0, exporter.values.get("INSERT-BYTES Operations"));
+        assertEquals(150.0, exporter.values.get("INSERT-BYTES TotalBytes"));
+        assertEquals(3.0, exporter.values.get("READ-BYTES TotalBytes"));
+    }
+
+    @Test
+    public void testBatchRecordsWaitForTheWholeBatch() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+        props.setProperty(Measurements.MEASUREMENT_INTERVAL, "both");
+        Measurements measurements = new Measurements(props);
+        DBWrapper wrapper = new DBWrapper(new KeyDB(), measurements);
+        // intended at 1ms, started at 2ms, done at 6ms
+        wrapper.measureBatch(wrapper._batchRead, wrapper._readItem, 4, 0, 1000000, 2000000, 6000000);
+
+        MapExporter exporter = new MapExporter();
+        measurements.exportMeasurements(exporter);
+        assertEquals(4.0, exporter.values.get("READ-ITEM Operations"));
+        assertEquals(1000.0, exporter.values.get("READ-ITEM AverageLatency(us)"), 1.0);
+        assertEquals(5000.0, exporter.values.get("Intended-READ-ITEM AverageLatency(us)"), 5.0);
+        assertEquals(4000.0, exporter.values.get("BATCH-READ AverageLatency(us)"), 4.0);
+        assertFalse(exporter.values.containsKey("READ Operations"));
+    }
+}
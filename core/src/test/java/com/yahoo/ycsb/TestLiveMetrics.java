@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestLiveMetrics {
+    private static Histogram interval(long... latencies) {
+        Histogram histogram = new Histogram(3);
+        for (long latency : latencies) {
+            histogram.recordValue(latency);
+        }
+        return histogram;
+    }
+
+    private static class StoppableWorkload extends Workload {
+        public boolean doInsert(DB db, Object threadstate) {
+            return true;
+        }
+
+        public boolean doTransaction(DB db, Object threadstate) {
+            return true;
+        }
+    }
+
+    private static int status(HttpServer server, String method, String path) throws Exception {
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void testRotatesWindowsWhenIntervalsAreTaken() {
+        LiveMetrics metrics = new LiveMetrics(null, new Measurements(new Properties()));
+        metrics.intervalHistogram("READ", interval(100, 200));
+        metrics.intervalsTaken();
+        metrics.intervalHistogram("READ", interval(300, 400, 500));
+
+        LiveMetrics.OperationMetrics read = metrics.getOperations().get("READ");
+        // the current window is only published once it is complete
+        assertEquals(2, read.getCurrent().getCount());
+        assertEquals(200, read.getCurrent().getMax(), 1);
+        assertEquals(5, read.getTotal().getCount());
+
+        metrics.intervalsTaken();
+        read = metrics.getOperations().get("READ");
+        assertEquals(3, read.getCurrent().getCount());
+        assertEquals(300, read.getCurrent().getMin());
+
+        metrics.intervalsTaken();
+        assertEquals(0, metrics.getOperations().get("READ").getCurrent().getCount());
+        assertEquals(5, metrics.getOperations().get("READ").getTotal().getCount());
+    }
+
+    @Test
+    public void testWritesJson() throws Exception {
+        Measurements measurements = new Measurements(new Properties());
+        measurements.reportReturnCode("READ", 0);
+        LiveMetrics metrics = new LiveMetrics(null, measurements);
+        metrics.intervalHistogram("READ", interval(100, 200, 300, 400));
+        metrics.intervalsTaken();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.writeJson(out);
+        JsonNode json = new ObjectMapper().readTree(out.toString("UTF-8"));
+        assertTrue(json.get("elapsedMs").isNumber());
+        JsonNode read = json.get("operations").get("READ");
+        assertEquals(4, read.get("current").get("count").getLongValue());
+        assertEquals(100, read.get("current").get("min").getLongValue());
+        assertEquals(400, read.get("total").get("max").getLongValue(), 1);
+        assertEquals(200, read.get("total").get("p50").getLongValue(), 1);
+        assertEquals(1, read.get("returnCodes").get("0").getIntValue());
+    }
+
+    @Test
+    public void testStopsOnlyWhenEnabled() throws Exception {
+        StoppableWorkload workload = new StoppableWorkload();
+        LiveMetrics metrics = new LiveMetrics(workload, new Measurements(new Properties()));
+        HttpServer server = metrics.serve("localhost", 0, false);
+        try {
+            assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+            assertEquals(200, status(server, "GET", "/metrics"));
+            assertEquals(404, status(server, "POST", "/stop"));
+            assertTrue(!workload.isStopRequested());
+        } finally {
+            server.stop(0);
+        }
+
+        server = metrics.serve("localhost", 0, true);
+        try {
+            assertEquals(405, status(server, "GET", "/stop"));
+            assertEquals(200, status(server, "POST", "/stop"));
+            assertTrue(workload.isStopRequested());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.RunComparison.Statistic;
+
+public class TestRunComparison {
+    private static int compare(Statistic before, Statistic after) {
+        Map<String, Statistic> baseline = new TreeMap<String, Statistic>();
+        Map<String, Statistic> candidate = new TreeMap<String, Statistic>();
+        baseline.put("[READ] p99(us)", before);
+        candidate.put("[READ] p99(us)", after);
+        return RunComparison.compare(baseline, candidate, 0.05, new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testThreshold() {
+        assertEquals(0, compare(new Statistic(1000, Double.NaN, true), new Statistic(1040, Double.NaN, true)));
+        assertEquals(1, compare(new Statistic(1000, Double.NaN, true), new Statistic(1060, Double.NaN, true)));
+        assertEquals(0, compare(new Statistic(1000, Double.NaN, true), new Statistic(500, Double.NaN, true)));
+        // throughput regresses when it drops
+        assertEquals(1, compare(new Statistic(1000, Double.NaN, false), new Statistic(900, Double.NaN, false)));
+        assertEquals(0, compare(new Statistic(1000, Double.NaN, false), new Statistic(1100, Double.NaN, false)));
+    }
+
+    @Test
+    public void testConfidenceInterval() {
+        // +10%, but within the noise of the runs
+        assertEquals(0, compare(new Statistic(1000, 50, true), new Statistic(1100, 50, true)));
+        assertEquals(1, compare(new Statistic(1000, 10, true), new Statistic(1100, 10, true)));
+    }
+
+    /** Writes a log of intervals of 1000 latencies each, uniform over [100, 100 + one of the spreads). */
+    private static Map<String, Statistic> loadLog(int intervals, int[] spreads) throws Exception {
+        File dir = File.createTempFile("comparison", "");
+        dir.delete();
+        dir.mkdir();
+        // deleted in the reverse order
+        dir.deleteOnExit();
+        File file = new File(dir, "READ.hdr");
+        file.deleteOnExit();
+        PrintStream log = new PrintStream(file);
+        HistogramLogWriter writer = new HistogramLogWriter(log);
+        writer.outputLogFormatVersion();
+        writer.outputLegend();
+        Random random = new Random(1);
+        for (int i = 0; i < intervals; i++) {
+            Histogram interval = new Histogram(3);
+            int spread = spreads[random.nextInt(spreads.length)];
+            for (int j = 0; j < 1000; j++) {
+                interval.recordValue(100 + random.nextInt(spread));
+            }
+            interval.setStartTimeStamp(1000L * i);
+            interval.setEndTimeStamp(1000L * (i + 1));
+            writer.outputIntervalHistogram(interval);
+        }
+        log.close();
+        Map<String, Statistic> statistics = new TreeMap<String, Statistic>();
+        RunComparison.loadHdr(file, new double[] {50, 99}, statistics);
+        return statistics;
+    }
+
+    @Test
+    public void testBootstrapsPercentilesOverIntervals() throws Exception {
+        Statistic single = loadLog(1, new int[] {1000}).get("[READ] p99(us)");
+        assertEquals(1090, single._value, 10);
+        assertTrue(Double.isNaN(single._stderr));
+
+        Map<String, Statistic> steady = loadLog(60, new int[] {1000});
+        assertEquals(1090, steady.get("[READ] p99(us)")._value, 10);
+        assertTrue(steady.get("[READ] p99(us)")._stderr > 0);
+        assertTrue(steady.get("[READ] p99(us)")._stderr < 5);
+        assertTrue(steady.get("[READ] Average(us)")._stderr < 5);
+
+        // some intervals are far slower, so which intervals are drawn moves the merged median
+        Map<String, Statistic> uneven = loadLog(60, new int[] {500, 2000});
+        assertTrue(uneven.get("[READ] p50(us)")._stderr > 5 * steady.get("[READ] p50(us)")._stderr);
+    }
+
+    @Test
+    public void testStderr() {
+        assertEquals(Double.NaN, RunComparison.stderr(Arrays.asList(1.0)));
+        assertEquals(1.0, RunComparison.stderr(Arrays.asList(1.0, 3.0)), 1e-9);
+    }
+}
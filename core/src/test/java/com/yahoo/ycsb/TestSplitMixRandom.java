@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+
+public class TestSplitMixRandom {
+    /** Draws keys as a client thread with the given stream does. */
+    private static List<Long> keys(final int stream) throws Exception {
+        final List<Long> keys = new ArrayList<Long>();
+        Thread thread = new Thread() {
+            public void run() {
+                Utils.seedThread(stream);
+                UniformIntegerGenerator chooser = new UniformIntegerGenerator(0, 1000000000L);
+                for (int i = 0; i < 100; i++) {
+                    keys.add(chooser.nextLong());
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        return keys;
+    }
+
+    @Test
+    public void testSeededStreamsRepeatAndDiffer() throws Exception {
+        Utils.setSeed(42);
+        List<Long> first = keys(3);
+        assertEquals(100, first.size());
+        assertEquals(first, keys(3));
+        assertFalse(first.equals(keys(4)));
+
+        Utils.setSeed(43);
+        assertFalse(first.equals(keys(3)));
+    }
+
+    @Test
+    public void testStreamSeedsDiffer() {
+        assertEquals(SplitMixRandom.streamSeed(42, 0), SplitMixRandom.streamSeed(42, 0));
+        assertFalse(SplitMixRandom.streamSeed(42, 0) == SplitMixRandom.streamSeed(42, 1));
+        assertFalse(SplitMixRandom.streamSeed(42, 0) == SplitMixRandom.streamSeed(43, 0));
+
+        SplitMixRandom a = new SplitMixRandom(SplitMixRandom.streamSeed(42, 0));
+        SplitMixRandom b = new SplitMixRandom(SplitMixRandom.streamSeed(42, 0));
+        for (int i = 0; i < 100; i++) {
+            double d = a.nextDouble();
+            assertEquals(d, b.nextDouble());
+            assertTrue((d >= 0) && (d < 1));
+        }
+    }
+}
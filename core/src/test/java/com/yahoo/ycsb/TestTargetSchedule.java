@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class TestTargetSchedule {
+    private static final long SEC = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testStepsAndRamp() {
+        TargetSchedule schedule = TargetSchedule.parse("0-300s:10k, 300-10m:1k-3k, 20m-1h:2m");
+
+        assertEquals(3, schedule.getStages().size());
+        assertEquals(10000.0, schedule.rateAt(0), 0.0);
+        assertEquals(10000.0, schedule.rateAt(299 * SEC), 0.0);
+        assertEquals(1000.0, schedule.rateAt(300 * SEC), 0.0);
+        assertEquals(2000.0, schedule.rateAt(450 * SEC), 0.001);
+        assertEquals(0.0, schedule.rateAt(15 * 60 * SEC), 0.0);
+        assertEquals(2000000.0, schedule.rateAt(30 * 60 * SEC), 0.0);
+        assertEquals(-1, schedule.stageAt(15 * 60 * SEC));
+        assertEquals(3600 * SEC, schedule.getEndNs());
+    }
+
+    @Test
+    public void testNextSkipsGapsAndEnds() {
+        TargetSchedule schedule = TargetSchedule.parse("0-1:10,2-3:0,4-5:1");
+
+        assertEquals(SEC / 10, schedule.nextNs(0, 1));
+        assertEquals(4 * SEC, schedule.nextNs(1 * SEC, 1));
+        assertEquals(-1, schedule.nextNs(4 * SEC, 1));
+    }
+
+    @Test
+    public void testRampFromZero() {
+        TargetSchedule schedule = TargetSchedule.parse("0-600s:0-50k");
+
+        // the ramp has issued one op once 50000/600*t*t/2 = 1
+        long first = schedule.nextNs(0, 1);
+        assertEquals(Math.sqrt(2 * 600 / 50000.0) * SEC, first, 1000.0);
+        assertTrue(schedule.nextNs(first, 1) > first);
+        // at the end of the ramp the ops are 20us apart
+        assertEquals(599 * SEC + 20000, schedule.nextNs(599 * SEC, 1), 100.0);
+    }
+
+    @Test
+    public void testRampFromZeroAfterAStage() {
+        TargetSchedule schedule = TargetSchedule.parse("0-60s:100,60-600s:0-50k");
+
+        assertEquals(59 * SEC + SEC / 100, schedule.nextNs(59 * SEC, 1));
+        // the op due half a gap before the first stage ends carries half an op into the ramp
+        long next = schedule.nextNs(60 * SEC - SEC / 200, 1);
+        assertEquals(60 * SEC + Math.sqrt(2 * 0.5 * 540 / 50000.0) * SEC, next, 1000.0);
+        assertTrue(schedule.nextNs(next, 1) > next);
+    }
+
+    @Test
+    public void testScale() {
+        TargetSchedule schedule = TargetSchedule.parse("0-10s:100-200").scale(0.5);
+
+        assertEquals(50.0, schedule.rateAt(0), 0.0);
+        assertEquals(75.0, schedule.rateAt(5 * SEC), 0.001);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOverlappingStages() {
+        TargetSchedule.parse("0-10s:100,5-20s:200");
+    }
+}
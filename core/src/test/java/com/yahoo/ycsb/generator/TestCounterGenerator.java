@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class TestCounterGenerator {
+    @Test
+    public void testStepsFromItsStart() {
+        CounterGenerator counter = new CounterGenerator(100, 3);
+        assertEquals(99, counter.lastLong());
+        assertEquals(100, counter.nextLong());
+        assertEquals(103, counter.nextLong());
+        assertEquals(103, counter.lastLong());
+    }
+
+    @Test
+    public void testLastValueBeforeAnOffsetStart() {
+        // the third of three clients inserting past 100 loaded keys
+        CounterGenerator counter = new CounterGenerator(102, 3, 99);
+        assertEquals(99, counter.lastLong());
+        assertEquals(102, counter.nextLong());
+        assertEquals(102, counter.lastLong());
+    }
+}
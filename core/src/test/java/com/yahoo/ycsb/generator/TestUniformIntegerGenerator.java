@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class TestUniformIntegerGenerator {
+    @Test
+    public void testBeyondIntRange() {
+        long min = 5000000000L;
+        long max = 9000000000L;
+        UniformIntegerGenerator uniform = new UniformIntegerGenerator(min, max);
+
+        for (int i = 0; i < 10000; i++) {
+            long rnd = uniform.nextLong();
+            assertFalse(rnd < min);
+            assertFalse(rnd > max);
+        }
+    }
+
+    @Test
+    public void testIntRangeMatchesNextInt() {
+        Random a = new Random(42);
+        Random b = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.nextInt(1000), UniformIntegerGenerator.nextLong(b, 1000));
+        }
+    }
+}
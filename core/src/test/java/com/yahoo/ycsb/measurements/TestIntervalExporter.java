@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+public class TestIntervalExporter {
+    private static File file() throws Exception {
+        File file = File.createTempFile("intervals", ".txt");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static IntervalExporter exporter(File file, String format, String percentiles) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(IntervalExporter.FILE_PROPERTY, file.getPath());
+        props.setProperty(IntervalExporter.FORMAT_PROPERTY, format);
+        if (percentiles != null) {
+            props.setProperty(IntervalExporter.PERCENTILES_PROPERTY, percentiles);
+        }
+        return new IntervalExporter(props);
+    }
+
+    /** An interval of 2s ending at 5000ms since the epoch, of the latencies 1 to n us. */
+    private static Histogram interval(int n) {
+        Histogram interval = new Histogram(3);
+        for (int i = 1; i <= n; i++) {
+            interval.recordValue(i);
+        }
+        interval.setStartTimeStamp(3000);
+        interval.setEndTimeStamp(5000);
+        return interval;
+    }
+
+    private static List<String> lines(File file) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void testWritesJsonLinesOncePerInterval() throws Exception {
+        File file = file();
+        IntervalExporter exporter = exporter(file, "json", " 50, 99.9 ");
+        exporter.intervalHistogram("READ", interval(100));
+        exporter.intervalHistogram("UPDATE", interval(10));
+        assertEquals(0, file.length());
+
+        exporter.intervalsTaken();
+        List<String> lines = lines(file);
+        assertEquals(2, lines.size());
+        JsonNode read = new ObjectMapper().readTree(lines.get(0));
+        assertEquals(5000, read.get("time").getLongValue());
+        assertEquals("READ", read.get("operation").getTextValue());
+        assertEquals(100, read.get("count").getLongValue());
+        assertEquals(50.0, read.get("throughput").getDoubleValue(), 0.0);
+        assertEquals(1, read.get("min").getLongValue());
+        assertEquals(50.5, read.get("mean").getDoubleValue(), 0.01);
+        assertEquals(100, read.get("max").getLongValue());
+        assertEquals(50, read.get("p50").getLongValue());
+        assertEquals(100, read.get("p99.9").getLongValue());
+        assertEquals("UPDATE", new ObjectMapper().readTree(lines.get(1)).get("operation").getTextValue());
+
+        exporter.intervalHistogram("READ", interval(0));
+        exporter.close();
+        lines = lines(file);
+        assertEquals(3, lines.size());
+        JsonNode empty = new ObjectMapper().readTree(lines.get(2));
+        assertEquals(0, empty.get("count").getLongValue());
+        assertEquals(0.0, empty.get("mean").getDoubleValue(), 0.0);
+    }
+
+    @Test
+    public void testWritesCsvRows() throws Exception {
+        File file = file();
+        IntervalExporter exporter = exporter(file, "csv", "50,99");
+        exporter.intervalHistogram("READ", interval(0));
+        exporter.intervalHistogram("INSERT", interval(4));
+        exporter.close();
+
+        List<String> lines = lines(file);
+        assertEquals("time,operation,count,throughput,min,mean,max,p50,p99", lines.get(0));
+        assertEquals("5000,READ,0,0.0,0,0.0,0,0,0", lines.get(1));
+        assertEquals("5000,INSERT,4,2.0,1,2.5,4,2,4", lines.get(2));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsUnknownFormat() throws Exception {
+        exporter(file(), "xml", null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsUnparsablePercentile() throws Exception {
+        exporter(file(), "json", "50,p99");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsPercentileOverHundred() throws Exception {
+        exporter(file(), "csv", "50,101");
+    }
+}
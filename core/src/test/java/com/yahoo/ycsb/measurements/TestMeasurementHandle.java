@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+public class TestMeasurementHandle {
+    @Test
+    public void testFollowsScopes() {
+        Measurements measurements = new Measurements(new Properties());
+        MeasurementHandle read = measurements.getHandle("READ");
+        read.measure(10);
+        read.reportReturnCode(0);
+        measurements.startScope("STAGE2");
+        read.measure(10);
+        read.reportReturnCode(-1);
+        read.reportReturnCode(1000);
+        measurements.reportReturnCode("READ", 1000);
+
+        Map<String, Map<Integer, Integer>> codes = measurements.getReturnCodes();
+        assertEquals(1, codes.get("READ").size());
+        assertEquals(Integer.valueOf(1), codes.get("READ").get(0));
+        assertEquals(2, codes.get("STAGE2-READ").size());
+        assertEquals(Integer.valueOf(1), codes.get("STAGE2-READ").get(-1));
+        assertEquals(Integer.valueOf(2), codes.get("STAGE2-READ").get(1000));
+    }
+
+    @Test
+    public void testCreatesMeasurementsOnFirstUse() {
+        Measurements measurements = new Measurements(new Properties());
+        measurements.getHandle("CUSTOM-OP");
+        assertFalse(measurements.getReturnCodes().containsKey("CUSTOM-OP"));
+        measurements.getHandle("CUSTOM-OP").reportReturnCode(0);
+        assertEquals(Integer.valueOf(1), measurements.getReturnCodes().get("CUSTOM-OP").get(0));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+public class TestOneMeasurementBytes {
+    private static class MapExporter implements MeasurementsExporter {
+        final Map<String, Double> values = new HashMap<String, Double>();
+
+        public void write(String metric, String measurement, int i) {
+            values.put(measurement, (double) i);
+        }
+
+        public void write(String metric, String measurement, double d) {
+            values.put(measurement, d);
+        }
+
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testThroughputInMBPerSecond() throws Exception {
+        OneMeasurementBytes bytes = new OneMeasurementBytes("READ-BYTES");
+        bytes.measureBytes(1024 * 1024);
+        bytes.measureBytes(2 * 1024 * 1024);
+        Thread.sleep(20);
+        MapExporter exporter = new MapExporter();
+        bytes.exportMeasurements(exporter);
+
+        long periodMs = bytes.endTimeStamp - bytes.startTimeStamp;
+        assertTrue(periodMs >= 20);
+        assertEquals(2.0, exporter.values.get("Operations"));
+        assertEquals(3.0 * 1024 * 1024, exporter.values.get("TotalBytes"));
+        assertEquals(3.0 * 1000 / periodMs, exporter.values.get("Throughput(MB/sec)"), 1e-9);
+        assertEquals(1024 * 1024, exporter.values.get("MinBytes"), 1024 * 1024 / 1000.0);
+    }
+
+    @Test
+    public void testSummarizesEachWindow() throws Exception {
+        OneMeasurementBytes bytes = new OneMeasurementBytes("READ-BYTES");
+        assertEquals("", bytes.getSummary());
+        bytes.measure(100);
+        bytes.measure(300);
+        String summary = bytes.getSummary();
+        assertTrue(summary, summary.startsWith("[READ-BYTES: MB/s="));
+        assertTrue(summary, summary.endsWith(", AvgBytes=200, MaxBytes=300]"));
+        assertEquals(400, bytes.windowStartBytes);
+        assertEquals("", bytes.getSummary());
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+public class TestOneMeasurementHdrHistogram {
+    private static class MapExporter implements MeasurementsExporter {
+        final Map<String, Double> values = new HashMap<String, Double>();
+
+        public void write(String metric, String measurement, int i) {
+            values.put(metric + " " + measurement, (double) i);
+        }
+
+        public void write(String metric, String measurement, double d) {
+            values.put(metric + " " + measurement, d);
+        }
+
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testCorrectsStalls() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(OneMeasurementHdrHistogram.CORRECT_PROPERTY, "true");
+        props.setProperty(OneMeasurementHdrHistogram.EXPECTED_INTERVAL_PROPERTY, "100");
+        OneMeasurementHdrHistogram histogram = new OneMeasurementHdrHistogram("READ", props,
+                OneMeasurementHdrHistogram.getExpectedInterval(props));
+        for (int i = 0; i < 99; i++) {
+            histogram.measure(100);
+        }
+        histogram.measure(10000);
+
+        MapExporter exporter = new MapExporter();
+        histogram.exportMeasurements(exporter);
+        assertEquals(100.0, exporter.values.get("READ Operations"));
+        assertEquals(199.0, exporter.values.get("Corrected-READ Operations"));
+        assertEquals(exporter.values.get("READ MaxLatency(us)"), exporter.values.get("Corrected-READ MaxLatency(us)"));
+    }
+
+    @Test
+    public void testExpectedIntervalFromTarget() {
+        Properties props = new Properties();
+        assertEquals(0, OneMeasurementHdrHistogram.getExpectedInterval(props));
+        props.setProperty(OneMeasurementHdrHistogram.CORRECT_PROPERTY, "true");
+        props.setProperty("target", "1000");
+        props.setProperty("threadcount", "4");
+        assertEquals(4000, OneMeasurementHdrHistogram.getExpectedInterval(props));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNeedsExpectedIntervalForOpenLoop() {
+        Properties props = new Properties();
+        props.setProperty(OneMeasurementHdrHistogram.CORRECT_PROPERTY, "true");
+        props.setProperty("target", "1000");
+        props.setProperty("arrivalprocess", "poisson");
+        OneMeasurementHdrHistogram.getExpectedInterval(props);
+    }
+
+    @Test
+    public void testExplicitExpectedIntervalForOpenLoop() {
+        Properties props = new Properties();
+        props.setProperty(OneMeasurementHdrHistogram.CORRECT_PROPERTY, "true");
+        props.setProperty(OneMeasurementHdrHistogram.EXPECTED_INTERVAL_PROPERTY, "500");
+        props.setProperty("targetschedule", "0-60s:1000");
+        assertEquals(500, OneMeasurementHdrHistogram.getExpectedInterval(props));
+    }
+
+    @Test
+    public void testCorrectsOnlyOperationLatencies() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(OneMeasurementHdrHistogram.CORRECT_PROPERTY, "true");
+        props.setProperty(OneMeasurementHdrHistogram.EXPECTED_INTERVAL_PROPERTY, "100");
+        props.setProperty(Measurements.MEASUREMENT_INTERVAL, "both");
+        Measurements measurements = new Measurements(props);
+        measurements.measure("READ", 10000);
+        measurements.measureIntended("READ", 10000);
+        measurements.measure("CLEANUP", 10000);
+
+        MapExporter exporter = new MapExporter();
+        measurements.exportMeasurements(exporter);
+        assertEquals(100.0, exporter.values.get("Corrected-READ Operations"));
+        assertEquals(1.0, exporter.values.get("Intended-READ Operations"));
+        assertNull(exporter.values.get("Corrected-Intended-READ Operations"));
+        assertNull(exporter.values.get("Corrected-CLEANUP Operations"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNeedsExpectedInterval() {
+        Properties props = new Properties();
+        props.setProperty(OneMeasurementHdrHistogram.CORRECT_PROPERTY, "true");
+        OneMeasurementHdrHistogram.getExpectedInterval(props);
+    }
+
+    @Test
+    public void testUncorrectedByDefault() throws Exception {
+        OneMeasurementHdrHistogram histogram = new OneMeasurementHdrHistogram("READ", new Properties());
+        histogram.measure(10000);
+        MapExporter exporter = new MapExporter();
+        histogram.exportMeasurements(exporter);
+        assertNull(exporter.values.get("Corrected-READ Operations"));
+    }
+}
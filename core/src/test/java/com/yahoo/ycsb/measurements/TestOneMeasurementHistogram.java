@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+public class TestOneMeasurementHistogram {
+    private static class MapExporter implements MeasurementsExporter {
+        final Map<String, Double> values = new HashMap<String, Double>();
+
+        public void write(String metric, String measurement, int i) {
+            values.put(measurement, (double) i);
+        }
+
+        public void write(String metric, String measurement, double d) {
+            values.put(measurement, d);
+        }
+
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testMergesThreads() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(OneMeasurementHistogram.BUCKETS, "10");
+        final OneMeasurementHistogram histogram = new OneMeasurementHistogram("READ", props);
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        histogram.measure(offset * 1000 + i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        MapExporter exporter = new MapExporter();
+        histogram.exportMeasurements(exporter);
+        assertEquals(8000.0, exporter.values.get("Operations"));
+        assertEquals(3999.5, exporter.values.get("AverageLatency(us)"));
+        assertEquals(0.0, exporter.values.get("MinLatency(us)"));
+        assertEquals(7999.0, exporter.values.get("MaxLatency(us)"));
+        assertEquals(7.0, exporter.values.get("95thPercentileLatency(ms)"));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(1000.0, exporter.values.get(Integer.toString(i)));
+        }
+        assertEquals(0.0, exporter.values.get("9"));
+        assertEquals(0.0, exporter.values.get(">10"));
+    }
+
+    @Test
+    public void testSummaryCoversWindow() throws IOException {
+        OneMeasurementHistogram histogram = new OneMeasurementHistogram("READ", new Properties());
+        histogram.measure(100);
+        histogram.measure(300);
+        assertEquals("[READ AverageLatency(us)=200]", histogram.getSummary());
+        assertEquals("", histogram.getSummary());
+        histogram.measure(50);
+        assertEquals("[READ AverageLatency(us)=50]", histogram.getSummary());
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+public class TestOneMeasurementTimeSeries {
+    /** Keeps every line in order, as the unit times repeat when units are ended by hand. */
+    private static class ListExporter implements MeasurementsExporter {
+        final List<String> measurements = new ArrayList<String>();
+        final List<Double> values = new ArrayList<Double>();
+
+        public void write(String metric, String measurement, int i) {
+            write(metric, measurement, (double) i);
+        }
+
+        public void write(String metric, String measurement, double d) {
+            measurements.add(measurement);
+            values.add(d);
+        }
+
+        public void close() {
+        }
+
+        List<Double> valuesEndingWith(String suffix) {
+            List<Double> found = new ArrayList<Double>();
+            for (int i = 0; i < measurements.size(); i++) {
+                if (measurements.get(i).endsWith(suffix)) {
+                    found.add(values.get(i));
+                }
+            }
+            return found;
+        }
+
+        double value(String measurement) {
+            return values.get(measurements.indexOf(measurement));
+        }
+    }
+
+    private static OneMeasurementTimeSeries timeSeries() {
+        Properties props = new Properties();
+        // long enough that units only end when ended by hand
+        props.setProperty(OneMeasurementTimeSeries.GRANULARITY, "3600000");
+        props.setProperty(OneMeasurementTimeSeries.PERCENTILES, "50, 99");
+        return new OneMeasurementTimeSeries("READ", props);
+    }
+
+    @Test
+    public void testExportsEachUnitsPercentiles() throws Exception {
+        OneMeasurementTimeSeries series = timeSeries();
+        for (int i = 1; i <= 100; i++) {
+            series.measure(i);
+        }
+        series.checkEndOfUnit(true);
+        for (int i = 0; i < 10; i++) {
+            series.measure(1000);
+        }
+
+        ListExporter exporter = new ListExporter();
+        series.exportMeasurements(exporter);
+        assertEquals(110.0, exporter.value("Operations"));
+        assertEquals(1.0, exporter.value("MinLatency(us)"));
+        assertEquals(1000.0, exporter.value("MaxLatency(us)"));
+        assertEquals(1000.0, exporter.value("99thPercentileLatency(us)"));
+        assertEquals(2, exporter.valuesEndingWith("-Operations").size());
+        assertEquals(100.0, exporter.valuesEndingWith("-Operations").get(0));
+        assertEquals(10.0, exporter.valuesEndingWith("-Operations").get(1));
+        assertEquals(50.0, exporter.valuesEndingWith("-p50(us)").get(0));
+        assertEquals(99.0, exporter.valuesEndingWith("-p99(us)").get(0));
+        assertEquals(1000.0, exporter.valuesEndingWith("-p50(us)").get(1));
+        assertEquals(50.5, exporter.value("0"), 0.01);
+    }
+
+    @Test
+    public void testKeepsAnyNumberOfUnits() throws Exception {
+        OneMeasurementTimeSeries series = timeSeries();
+        for (int u = 0; u < 200; u++) {
+            series.measure(u + 1);
+            series.checkEndOfUnit(true);
+        }
+
+        ListExporter exporter = new ListExporter();
+        series.exportMeasurements(exporter);
+        // the export ends the last, empty, unit too
+        List<Double> counts = exporter.valuesEndingWith("-Operations");
+        assertEquals(201, counts.size());
+        assertEquals(0.0, counts.get(200));
+        List<Double> p99s = exporter.valuesEndingWith("-p99(us)");
+        assertEquals(200, p99s.size());
+        for (int u = 0; u < 200; u++) {
+            assertEquals(u + 1.0, p99s.get(u));
+        }
+    }
+
+    @Test
+    public void testSummarizesEndedUnits() throws Exception {
+        OneMeasurementTimeSeries series = timeSeries();
+        series.measure(10);
+        series.measure(30);
+        assertEquals("", series.getSummary());
+        series.checkEndOfUnit(true);
+        assertEquals("[READ AverageLatency(us)=20]", series.getSummary());
+        assertEquals("", series.getSummary());
+    }
+}
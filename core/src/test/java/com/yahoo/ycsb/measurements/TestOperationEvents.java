@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+/**
+ * Drives the Flight Recorder reflectively, like {@link OperationEvents}, so this builds on JVMs without it.
+ */
+public class TestOperationEvents {
+    private static OperationEvents operationEvents() {
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+        } catch (ClassNotFoundException e) {
+            throw new SkipException("no JDK Flight Recorder API in this JVM");
+        }
+        Properties props = new Properties();
+        props.setProperty(OperationEvents.THRESHOLD_PROPERTY, "100");
+        props.setProperty(OperationEvents.THRESHOLD_PROPERTY + ".READ", "1000");
+        return new OperationEvents(props);
+    }
+
+    /** Stops the recording and reads back its events. */
+    private static List<?> recorded(Object recording) throws Exception {
+        File file = File.createTempFile("operations", ".jfr");
+        file.deleteOnExit();
+        Object path = File.class.getMethod("toPath").invoke(file);
+        call(recording, "stop");
+        call(recording, "dump", path);
+        call(recording, "close");
+        return (List<?>) call(Class.forName("jdk.jfr.consumer.RecordingFile"), "readAllEvents", path);
+    }
+
+    @Test
+    public void testEmitsOperationsPastTheirThreshold() throws Exception {
+        OperationEvents events = operationEvents();
+        assertNull(events.begin(null));
+        Object reused = events.newEvent();
+
+        Object recording = Class.forName("jdk.jfr.Recording").newInstance();
+        // with no threshold of its own, only the operations' thresholds apply
+        call(call(recording, "enable", "com.yahoo.ycsb.Operation"), "withThreshold",
+                Class.forName("java.time.Duration").getField("ZERO").get(null));
+        call(recording, "start");
+        events.commit(events.begin(reused), SampleRecorder.READ, "usertable", "user1", 0, 0, 999000, 0);
+        events.commit(events.begin(reused), SampleRecorder.READ, "usertable", "user2", 0, 5000, 1005000, 0);
+        events.commit(events.begin(null), SampleRecorder.UPDATE, "usertable", "user3", 0, 0, 99000, 0);
+        events.commit(events.begin(null), SampleRecorder.UPDATE, "usertable", "user4", 50000, 70000, 170000, -1);
+        List<?> recorded = recorded(recording);
+        assertNull(events.begin(null));
+
+        assertEquals(2, recorded.size());
+        assertEquals("READ", call(recorded.get(0), "getString", "operation"));
+        assertEquals("user2", call(recorded.get(0), "getString", "key"));
+        assertEquals(0L, call(call(recorded.get(0), "getDuration", "startDelay"), "toNanos"));
+        assertEquals("UPDATE", call(recorded.get(1), "getString", "operation"));
+        assertEquals("usertable", call(recorded.get(1), "getString", "table"));
+        assertEquals(-1, call(recorded.get(1), "getInt", "returnCode"));
+        assertEquals(20000L, call(call(recorded.get(1), "getDuration", "startDelay"), "toNanos"));
+    }
+
+    @Test
+    public void testRecorderDropsEventsBelowTheLowestThreshold() throws Exception {
+        OperationEvents events = operationEvents();
+        Object recording = Class.forName("jdk.jfr.Recording").newInstance();
+        call(recording, "start");
+        Object event = events.begin(null);
+        assertNotNull(event);
+        // reported as slow, but the event itself lasted less than the type's 100us threshold
+        events.commit(event, SampleRecorder.UPDATE, "usertable", "user1", 0, 0, 5000000, 0);
+        event = events.begin(null);
+        Thread.sleep(2);
+        events.commit(event, SampleRecorder.UPDATE, "usertable", "user2", 0, 0, 5000000, 0);
+        List<?> recorded = recorded(recording);
+
+        assertEquals(1, recorded.size());
+        assertEquals("user2", call(recorded.get(0), "getString", "key"));
+    }
+
+    /**
+     * Calls the public method of the given name whose parameters take the arguments; a static one if target
+     * is a class.
+     */
+    private static Object call(Object target, String name, Object... args) throws Exception {
+        boolean isStatic = target instanceof Class;
+        Class<?> type = isStatic ? (Class<?>) target : target.getClass();
+        for (Method m : type.getMethods()) {
+            Class<?>[] params = m.getParameterTypes();
+            if (!m.getName().equals(name) || params.length != args.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < params.length; i++) {
+                matches &= params[i].isPrimitive() || params[i].isInstance(args[i]);
+            }
+            if (matches) {
+                return m.invoke(isStatic ? null : target, args);
+            }
+        }
+        throw new NoSuchMethodException(type.getName() + "." + name);
+    }
+}
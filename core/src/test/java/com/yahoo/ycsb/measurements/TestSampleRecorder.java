@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+public class TestSampleRecorder {
+    @Test
+    public void testKeepsLastRecordsOfEachThread() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        Properties props = new Properties();
+        props.setProperty(SampleRecorder.FILE_PROPERTY, file.getPath());
+        props.setProperty(SampleRecorder.RECORDS_PER_THREAD_PROPERTY, "3");
+        props.setProperty("threadcount", "2");
+        SampleRecorder recorder = new SampleRecorder(props);
+
+        SampleRecorder.Region first = recorder.newRegion();
+        SampleRecorder.Region second = recorder.newRegion();
+        assertNull(recorder.newRegion());
+        for (int i = 0; i < 5; i++) {
+            first.record(SampleRecorder.READ, "user" + i, 0, (i + 1) * 1000L, 0);
+        }
+        second.record(SampleRecorder.UPDATE, "a-key-longer-than-twenty-eight-bytes", 0, 2000, -1);
+        recorder.close();
+
+        StringWriter out = new StringWriter();
+        SampleRecorder.dump(file.getPath(), out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("time,thread,operation,key,latency,return", lines[0]);
+        assertTrue(lines[1].endsWith(",0,READ,user2,3,0"));
+        assertTrue(lines[3].endsWith(",0,READ,user4,5,0"));
+        assertTrue(lines[4].endsWith(",1,UPDATE,a-key-longer-than-twenty-eig,2,-1"));
+    }
+
+    @Test
+    public void testRecordsFromSeveralThreadsIntoOneRegion() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        Properties props = new Properties();
+        props.setProperty(SampleRecorder.FILE_PROPERTY, file.getPath());
+        props.setProperty(SampleRecorder.RECORDS_PER_THREAD_PROPERTY, "10000");
+        SampleRecorder recorder = new SampleRecorder(props);
+        final SampleRecorder.Region region = recorder.newRegion();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 2000; i++) {
+                        region.record(SampleRecorder.INSERT, "t" + thread, 0, 1000L * (thread + 1), 0);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        recorder.close();
+
+        StringWriter out = new StringWriter();
+        SampleRecorder.dump(file.getPath(), out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(8001, lines.length);
+        int[] counts = new int[threads.length];
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(",");
+            int thread = Integer.parseInt(fields[3].substring(1));
+            assertEquals(thread + 1, Integer.parseInt(fields[4]));
+            counts[thread]++;
+        }
+        for (int count : counts) {
+            assertEquals(2000, count);
+        }
+    }
+}
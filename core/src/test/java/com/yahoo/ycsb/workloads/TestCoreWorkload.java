@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestCoreWorkload {
+    @Test
+    public void testReadsOnlyLoadedAndOwnInsertedKeys() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("recordcount", "100");
+        props.setProperty("operationcount", "1000");
+        props.setProperty("insertproportion", "0.5");
+        props.setProperty("requestdistribution", "zipfian");
+        props.setProperty(CoreWorkload.TRANSACTION_INSERT_OFFSET_PROPERTY, "1");
+        props.setProperty(CoreWorkload.TRANSACTION_INSERT_STRIDE_PROPERTY, "3");
+        Measurements.setProperties(props);
+        CoreWorkload workload = new CoreWorkload();
+        workload.init(props);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(workload.nextKeynum() < 100);
+        }
+        for (int i = 0; i < 20; i++) {
+            workload.transactioninsertkeysequence.nextLong();
+        }
+        assertEquals(158, workload.transactioninsertkeysequence.lastLong());
+        boolean readOwn = false;
+        for (int i = 0; i < 10000; i++) {
+            long keynum = workload.nextKeynum();
+            assertTrue(keynum <= 158);
+            assertTrue(keynum < 100 || (keynum - 100) % 3 == 1);
+            readOwn |= keynum >= 100;
+        }
+        assertTrue(readOwn);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2015 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+public class TestOperationTrace {
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = File.createTempFile("trace", ".trace");
+        file.deleteOnExit();
+
+        OperationTrace.Writer writer = new OperationTrace.Writer(file.getPath(), 10, 1000);
+        writer.record(1000, OperationTrace.READ, 5000000000L, -1, 0, 0);
+        writer.record(3500, OperationTrace.UPDATE, 7, 3, 100, 0);
+        writer.record(4000, OperationTrace.SCAN, 42, 9, 0, 250);
+        writer.close();
+
+        OperationTrace.Reader reader = new OperationTrace.Reader(file.getPath());
+        assertEquals(3, reader.size());
+        assertEquals(10, reader.getFieldCount());
+
+        assertEquals(0, reader.getTimeNs(0));
+        assertEquals(OperationTrace.READ, reader.getOperation(0));
+        assertEquals(5000000000L, reader.getKeynum(0));
+        assertEquals(-1, reader.getField(0));
+
+        assertEquals(2500, reader.getTimeNs(1));
+        assertEquals(OperationTrace.UPDATE, reader.getOperation(1));
+        assertEquals(3, reader.getField(1));
+        assertEquals(100, reader.getBytes(1));
+
+        assertEquals(OperationTrace.SCAN, reader.getOperation(2));
+        assertEquals(42, reader.getKeynum(2));
+        assertEquals(250, reader.getScanLength(2));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        File file = File.createTempFile("trace", ".trace");
+        file.deleteOnExit();
+        new OperationTrace.Reader(file.getPath());
+    }
+}